@@ -68,7 +68,7 @@ public abstract class AbstractCircular<E> implements Circular<E> {
 
     @Override
     public E peekAhead(int index) {
-        if (index > count()) {
+        if (index >= count()) {
             return null;
         } else {
             return element(index);
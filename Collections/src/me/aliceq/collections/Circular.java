@@ -57,6 +57,18 @@ public interface Circular<E> extends Iterable<E> {
      */
     public boolean isFull();
 
+    /**
+     * Returns the maximum number of elements the structure can hold. For a
+     * data structure of dynamic size, this should return Integer.MAX_VALUE,
+     * which the default implementation does so that existing implementations
+     * are not broken. Bounded structures should override it.
+     *
+     * @return the capacity of the structure
+     */
+    public default int capacity() {
+        return Integer.MAX_VALUE;
+    }
+
     /**
      * Clears the queue, removing all elements
      */
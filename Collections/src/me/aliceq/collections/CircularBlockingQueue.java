@@ -0,0 +1,316 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Alice Quiros <email@aliceq.me>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.aliceq.collections;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded BlockingQueue backed by a Circular structure. Elements are pushed
+ * at the head of the ring and removed from its tail.
+ *
+ * Waiting threads park on Conditions of a ReentrantLock rather than on object
+ * monitors, so blocked virtual threads release their carrier thread. The
+ * backing ring is only ever accessed while holding the lock and is never
+ * blocked on, which keeps any monitor it uses internally uncontended.
+ *
+ * Null elements are not permitted. Iterators return a snapshot of the queue
+ * taken when the iterator is created and do not support removal.
+ *
+ * @author Alice Quiros <email@aliceq.me>
+ * @param <E> the type of elements in this queue
+ */
+public class CircularBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    protected final Circular<E> ring;
+    private final ReentrantLock lock;
+    private final Condition notEmpty;
+    private final Condition notFull;
+
+    /**
+     * Creates a queue backed by a new CircularBuffer
+     *
+     * @param capacity the capacity of the queue
+     * @throws IllegalArgumentException if capacity is less than 1
+     */
+    public CircularBlockingQueue(int capacity) {
+        this(capacity, false);
+    }
+
+    /**
+     * Creates a queue backed by a new CircularBuffer
+     *
+     * @param capacity the capacity of the queue
+     * @param fair true if blocked threads should be granted access in FIFO
+     * order
+     * @throws IllegalArgumentException if capacity is less than 1
+     */
+    public CircularBlockingQueue(int capacity, boolean fair) {
+        this(newBuffer(capacity), fair);
+    }
+
+    /**
+     * Creates a queue backed by an existing ring. The ring must not be
+     * accessed other than through this queue once the queue is created.
+     *
+     * @param ring the ring holding the elements of the queue
+     * @param fair true if blocked threads should be granted access in FIFO
+     * order
+     */
+    public CircularBlockingQueue(Circular<E> ring, boolean fair) {
+        if (ring == null) {
+            throw new NullPointerException();
+        }
+        this.ring = ring;
+        this.lock = new ReentrantLock(fair);
+        this.notEmpty = lock.newCondition();
+        this.notFull = lock.newCondition();
+    }
+
+    private static <E> Circular<E> newBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        return new CircularBuffer<>(capacity);
+    }
+
+    /**
+     * Pushes an element and wakes up one waiting consumer. Must be called
+     * while holding the lock with room in the ring.
+     */
+    private void enqueue(E e) {
+        ring.push(e);
+        notEmpty.signal();
+    }
+
+    /**
+     * Pops an element and wakes up one waiting producer. Must be called while
+     * holding the lock with an element in the ring.
+     */
+    private E dequeue() {
+        E e = ring.pop();
+        notFull.signal();
+        return e;
+    }
+
+    @Override
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        lock.lock();
+        try {
+            if (ring.isFull()) {
+                return false;
+            }
+            enqueue(e);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (ring.isFull()) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(e);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        lock.lockInterruptibly();
+        try {
+            while (ring.isFull()) {
+                notFull.await();
+            }
+            enqueue(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll() {
+        lock.lock();
+        try {
+            return ring.isEmpty() ? null : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (ring.isEmpty()) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (ring.isEmpty()) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public E peek() {
+        lock.lock();
+        try {
+            return ring.isEmpty() ? null : ring.element();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return ring.count();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            int capacity = ring.capacity();
+            return capacity == Integer.MAX_VALUE ? capacity : capacity - ring.count();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == null) {
+            throw new NullPointerException();
+        } else if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        lock.lock();
+        try {
+            int n = 0;
+            while (n < maxElements && !ring.isEmpty()) {
+                c.add(ring.pop());
+                n++;
+            }
+            if (n > 0) {
+                notFull.signalAll();
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            ring.clear();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        List<E> snapshot;
+        lock.lock();
+        try {
+            int count = ring.count();
+            snapshot = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                snapshot.add(ring.element(i));
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        final Iterator<E> it = snapshot.iterator();
+        return new Iterator<E>() {
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return it.next();
+            }
+        };
+    }
+}
@@ -23,6 +23,10 @@
  */
 package me.aliceq.collections;
 
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
 /**
  * A circular buffer is a fixed-size queue with a circular data implementation.
  *
@@ -32,7 +36,9 @@ package me.aliceq.collections;
 public class CircularBuffer<E> extends AbstractCircular<E> {
 
     protected final E[] data;
-    protected int head, tail;
+    protected int head, tail, count;
+    protected final CollectionMetrics metrics;
+    private boolean registered;
 
     /**
      * Creates a circular buffer. By default the buffer can hold 16 objects.
@@ -50,13 +56,19 @@ public class CircularBuffer<E> extends AbstractCircular<E> {
         this.data = (E[]) new Object[size];
         this.head = 0;
         this.tail = 0;
+        this.count = 0;
         this.modCount = 0;
+        this.metrics = CollectionMetrics.create(getClass().getSimpleName());
     }
 
     @Override
     public int count() {
-        int rtail = relativeTail();
-        return head - rtail;
+        return count;
+    }
+
+    @Override
+    public int capacity() {
+        return data.length;
     }
 
     @Override
@@ -75,19 +87,59 @@ public class CircularBuffer<E> extends AbstractCircular<E> {
     }
 
     @Override
-    public synchronized void push(E e) {
+    public void push(E e) {
+        if (CollectionMetrics.ENABLED) {
+            metrics.lockRequested();
+            try {
+                pushSynchronized(e);
+            } finally {
+                metrics.lockReleased();
+            }
+        } else {
+            pushSynchronized(e);
+        }
+    }
+
+    private synchronized void pushSynchronized(E e) {
         if (isFull()) {
+            if (CollectionMetrics.ENABLED) {
+                metrics.fullRejections++;
+            }
+            CollectionEvents.overflow(this, data.length);
             throw new IllegalStateException("Adding to full buffer");
         } else if (head >= data.length) {
             head = 0;
         }
         data[head++] = e;
+        count++;
         modCount++;
+
+        // Register for occupancy sampling once the buffer is in use
+        if (!registered) {
+            registered = true;
+            CollectionEvents.register(this);
+        }
     }
 
     @Override
-    public synchronized E pop() {
+    public E pop() {
+        if (CollectionMetrics.ENABLED) {
+            metrics.lockRequested();
+            try {
+                return popSynchronized();
+            } finally {
+                metrics.lockReleased();
+            }
+        }
+        return popSynchronized();
+    }
+
+    private synchronized E popSynchronized() {
         if (isEmpty()) {
+            if (CollectionMetrics.ENABLED) {
+                metrics.emptyRejections++;
+            }
+            CollectionEvents.underflow(this, data.length);
             throw new IllegalStateException("Removing from empty buffer");
         } else if (tail >= data.length) {
             tail = 0;
@@ -95,13 +147,56 @@ public class CircularBuffer<E> extends AbstractCircular<E> {
         E e = data[tail];
         data[tail] = null;
         tail++;
+        count--;
         modCount++;
         return e;
     }
 
+    /**
+     * Pushes an element unless the buffer is full. The check and the push
+     * happen under one lock acquisition, so concurrent producers never see an
+     * IllegalStateException. The element is added through push, so overrides
+     * of push apply to offer as well.
+     *
+     * @param e element to push
+     * @return true if the element was added
+     */
+    @Override
+    public synchronized boolean offer(E e) {
+        if (isFull()) {
+            if (CollectionMetrics.ENABLED) {
+                metrics.fullRejections++;
+            }
+            CollectionEvents.overflow(this, data.length);
+            return false;
+        }
+        push(e);
+        return true;
+    }
+
+    /**
+     * Removes the oldest element unless the buffer is empty. The check and the
+     * pop happen under one lock acquisition, so concurrent consumers never see
+     * an IllegalStateException. The element is removed through pop, so
+     * overrides of pop apply to poll as well.
+     *
+     * @return the element or null if the buffer is empty
+     */
+    @Override
+    public synchronized E poll() {
+        if (isEmpty()) {
+            if (CollectionMetrics.ENABLED) {
+                metrics.emptyRejections++;
+            }
+            CollectionEvents.underflow(this, data.length);
+            return null;
+        }
+        return pop();
+    }
+
     @Override
     public synchronized E element(int index) {
-        if (index < 0 || index > count()) {
+        if (index < 0 || index >= count) {
             throw new IndexOutOfBoundsException();
         }
 
@@ -113,19 +208,89 @@ public class CircularBuffer<E> extends AbstractCircular<E> {
     }
 
     @Override
-    public void clear() {
+    public synchronized void clear() {
+        for (int i = 0; i < data.length; i++) {
+            data[i] = null;
+        }
         tail = 0;
         head = 0;
+        count = 0;
+        modCount++;
+    }
+
+    /**
+     * Returns the elements of the buffer from the oldest to the newest. The
+     * two segments of the ring are copied under a single lock acquisition, so
+     * the result is a consistent view of the buffer even while producers and
+     * consumers keep running.
+     *
+     * @return a snapshot of the elements of the buffer
+     */
+    public synchronized Object[] toArray() {
+        Object[] snapshot = new Object[count];
+        int start = tail >= data.length ? tail - data.length : tail;
+        int first = Math.min(count, data.length - start);
+        System.arraycopy(data, start, snapshot, 0, first);
+        System.arraycopy(data, 0, snapshot, first, count - first);
+        return snapshot;
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the buffer taken with a single
+     * lock acquisition. The iterator never throws a
+     * ConcurrentModificationException and does not see later changes. Since
+     * it does not walk the live buffer it does not support remove.
+     *
+     * @return an iterator over the elements of the buffer, oldest first
+     */
+    @Override
+    public Iterator<E> iterator() {
+        final Object[] snapshot = toArray();
+        return new Iterator<E>() {
+
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < snapshot.length;
+            }
+
+            @Override
+            public E next() {
+                if (index >= snapshot.length) {
+                    throw new NoSuchElementException();
+                }
+                return (E) snapshot[index++];
+            }
+        };
+    }
+
+    /**
+     * Performs the given action for each element of a snapshot of the buffer,
+     * oldest first. The lock is only held while the snapshot is copied, so the
+     * action may take its time, or even use the buffer, without blocking
+     * producers.
+     *
+     * @param action the action to perform on each element
+     */
+    @Override
+    public void forEach(Consumer<? super E> action) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        for (Object e : toArray()) {
+            action.accept((E) e);
+        }
     }
 
     @Override
     public String toString() {
-        if (tail == head || data.length == 0) {
+        if (count == 0) {
             return "{}";
         }
         int index = tail >= data.length ? tail - data.length : tail;
         String s = "{" + data[index++];
-        while (index != head) {
+        for (int i = 1; i < count; i++) {
             if (index >= data.length) {
                 index -= data.length;
             }
@@ -135,6 +300,26 @@ public class CircularBuffer<E> extends AbstractCircular<E> {
         return s;
     }
 
+    /**
+     * Returns a snapshot of the instrumentation counters of this buffer. If
+     * instrumentation is disabled, every counter is zero.
+     *
+     * @return a snapshot of the counters
+     */
+    public CollectionStats stats() {
+        return metrics == null ? CollectionStats.EMPTY : metrics.snapshot();
+    }
+
+    /**
+     * Returns the live instrumentation counters of this buffer, for instance to
+     * register them with JMX, or null if instrumentation is disabled.
+     *
+     * @return the counters or null
+     */
+    public CollectionMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * The tail pointer relative to the head pointer. This makes sure that tail
      * remains less than head.
@@ -142,11 +327,7 @@ public class CircularBuffer<E> extends AbstractCircular<E> {
      * @return a new tail pointer lower than head
      */
     public int relativeTail() {
-        if (tail <= head) {
-            return tail;
-        } else {
-            return tail - data.length;
-        }
+        return head - count;
     }
 
     public static void main(String[] args) {
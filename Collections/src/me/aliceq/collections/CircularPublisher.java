@@ -0,0 +1,380 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Alice Quiros <email@aliceq.me>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.aliceq.collections;
+
+import java.util.Arrays;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A Flow.Publisher which buffers published elements in Circular rings. Each
+ * subscriber has its own ring of a fixed capacity. Producers publish with
+ * offer, which refuses the element when any subscriber's ring is full; this is
+ * how backpressure from slow subscribers reaches the producers.
+ *
+ * Delivery is event-driven: publishing an element or requesting more elements
+ * schedules a drain task on the executor if one is not already running. A
+ * drain task pops as many elements as the outstanding demand allows, up to a
+ * maximum batch size, in a single lock acquisition and then delivers them.
+ *
+ * Nothing is delivered to a subscriber until its onSubscribe has returned. A
+ * subscriber whose onSubscribe or onNext throws is cancelled and receives the
+ * exception through onError.
+ *
+ * @author Alice Quiros <email@aliceq.me>
+ * @param <E> the type of elements published
+ */
+public class CircularPublisher<E> implements Flow.Publisher<E>, AutoCloseable {
+
+    private final Executor executor;
+    private final int capacity;
+    private final int maxBatch;
+    private final CopyOnWriteArrayList<RingSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final ReentrantLock offerLock = new ReentrantLock();
+    private volatile boolean closed;
+    private volatile Throwable closedException;
+
+    /**
+     * Creates a publisher delivering on the common ForkJoinPool with rings of
+     * 256 elements
+     */
+    public CircularPublisher() {
+        this(ForkJoinPool.commonPool(), 256, 64);
+    }
+
+    /**
+     * Creates a publisher
+     *
+     * @param executor the executor running delivery to subscribers
+     * @param capacity the capacity of each subscriber's ring
+     * @param maxBatch the maximum number of elements delivered per ring access
+     * @throws IllegalArgumentException if capacity or maxBatch is less than 1
+     */
+    public CircularPublisher(Executor executor, int capacity, int maxBatch) {
+        if (executor == null) {
+            throw new NullPointerException();
+        } else if (capacity < 1 || maxBatch < 1) {
+            throw new IllegalArgumentException("Capacity and batch size must be positive");
+        }
+        this.executor = executor;
+        this.capacity = capacity;
+        this.maxBatch = maxBatch;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super E> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException();
+        }
+        RingSubscription subscription = new RingSubscription(subscriber);
+        offerLock.lock();
+        try {
+            if (!closed) {
+                subscriptions.add(subscription);
+            }
+        } finally {
+            offerLock.unlock();
+        }
+        try {
+            subscriber.onSubscribe(subscription);
+        } catch (RuntimeException | Error ex) {
+            subscription.terminate();
+            subscriber.onError(ex);
+            return;
+        }
+        subscription.start();
+        if (closed) {
+            subscription.schedule();
+        }
+    }
+
+    /**
+     * Publishes an element to every current subscriber. If any subscriber's
+     * ring is full, the element is not published at all.
+     *
+     * @param e the element to publish
+     * @return true if the element was published, false if a ring was full
+     * @throws IllegalStateException if the publisher is closed
+     */
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        offerLock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Publisher is closed");
+            }
+            // Subscribers only ever make room, so checking first is enough
+            for (RingSubscription s : subscriptions) {
+                if (s.isFull()) {
+                    return false;
+                }
+            }
+            for (RingSubscription s : subscriptions) {
+                s.push(e);
+            }
+        } finally {
+            offerLock.unlock();
+        }
+        for (RingSubscription s : subscriptions) {
+            s.schedule();
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if an element offered now would be refused
+     *
+     * @return true if any subscriber's ring is full
+     */
+    public boolean isFull() {
+        for (RingSubscription s : subscriptions) {
+            if (s.isFull()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of current subscribers
+     *
+     * @return the number of subscribers
+     */
+    public int getNumberOfSubscribers() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Closes the publisher. Subscribers receive onComplete once they have been
+     * delivered every element already published.
+     */
+    @Override
+    public void close() {
+        closeWith(null);
+    }
+
+    /**
+     * Closes the publisher. Subscribers receive onError once they have been
+     * delivered every element already published.
+     *
+     * @param error the error passed to subscribers
+     */
+    public void closeExceptionally(Throwable error) {
+        if (error == null) {
+            throw new NullPointerException();
+        }
+        closeWith(error);
+    }
+
+    private void closeWith(Throwable error) {
+        offerLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closedException = error;
+            closed = true;
+        } finally {
+            offerLock.unlock();
+        }
+        for (RingSubscription s : subscriptions) {
+            s.schedule();
+        }
+    }
+
+    private class RingSubscription implements Flow.Subscription, Runnable {
+
+        private final Flow.Subscriber<? super E> subscriber;
+        private final Circular<E> ring = new CircularBuffer<>(capacity);
+        private final ReentrantLock lock = new ReentrantLock();
+        private final AtomicLong requested = new AtomicLong();
+        // Starts at 1 so nothing is delivered until onSubscribe has returned
+        private final AtomicInteger wip = new AtomicInteger(1);
+        private final Object[] batch = new Object[maxBatch];
+        private volatile boolean cancelled;
+        private volatile Throwable requestError;
+
+        RingSubscription(Flow.Subscriber<? super E> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        boolean isFull() {
+            lock.lock();
+            try {
+                return ring.isFull();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void push(E e) {
+            lock.lock();
+            try {
+                ring.push(e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Allows delivery once onSubscribe has returned. Anything published,
+         * requested or closed in the meantime is drained now.
+         */
+        void start() {
+            if (wip.decrementAndGet() != 0) {
+                executor.execute(this);
+            }
+        }
+
+        /**
+         * Schedules a drain unless one is already running, in which case the
+         * running drain is told to loop again
+         */
+        void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                requestError = new IllegalArgumentException("Non-positive request: " + n);
+            } else {
+                long r, u;
+                do {
+                    r = requested.get();
+                    u = r + n < 0 ? Long.MAX_VALUE : r + n;
+                } while (!requested.compareAndSet(r, u));
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        void terminate() {
+            cancelled = true;
+            subscriptions.remove(this);
+            lock.lock();
+            try {
+                ring.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                if (drain()) {
+                    return;
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Delivers as many elements as demand allows. If onNext throws, the
+         * subscription is cancelled and the failure passed to onError, as
+         * SubmissionPublisher does. If onComplete or onError throws, the
+         * exception propagates to the executor.
+         *
+         * @return true if the subscription has terminated
+         */
+        private boolean drain() {
+            while (true) {
+                if (cancelled) {
+                    terminate();
+                    return true;
+                }
+                Throwable error = requestError;
+                if (error != null) {
+                    terminate();
+                    subscriber.onError(error);
+                    return true;
+                }
+
+                // Read closed before popping so nothing published earlier is missed
+                boolean done = closed;
+                long demand = requested.get();
+                int n = 0;
+                boolean empty;
+                lock.lock();
+                try {
+                    int limit = (int) Math.min(Math.min(demand, maxBatch), ring.count());
+                    while (n < limit) {
+                        batch[n++] = ring.pop();
+                    }
+                    empty = ring.isEmpty();
+                } finally {
+                    lock.unlock();
+                }
+
+                for (int i = 0; i < n; i++) {
+                    Object e = batch[i];
+                    batch[i] = null;
+                    if (!cancelled) {
+                        try {
+                            subscriber.onNext((E) e);
+                        } catch (RuntimeException | Error ex) {
+                            Arrays.fill(batch, i + 1, n, null);
+                            terminate();
+                            subscriber.onError(ex);
+                            return true;
+                        }
+                    }
+                }
+                if (n > 0 && demand != Long.MAX_VALUE) {
+                    requested.addAndGet(-n);
+                }
+
+                if (done && empty) {
+                    terminate();
+                    Throwable closedError = closedException;
+                    if (closedError == null) {
+                        subscriber.onComplete();
+                    } else {
+                        subscriber.onError(closedError);
+                    }
+                    return true;
+                }
+                if (n == 0) {
+                    return false;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Alice Quiros <email@aliceq.me>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.aliceq.collections;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JDK Flight Recorder events emitted by the collections in this package. The
+ * jdk.jfr module is optional: the emitting methods only touch JFR classes once
+ * a holder, initialised on first use, has found the module and
+ * FlightRecorder.isAvailable(). Each event is only allocated if its event type
+ * is enabled, so nothing is allocated while no recording is running.
+ *
+ * Every CircularBuffer is sampled for its occupancy once per period (one
+ * second by default) while a recording is running. Buffers register on their
+ * first push rather than in their constructor. The period and the slow add
+ * threshold (one millisecond by default) can be changed through the recording
+ * settings.
+ *
+ * @author Alice Quiros <email@aliceq.me>
+ */
+final class CollectionEvents {
+
+    private CollectionEvents() {
+    }
+
+    /**
+     * Holds whether JFR can be used, initialised on first use
+     */
+    private static final class Recorder {
+
+        static final boolean AVAILABLE = available();
+
+        private static boolean available() {
+            try {
+                return ModuleLayer.boot().findModule("jdk.jfr").isPresent() && Jfr.available();
+            } catch (LinkageError | SecurityException ex) {
+                return false;
+            }
+        }
+    }
+
+    static String describe(Object collection) {
+        return collection.getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(collection));
+    }
+
+    /**
+     * Adds a buffer to the set of buffers sampled by the periodic occupancy
+     * event. Buffers are held weakly. Nothing is done if JFR is unavailable.
+     */
+    static void register(CircularBuffer<?> buffer) {
+        if (Recorder.AVAILABLE) {
+            Jfr.register(buffer);
+        }
+    }
+
+    static void overflow(Circular<?> buffer, int capacity) {
+        if (Recorder.AVAILABLE) {
+            Jfr.rejection(buffer, true, capacity);
+        }
+    }
+
+    static void underflow(Circular<?> buffer, int capacity) {
+        if (Recorder.AVAILABLE) {
+            Jfr.rejection(buffer, false, capacity);
+        }
+    }
+
+    static void resized(Object collection, int oldCapacity, int newCapacity, long bytes) {
+        if (Recorder.AVAILABLE) {
+            Jfr.resized(collection, oldCapacity, newCapacity, bytes);
+        }
+    }
+
+    /**
+     * Starts timing an add. The returned token must be passed to endAdd once
+     * the add completes. It is null unless the slow add event is enabled.
+     */
+    static Object beginAdd() {
+        return Recorder.AVAILABLE ? Jfr.beginAdd() : null;
+    }
+
+    static void endAdd(Object event, Object collection, int size) {
+        if (event != null) {
+            Jfr.endAdd(event, collection, size);
+        }
+    }
+
+    /**
+     * The code using JFR classes, only loaded once Recorder has found JFR
+     */
+    private static final class Jfr {
+
+        private static final Set<CircularBuffer<?>> BUFFERS = Collections.newSetFromMap(new WeakHashMap<CircularBuffer<?>, Boolean>());
+        private static final EventType REJECTION = EventType.getEventType(RingRejectionEvent.class);
+        private static final EventType RESIZE = EventType.getEventType(ResizeEvent.class);
+        private static final EventType SLOW_ADD = EventType.getEventType(SlowAddEvent.class);
+
+        static {
+            FlightRecorder.addPeriodicEvent(RingOccupancyEvent.class, new Runnable() {
+
+                @Override
+                public void run() {
+                    List<CircularBuffer<?>> buffers;
+                    synchronized (BUFFERS) {
+                        buffers = new ArrayList<>(BUFFERS);
+                    }
+                    for (CircularBuffer<?> buffer : buffers) {
+                        RingOccupancyEvent event = new RingOccupancyEvent();
+                        event.buffer = describe(buffer);
+                        event.count = buffer.count();
+                        event.capacity = buffer.data.length;
+                        event.commit();
+                    }
+                }
+            });
+        }
+
+        static boolean available() {
+            return FlightRecorder.isAvailable();
+        }
+
+        static void register(CircularBuffer<?> buffer) {
+            synchronized (BUFFERS) {
+                BUFFERS.add(buffer);
+            }
+        }
+
+        static void rejection(Circular<?> buffer, boolean overflow, int capacity) {
+            if (REJECTION.isEnabled()) {
+                RingRejectionEvent event = new RingRejectionEvent();
+                event.buffer = describe(buffer);
+                event.overflow = overflow;
+                event.count = buffer.count();
+                event.capacity = capacity;
+                event.commit();
+            }
+        }
+
+        static void resized(Object collection, int oldCapacity, int newCapacity, long bytes) {
+            if (RESIZE.isEnabled()) {
+                ResizeEvent event = new ResizeEvent();
+                event.collection = describe(collection);
+                event.oldCapacity = oldCapacity;
+                event.newCapacity = newCapacity;
+                event.bytes = bytes;
+                event.commit();
+            }
+        }
+
+        static Object beginAdd() {
+            if (!SLOW_ADD.isEnabled()) {
+                return null;
+            }
+            SlowAddEvent event = new SlowAddEvent();
+            event.begin();
+            return event;
+        }
+
+        static void endAdd(Object token, Object collection, int size) {
+            SlowAddEvent event = (SlowAddEvent) token;
+            event.end();
+            if (event.shouldCommit()) {
+                event.collection = describe(collection);
+                event.size = size;
+                event.commit();
+            }
+        }
+    }
+
+    @Name("me.aliceq.collections.RingOccupancy")
+    @Label("Ring Occupancy")
+    @Description("Number of elements held by a ring buffer")
+    @Category("Collections")
+    @Period("1 s")
+    @StackTrace(false)
+    static class RingOccupancyEvent extends Event {
+
+        @Label("Buffer")
+        String buffer;
+
+        @Label("Count")
+        int count;
+
+        @Label("Capacity")
+        int capacity;
+    }
+
+    @Name("me.aliceq.collections.RingRejection")
+    @Label("Ring Rejection")
+    @Description("An element could not be added to a full ring buffer or removed from an empty one")
+    @Category("Collections")
+    static class RingRejectionEvent extends Event {
+
+        @Label("Buffer")
+        String buffer;
+
+        @Label("Overflow")
+        @Description("True if the buffer was full, false if it was empty")
+        boolean overflow;
+
+        @Label("Count")
+        int count;
+
+        @Label("Capacity")
+        int capacity;
+    }
+
+    @Name("me.aliceq.collections.Resize")
+    @Label("Collection Resize")
+    @Description("The backing storage of a collection was reallocated")
+    @Category("Collections")
+    static class ResizeEvent extends Event {
+
+        @Label("Collection")
+        String collection;
+
+        @Label("Old Capacity")
+        int oldCapacity;
+
+        @Label("New Capacity")
+        int newCapacity;
+
+        @Label("Bytes Allocated")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("me.aliceq.collections.SlowAdd")
+    @Label("Slow Add")
+    @Description("An add to a sorted list took longer than the threshold")
+    @Category("Collections")
+    @Threshold("1 ms")
+    static class SlowAddEvent extends Event {
+
+        @Label("Collection")
+        String collection;
+
+        @Label("Size")
+        int size;
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Alice Quiros <email@aliceq.me>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.aliceq.collections;
+
+import java.lang.management.ManagementFactory;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Hot-path counters for an instrumented collection. Instrumentation is
+ * enabled for the whole JVM by setting the system property
+ * me.aliceq.collections.metrics to true. Because ENABLED is a static final
+ * constant, the JIT removes every instrumentation branch when it is disabled
+ * and collections do not allocate any counters.
+ *
+ * Counters other than the lock counters are plain fields updated under the
+ * same thread-safety guarantees as the collection they belong to, so readers
+ * on other threads may observe slightly stale values.
+ *
+ * @author Alice Quiros <email@aliceq.me>
+ */
+public final class CollectionMetrics implements CollectionMetricsMBean {
+
+    /**
+     * True if collections should record metrics
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("me.aliceq.collections.metrics");
+
+    /**
+     * Approximate size of an array slot holding a reference, assuming
+     * compressed oops
+     */
+    static final int REFERENCE_BYTES = 4;
+
+    private final String type;
+    long searches, comparisons;
+    long elementsShifted;
+    long resizes, bytesReallocated;
+    long fullRejections, emptyRejections;
+    private final AtomicInteger lockHolders = new AtomicInteger();
+    private final AtomicLong lockAcquisitions = new AtomicLong();
+    private final AtomicLong contendedLocks = new AtomicLong();
+
+    private CollectionMetrics(String type) {
+        this.type = type;
+    }
+
+    /**
+     * Creates the counters for a collection, or returns null if
+     * instrumentation is disabled
+     *
+     * @param type the type name reported through JMX
+     * @return new counters or null
+     */
+    static CollectionMetrics create(String type) {
+        return ENABLED ? new CollectionMetrics(type) : null;
+    }
+
+    /**
+     * Returns a comparator which delegates to c and counts every comparison
+     *
+     * @param c the comparator to count
+     * @return a counting comparator
+     */
+    Comparator counting(final Comparator c) {
+        return new Comparator() {
+
+            @Override
+            public int compare(Object o1, Object o2) {
+                comparisons++;
+                return c.compare(o1, o2);
+            }
+        };
+    }
+
+    void resized(long bytes) {
+        resizes++;
+        bytesReallocated += bytes;
+    }
+
+    /**
+     * Called before a thread attempts to take the lock of the collection
+     */
+    void lockRequested() {
+        lockAcquisitions.incrementAndGet();
+        if (lockHolders.getAndIncrement() > 0) {
+            contendedLocks.incrementAndGet();
+        }
+    }
+
+    /**
+     * Called after a thread released the lock of the collection
+     */
+    void lockReleased() {
+        lockHolders.decrementAndGet();
+    }
+
+    @Override
+    public long getSearches() {
+        return searches;
+    }
+
+    @Override
+    public long getComparisons() {
+        return comparisons;
+    }
+
+    @Override
+    public double getComparisonsPerSearch() {
+        long s = searches;
+        return s == 0 ? 0 : (double) comparisons / s;
+    }
+
+    @Override
+    public long getElementsShifted() {
+        return elementsShifted;
+    }
+
+    @Override
+    public long getResizes() {
+        return resizes;
+    }
+
+    @Override
+    public long getBytesReallocated() {
+        return bytesReallocated;
+    }
+
+    @Override
+    public long getLockAcquisitions() {
+        return lockAcquisitions.get();
+    }
+
+    @Override
+    public long getContendedLocks() {
+        return contendedLocks.get();
+    }
+
+    @Override
+    public long getFullRejections() {
+        return fullRejections;
+    }
+
+    @Override
+    public long getEmptyRejections() {
+        return emptyRejections;
+    }
+
+    @Override
+    public void reset() {
+        searches = 0;
+        comparisons = 0;
+        elementsShifted = 0;
+        resizes = 0;
+        bytesReallocated = 0;
+        fullRejections = 0;
+        emptyRejections = 0;
+        lockAcquisitions.set(0);
+        contendedLocks.set(0);
+    }
+
+    /**
+     * Returns a snapshot of the current counter values
+     *
+     * @return a snapshot of the counters
+     */
+    public CollectionStats snapshot() {
+        return new CollectionStats(searches, comparisons, elementsShifted, resizes, bytesReallocated,
+                lockAcquisitions.get(), contendedLocks.get(), fullRejections, emptyRejections);
+    }
+
+    /**
+     * Registers these counters with the platform MBean server under the name
+     * me.aliceq.collections:type=&lt;collection type&gt;,name=&lt;name&gt;
+     *
+     * @param name the name identifying the collection
+     * @return the name the MBean was registered under
+     * @throws JMException if the name is invalid or already registered
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("me.aliceq.collections:type=" + type + ",name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+}
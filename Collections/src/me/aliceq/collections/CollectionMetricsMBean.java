@@ -0,0 +1,112 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Alice Quiros <email@aliceq.me>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.aliceq.collections;
+
+/**
+ * Management interface exposing the counters of an instrumented collection
+ * through JMX.
+ *
+ * @see CollectionMetrics
+ * @author Alice Quiros <email@aliceq.me>
+ */
+public interface CollectionMetricsMBean {
+
+    /**
+     * Returns the number of positionOf searches performed
+     *
+     * @return the number of searches
+     */
+    public long getSearches();
+
+    /**
+     * Returns the number of Comparator calls made by searches
+     *
+     * @return the number of comparisons
+     */
+    public long getComparisons();
+
+    /**
+     * Returns the average number of comparisons per search
+     *
+     * @return the average number of comparisons per search
+     */
+    public double getComparisonsPerSearch();
+
+    /**
+     * Returns the number of elements moved by array shifts on insertion or
+     * removal
+     *
+     * @return the number of shifted elements
+     */
+    public long getElementsShifted();
+
+    /**
+     * Returns the number of times the backing storage was reallocated
+     *
+     * @return the number of resize events
+     */
+    public long getResizes();
+
+    /**
+     * Returns the approximate number of bytes allocated by resize events
+     *
+     * @return the number of bytes reallocated
+     */
+    public long getBytesReallocated();
+
+    /**
+     * Returns the number of lock acquisitions on the write path
+     *
+     * @return the number of lock acquisitions
+     */
+    public long getLockAcquisitions();
+
+    /**
+     * Returns the number of lock acquisitions which had to wait for another
+     * thread
+     *
+     * @return the number of contended lock acquisitions
+     */
+    public long getContendedLocks();
+
+    /**
+     * Returns the number of insertions rejected because the structure was
+     * full
+     *
+     * @return the number of full rejections
+     */
+    public long getFullRejections();
+
+    /**
+     * Returns the number of removals rejected because the structure was empty
+     *
+     * @return the number of empty rejections
+     */
+    public long getEmptyRejections();
+
+    /**
+     * Resets all counters to zero
+     */
+    public void reset();
+}
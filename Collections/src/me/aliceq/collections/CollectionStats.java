@@ -0,0 +1,111 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Alice Quiros <email@aliceq.me>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.aliceq.collections;
+
+/**
+ * An immutable snapshot of the counters of an instrumented collection. When
+ * instrumentation is disabled, collections return EMPTY.
+ *
+ * @see CollectionMetrics
+ * @author Alice Quiros <email@aliceq.me>
+ */
+public final class CollectionStats {
+
+    /**
+     * Statistics with every counter at zero
+     */
+    public static final CollectionStats EMPTY = new CollectionStats(0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+    private final long searches, comparisons;
+    private final long elementsShifted;
+    private final long resizes, bytesReallocated;
+    private final long lockAcquisitions, contendedLocks;
+    private final long fullRejections, emptyRejections;
+
+    CollectionStats(long searches, long comparisons, long elementsShifted, long resizes, long bytesReallocated,
+            long lockAcquisitions, long contendedLocks, long fullRejections, long emptyRejections) {
+        this.searches = searches;
+        this.comparisons = comparisons;
+        this.elementsShifted = elementsShifted;
+        this.resizes = resizes;
+        this.bytesReallocated = bytesReallocated;
+        this.lockAcquisitions = lockAcquisitions;
+        this.contendedLocks = contendedLocks;
+        this.fullRejections = fullRejections;
+        this.emptyRejections = emptyRejections;
+    }
+
+    public long getSearches() {
+        return searches;
+    }
+
+    public long getComparisons() {
+        return comparisons;
+    }
+
+    public double getComparisonsPerSearch() {
+        return searches == 0 ? 0 : (double) comparisons / searches;
+    }
+
+    public long getElementsShifted() {
+        return elementsShifted;
+    }
+
+    public long getResizes() {
+        return resizes;
+    }
+
+    public long getBytesReallocated() {
+        return bytesReallocated;
+    }
+
+    public long getLockAcquisitions() {
+        return lockAcquisitions;
+    }
+
+    public long getContendedLocks() {
+        return contendedLocks;
+    }
+
+    public long getFullRejections() {
+        return fullRejections;
+    }
+
+    public long getEmptyRejections() {
+        return emptyRejections;
+    }
+
+    @Override
+    public String toString() {
+        return "{searches=" + searches
+                + ",comparisons=" + comparisons
+                + ",elementsShifted=" + elementsShifted
+                + ",resizes=" + resizes
+                + ",bytesReallocated=" + bytesReallocated
+                + ",lockAcquisitions=" + lockAcquisitions
+                + ",contendedLocks=" + contendedLocks
+                + ",fullRejections=" + fullRejections
+                + ",emptyRejections=" + emptyRejections + "}";
+    }
+}
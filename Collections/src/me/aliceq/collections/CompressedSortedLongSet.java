@@ -0,0 +1,774 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Alice Quiros <email@aliceq.me>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.aliceq.collections;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+
+/**
+ * A compressed, ascending set of long values. Values are stored in blocks of
+ * up to 128. Each block keeps its smallest value uncompressed and bit-packs the
+ * gaps between consecutive values using the fewest bits which fit the largest
+ * gap of the block, so runs of consecutive values take no space at all.
+ *
+ * A search binary-searches the per-block minimums and then decodes a single
+ * block, and a cumulative count per block answers rank queries and
+ * get(index). Iteration decodes one block at a time. Single additions and
+ * removals only re-encode the affected block; addAll merges the new values
+ * with the existing ones in one streaming pass.
+ *
+ * @author Alice Quiros <email@aliceq.me>
+ */
+public class CompressedSortedLongSet extends AbstractSortedList<Long> implements Set<Long> {
+
+    static final int BLOCK_SIZE = 128;
+
+    private long[] mins;
+    private byte[] widths;
+    private long[][] words;
+    private int[] starts;
+    private int blocks;
+
+    /**
+     * Creates an empty set
+     */
+    public CompressedSortedLongSet() {
+        this.mins = new long[4];
+        this.widths = new byte[4];
+        this.words = new long[4][];
+        this.starts = new int[5];
+        this.blocks = 0;
+    }
+
+    /**
+     * Creates a set holding the given values, which may be in any order and
+     * contain duplicates
+     *
+     * @param values the values to add
+     */
+    public CompressedSortedLongSet(long[] values) {
+        this();
+        addAll(values);
+    }
+
+    /**
+     * Creates a set holding the values of a collection
+     *
+     * @param c the values to add
+     */
+    public CompressedSortedLongSet(Collection<? extends Number> c) {
+        this();
+        addAllNumbers(c);
+    }
+
+    // Block encoding
+    //
+    private static long gap(long previous, long value) {
+        return value - previous - 1;
+    }
+
+    /**
+     * Encodes n ascending values starting at vals[from] into block b
+     */
+    private void setBlock(int b, long[] vals, int from, int n) {
+        encodeBlock(vals, from, n, b, mins, widths, words);
+    }
+
+    private static void encodeBlock(long[] vals, int from, int n, int b, long[] mins, byte[] widths, long[][] words) {
+        long or = 0;
+        for (int i = 1; i < n; i++) {
+            or |= gap(vals[from + i - 1], vals[from + i]);
+        }
+        int w = 64 - Long.numberOfLeadingZeros(or);
+        long[] ws = new long[(int) (((long) (n - 1) * w + 63) >>> 6)];
+        if (w > 0) {
+            long bit = 0;
+            for (int i = 1; i < n; i++) {
+                long d = gap(vals[from + i - 1], vals[from + i]);
+                int wi = (int) (bit >>> 6), off = (int) (bit & 63);
+                ws[wi] |= d << off;
+                if (off + w > 64) {
+                    ws[wi + 1] |= d >>> (64 - off);
+                }
+                bit += w;
+            }
+        }
+        mins[b] = vals[from];
+        widths[b] = (byte) w;
+        words[b] = ws;
+    }
+
+    /**
+     * Decodes block b into out, returning the number of values in the block
+     */
+    private int decode(int b, long[] out) {
+        int n = starts[b + 1] - starts[b];
+        long v = mins[b];
+        out[0] = v;
+        int w = widths[b];
+        if (w == 0) {
+            for (int i = 1; i < n; i++) {
+                out[i] = ++v;
+            }
+        } else {
+            long[] ws = words[b];
+            long mask = w == 64 ? -1L : (1L << w) - 1;
+            long bit = 0;
+            for (int i = 1; i < n; i++) {
+                int wi = (int) (bit >>> 6), off = (int) (bit & 63);
+                long d = ws[wi] >>> off;
+                if (off + w > 64) {
+                    d |= ws[wi + 1] << (64 - off);
+                }
+                v += (d & mask) + 1;
+                out[i] = v;
+                bit += w;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Returns the value at offset i of block b
+     */
+    private long valueInBlock(int b, int i) {
+        long v = mins[b];
+        int w = widths[b];
+        if (w == 0) {
+            return v + i;
+        }
+        long[] ws = words[b];
+        long mask = w == 64 ? -1L : (1L << w) - 1;
+        long bit = 0;
+        for (int k = 1; k <= i; k++) {
+            int wi = (int) (bit >>> 6), off = (int) (bit & 63);
+            long d = ws[wi] >>> off;
+            if (off + w > 64) {
+                d |= ws[wi + 1] << (64 - off);
+            }
+            v += (d & mask) + 1;
+            bit += w;
+        }
+        return v;
+    }
+
+    /**
+     * Scans block b for the first value which is not less than v. Returns its
+     * offset shifted left by one, with the lowest bit set if it equals v.
+     */
+    private int scanBlock(int b, long v) {
+        int n = starts[b + 1] - starts[b];
+        long x = mins[b];
+        if (x >= v) {
+            return x == v ? 1 : 0;
+        }
+        int w = widths[b];
+        if (w == 0) {
+            long offset = v - x;
+            return Long.compareUnsigned(offset, n) >= 0 ? n << 1 : ((int) offset << 1) | 1;
+        }
+        long[] ws = words[b];
+        long mask = w == 64 ? -1L : (1L << w) - 1;
+        long bit = 0;
+        for (int i = 1; i < n; i++) {
+            int wi = (int) (bit >>> 6), off = (int) (bit & 63);
+            long d = ws[wi] >>> off;
+            if (off + w > 64) {
+                d |= ws[wi + 1] << (64 - off);
+            }
+            x += (d & mask) + 1;
+            if (x >= v) {
+                return (i << 1) | (x == v ? 1 : 0);
+            }
+            bit += w;
+        }
+        return n << 1;
+    }
+
+    /**
+     * Returns the last block whose minimum is not greater than v, or -1
+     */
+    private int findBlock(long v) {
+        int pa = 0, pb = blocks;
+        while (pa < pb) {
+            int mid = (pa + pb) >>> 1;
+            if (mins[mid] <= v) {
+                pa = mid + 1;
+            } else {
+                pb = mid;
+            }
+        }
+        return pa - 1;
+    }
+
+    /**
+     * Returns the block holding the element at the given index
+     */
+    private int blockOfIndex(int index) {
+        int pa = 0, pb = blocks;
+        while (pa < pb) {
+            int mid = (pa + pb) >>> 1;
+            if (starts[mid + 1] <= index) {
+                pa = mid + 1;
+            } else {
+                pb = mid;
+            }
+        }
+        return pa;
+    }
+
+    /**
+     * Opens an empty slot for a block at position b
+     */
+    private void insertBlockSlot(int b) {
+        if (blocks == mins.length) {
+            int capacity = blocks * 2;
+            mins = Arrays.copyOf(mins, capacity);
+            widths = Arrays.copyOf(widths, capacity);
+            words = Arrays.copyOf(words, capacity);
+            starts = Arrays.copyOf(starts, capacity + 1);
+        }
+        System.arraycopy(mins, b, mins, b + 1, blocks - b);
+        System.arraycopy(widths, b, widths, b + 1, blocks - b);
+        System.arraycopy(words, b, words, b + 1, blocks - b);
+        System.arraycopy(starts, b, starts, b + 1, blocks - b + 1);
+        blocks++;
+    }
+
+    /**
+     * Removes the slot of block b, which must be empty
+     */
+    private void removeBlockSlot(int b) {
+        System.arraycopy(mins, b + 1, mins, b, blocks - b - 1);
+        System.arraycopy(widths, b + 1, widths, b, blocks - b - 1);
+        System.arraycopy(words, b + 1, words, b, blocks - b - 1);
+        System.arraycopy(starts, b + 1, starts, b, blocks - b);
+        blocks--;
+        words[blocks] = null;
+    }
+
+    private void shiftStarts(int fromBlock, int delta) {
+        for (int i = fromBlock; i <= blocks; i++) {
+            starts[i] += delta;
+        }
+    }
+
+    // Primitive operations
+    //
+    /**
+     * Returns true if the set contains the value
+     *
+     * @param v the value to look for
+     * @return true if the value is in the set
+     */
+    public boolean contains(long v) {
+        int b = findBlock(v);
+        return b >= 0 && (scanBlock(b, v) & 1) != 0;
+    }
+
+    /**
+     * Returns the number of values in the set which are less than v. This is
+     * also the index of v if it is in the set.
+     *
+     * @param v the value to rank
+     * @return the number of values less than v
+     */
+    public int rank(long v) {
+        int b = findBlock(v);
+        return b < 0 ? 0 : starts[b] + (scanBlock(b, v) >>> 1);
+    }
+
+    /**
+     * Returns the value at the specified position in the set
+     *
+     * @param index index of the value to return
+     * @return the value at the specified position
+     * @throws IndexOutOfBoundsException if the index is out of range (index < 0
+     * || index >= size())
+     */
+    public long getLong(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException();
+        }
+        int b = blockOfIndex(index);
+        return valueInBlock(b, index - starts[b]);
+    }
+
+    /**
+     * Adds a value to the set
+     *
+     * @param v the value to add
+     * @return true if the value was added, false if it was already present
+     */
+    public boolean add(long v) {
+        if (blocks == 0) {
+            insertBlockSlot(0);
+            setBlock(0, new long[]{v}, 0, 1);
+            starts[1] = 1;
+            modCount++;
+            return true;
+        }
+
+        int b = Math.max(findBlock(v), 0);
+        long[] buf = new long[BLOCK_SIZE + 1];
+        int n = decode(b, buf);
+        int i = Arrays.binarySearch(buf, 0, n, v);
+        if (i >= 0) {
+            return false;
+        }
+        i = -i - 1;
+        System.arraycopy(buf, i, buf, i + 1, n - i);
+        buf[i] = v;
+        n++;
+        modCount++;
+
+        if (n <= BLOCK_SIZE) {
+            setBlock(b, buf, 0, n);
+            shiftStarts(b + 1, 1);
+        } else {
+            // Split the block in half
+            int half = n / 2;
+            insertBlockSlot(b + 1);
+            setBlock(b, buf, 0, half);
+            setBlock(b + 1, buf, half, n - half);
+            starts[b + 1] = starts[b] + half;
+            shiftStarts(b + 2, 1);
+        }
+        return true;
+    }
+
+    /**
+     * Removes a value from the set
+     *
+     * @param v the value to remove
+     * @return true if the value was removed, false if it was not present
+     */
+    public boolean removeLong(long v) {
+        int b = findBlock(v);
+        if (b < 0 || (scanBlock(b, v) & 1) == 0) {
+            return false;
+        }
+        modCount++;
+
+        long[] buf = new long[BLOCK_SIZE];
+        int n = decode(b, buf);
+        int i = Arrays.binarySearch(buf, 0, n, v);
+        System.arraycopy(buf, i + 1, buf, i, n - i - 1);
+        n--;
+        if (n == 0) {
+            removeBlockSlot(b);
+            shiftStarts(b, -1);
+        } else {
+            setBlock(b, buf, 0, n);
+            shiftStarts(b + 1, -1);
+        }
+        return true;
+    }
+
+    /**
+     * Adds values to the set in a single merge pass. The values may be in any
+     * order and contain duplicates.
+     *
+     * @param values the values to add
+     * @return true if any value was added
+     */
+    public boolean addAll(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        Builder builder = new Builder(blocks + (sorted.length + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        long[] buf = new long[BLOCK_SIZE];
+        int j = 0;
+        for (int b = 0; b < blocks; b++) {
+            int n = decode(b, buf);
+            for (int i = 0; i < n; i++) {
+                long v = buf[i];
+                while (j < sorted.length && sorted[j] < v) {
+                    builder.append(sorted[j++]);
+                }
+                builder.append(v);
+            }
+        }
+        while (j < sorted.length) {
+            builder.append(sorted[j++]);
+        }
+        builder.flush();
+
+        boolean modified = builder.count != size();
+        if (modified) {
+            modCount++;
+            mins = builder.mins;
+            widths = builder.widths;
+            words = builder.words;
+            starts = builder.starts;
+            blocks = builder.blocks;
+        }
+        return modified;
+    }
+
+    private boolean addAllNumbers(Collection<? extends Number> c) {
+        long[] values = new long[c.size()];
+        int i = 0;
+        for (Number n : c) {
+            values[i++] = n.longValue();
+        }
+        return addAll(values);
+    }
+
+    /**
+     * Accumulates ascending values into full blocks
+     */
+    private static final class Builder {
+
+        long[] mins;
+        byte[] widths;
+        long[][] words;
+        int[] starts;
+        int blocks = 0, count = 0;
+        final long[] pending = new long[BLOCK_SIZE];
+        int pendingCount = 0;
+        boolean any = false;
+        long last;
+
+        Builder(int capacity) {
+            capacity = Math.max(capacity, 4);
+            mins = new long[capacity];
+            widths = new byte[capacity];
+            words = new long[capacity][];
+            starts = new int[capacity + 1];
+        }
+
+        void append(long v) {
+            if (any && v == last) {
+                return;
+            }
+            any = true;
+            last = v;
+            pending[pendingCount++] = v;
+            if (pendingCount == BLOCK_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (pendingCount == 0) {
+                return;
+            }
+            if (blocks == mins.length) {
+                int capacity = blocks * 2;
+                mins = Arrays.copyOf(mins, capacity);
+                widths = Arrays.copyOf(widths, capacity);
+                words = Arrays.copyOf(words, capacity);
+                starts = Arrays.copyOf(starts, capacity + 1);
+            }
+            encodeBlock(pending, 0, pendingCount, blocks, mins, widths, words);
+            count += pendingCount;
+            blocks++;
+            starts[blocks] = count;
+            pendingCount = 0;
+        }
+    }
+
+    /**
+     * Returns an iterator over the values of the set in ascending order which
+     * does not box them
+     *
+     * @return a primitive iterator over the set
+     */
+    public PrimitiveIterator.OfLong longIterator() {
+        return new BlockIterator();
+    }
+
+    private class BlockIterator implements PrimitiveIterator.OfLong {
+
+        private final long[] buf = new long[BLOCK_SIZE];
+        private final int expectedModCount = modCount;
+        private int block = 0, offset = 0, count = 0;
+
+        @Override
+        public boolean hasNext() {
+            return offset < count || block < blocks;
+        }
+
+        @Override
+        public long nextLong() {
+            if (expectedModCount != modCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (offset == count) {
+                if (block >= blocks) {
+                    throw new NoSuchElementException();
+                }
+                count = decode(block++, buf);
+                offset = 0;
+            }
+            return buf[offset++];
+        }
+    }
+
+    /**
+     * Returns an estimate of the heap memory used by the set in bytes
+     *
+     * @return the approximate size of the set in memory
+     */
+    public long sizeInBytes() {
+        long bytes = 16 + 16L * 4 + (long) mins.length * (8 + 1 + 4 + 4) + 4;
+        for (int b = 0; b < blocks; b++) {
+            bytes += 16 + 8L * words[b].length;
+        }
+        return bytes;
+    }
+
+    // SortedList and Set
+    //
+    @Override
+    public int size() {
+        return starts[blocks];
+    }
+
+    @Override
+    public Long get(int index) {
+        return getLong(index);
+    }
+
+    @Override
+    public Comparator getComparator() {
+        return null;
+    }
+
+    @Override
+    public boolean isAscending() {
+        return true;
+    }
+
+    @Override
+    public boolean add(Long e) {
+        return add(e.longValue());
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Long> c) {
+        return addAllNumbers(c);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Long && contains(((Long) o).longValue());
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof Long && removeLong(((Long) o).longValue());
+    }
+
+    @Override
+    public Long remove(int index) {
+        long v = getLong(index);
+        removeLong(v);
+        return v;
+    }
+
+    @Override
+    public int positionOf(Object o) {
+        return rank(((Number) o).longValue());
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof Long)) {
+            return -1;
+        }
+        long v = (Long) o;
+        return contains(v) ? rank(v) : -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    @Override
+    public void clear() {
+        modCount++;
+        this.mins = new long[4];
+        this.widths = new byte[4];
+        this.words = new long[4][];
+        this.starts = new int[5];
+        this.blocks = 0;
+    }
+
+    @Override
+    public java.util.Iterator<Long> iterator() {
+        return longIterator();
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] array = new Object[size()];
+        PrimitiveIterator.OfLong it = longIterator();
+        for (int i = 0; i < array.length; i++) {
+            array[i] = it.nextLong();
+        }
+        return array;
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        int size = size();
+        if (a.length < size) {
+            a = (T[]) java.lang.reflect.Array.newInstance(a.getClass().getComponentType(), size);
+        }
+        PrimitiveIterator.OfLong it = longIterator();
+        for (int i = 0; i < size; i++) {
+            a[i] = (T) (Long) it.nextLong();
+        }
+        if (a.length > size) {
+            a[size] = null;
+        }
+        return a;
+    }
+
+    /**
+     * Returns the values of the set as an ascending array
+     *
+     * @return the values of the set
+     */
+    public long[] toLongArray() {
+        long[] array = new long[size()];
+        int i = 0;
+        long[] buf = new long[BLOCK_SIZE];
+        for (int b = 0; b < blocks; b++) {
+            int n = decode(b, buf);
+            System.arraycopy(buf, 0, array, i, n);
+            i += n;
+        }
+        return array;
+    }
+
+    @Override
+    public SortedList<Long> cloneRange(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || fromIndex > size() || toIndex < 0 || toIndex > size()) {
+            throw new IndexOutOfBoundsException();
+        } else if (fromIndex > toIndex) {
+            throw new IllegalArgumentException();
+        }
+        return new CompressedSortedLongSet(Arrays.copyOfRange(toLongArray(), fromIndex, toIndex));
+    }
+
+    /**
+     * Returns an uncompressed descending SortedArrayList holding the values
+     * between fromIndex (inclusive) and toIndex (exclusive), since compressed
+     * sets are always ascending.
+     */
+    @Override
+    public SortedList<Long> cloneReverse(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || fromIndex > size() || toIndex < 0 || toIndex > size()) {
+            throw new IndexOutOfBoundsException();
+        } else if (fromIndex > toIndex) {
+            throw new IllegalArgumentException();
+        }
+        long[] values = toLongArray();
+        SortedArrayList<Long> newList = new SortedArrayList<>(toIndex - fromIndex, false);
+
+        // Values are added largest first, so each add appends without shifting
+        for (int i = toIndex - 1; i >= fromIndex; i--) {
+            newList.add(values[i]);
+        }
+        return newList;
+    }
+
+    /**
+     * Compares the specified object with this set for equality. As required by
+     * Set, returns true if the object is a set of the same size containing
+     * every element of this set. Two CompressedSortedLongSets are compared
+     * without boxing.
+     *
+     * @param o object to compare with
+     * @return true if the object is a set equal to this one
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof Set)) {
+            return false;
+        }
+        Set<?> other = (Set<?>) o;
+        if (other.size() != size()) {
+            return false;
+        }
+        if (o instanceof CompressedSortedLongSet) {
+            PrimitiveIterator.OfLong a = longIterator();
+            PrimitiveIterator.OfLong b = ((CompressedSortedLongSet) o).longIterator();
+            while (a.hasNext()) {
+                if (a.nextLong() != b.nextLong()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        for (Object e : other) {
+            if (!contains(e)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the sum of the hash codes of the elements, as required by Set.
+     * This is the same value a set of boxed Longs returns.
+     *
+     * @return the hash code of the set
+     */
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        PrimitiveIterator.OfLong it = longIterator();
+        while (it.hasNext()) {
+            hash += Long.hashCode(it.nextLong());
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        if (size() == 0) {
+            return "[}";
+        }
+        StringBuilder s = new StringBuilder("[");
+        PrimitiveIterator.OfLong it = longIterator();
+        s.append(it.nextLong());
+        while (it.hasNext()) {
+            s.append(',').append(it.nextLong());
+        }
+        return s.append('}').toString();
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Alice Quiros <email@aliceq.me>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.aliceq.collections;
+
+import java.util.function.LongSupplier;
+
+/**
+ * A CircularBuffer whose elements expire. Every slot carries the time at
+ * which its element expires, and expiry times never decrease from the oldest
+ * to the newest element, so the expired elements always sit together at the
+ * tail of the buffer.
+ *
+ * Every operation first drops the expired elements by moving the tail past
+ * them, which takes a binary search across the two segments of the ring, so
+ * expired elements are never visible to readers and their slots are free for
+ * new elements at once. Clearing the references held by dropped slots is
+ * spread over later operations, at most EVICTION_BUDGET slots each, so no
+ * single operation pays for a large batch of expirations and no sweeper
+ * thread is needed.
+ *
+ * Times are in milliseconds of the buffer's clock, which by default is
+ * System.nanoTime converted to milliseconds and therefore never goes back.
+ *
+ * @author Alice Quiros <email@aliceq.me>
+ * @param <E> the type of elements in this structure
+ */
+public class ExpiringCircularBuffer<E> extends CircularBuffer<E> {
+
+    /**
+     * The largest number of dropped slots cleared by a single operation
+     */
+    public static final int EVICTION_BUDGET = 8;
+
+    private static final LongSupplier MONOTONIC_CLOCK = new LongSupplier() {
+
+        @Override
+        public long getAsLong() {
+            return System.nanoTime() / 1000000;
+        }
+    };
+
+    protected final long[] expiries;
+    protected final long ttl;
+    protected final LongSupplier clock;
+    private int garbage = 0;
+
+    /**
+     * Creates an expiring buffer on the monotonic clock
+     *
+     * @param size the size of the buffer
+     * @param ttl the time in milliseconds elements stay in the buffer
+     */
+    public ExpiringCircularBuffer(int size, long ttl) {
+        this(size, ttl, MONOTONIC_CLOCK);
+    }
+
+    /**
+     * Creates an expiring buffer
+     *
+     * @param size the size of the buffer
+     * @param ttl the time elements stay in the buffer, in units of the clock
+     * @param clock the clock deciding when elements expire. It must not go
+     * back in time.
+     * @throws IllegalArgumentException if ttl is negative
+     */
+    public ExpiringCircularBuffer(int size, long ttl, LongSupplier clock) {
+        super(size);
+        if (ttl < 0) {
+            throw new IllegalArgumentException("TTL must not be negative");
+        } else if (clock == null) {
+            throw new NullPointerException();
+        }
+        this.expiries = new long[size];
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the slot of the element at a position relative to the tail
+     */
+    private int physical(int index) {
+        int i = (tail >= data.length ? tail - data.length : tail) + index;
+        return i >= data.length ? i - data.length : i;
+    }
+
+    /**
+     * Drops the expired elements at the tail, then clears up to
+     * EVICTION_BUDGET of the slots they left behind
+     */
+    private void expire() {
+        if (count > 0) {
+            long now = clock.getAsLong();
+            if (expiries[physical(0)] <= now) {
+                // Find the first live element in the older segment, then in the
+                // wrapped one
+                int start = physical(0);
+                int first = Math.min(count, data.length - start);
+                int n = firstLive(start, start + first, now) - start;
+                if (n == first) {
+                    n += firstLive(0, count - first, now);
+                }
+
+                tail = physical(n);
+                count -= n;
+                garbage += n;
+                modCount++;
+            }
+        }
+        if (garbage > 0) {
+            // The dropped slots are the free slots just behind the tail
+            int slot = physical(0) - garbage;
+            if (slot < 0) {
+                slot += data.length;
+            }
+            for (int cleared = Math.min(garbage, EVICTION_BUDGET); cleared > 0; cleared--) {
+                data[slot] = null;
+                slot = slot + 1 == data.length ? 0 : slot + 1;
+                garbage--;
+            }
+        }
+    }
+
+    private int firstLive(int from, int to, long now) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (expiries[mid] <= now) {
+                from = mid + 1;
+            } else {
+                to = mid;
+            }
+        }
+        return from;
+    }
+
+    /**
+     * Pushes an element which expires after the buffer's TTL
+     *
+     * @param e element to push
+     * @throws IllegalStateException if the buffer is full of live elements
+     */
+    @Override
+    public synchronized void push(E e) {
+        long expiry = clock.getAsLong() + ttl;
+        if (count > 0) {
+            // Never expire before an older element, even if the clock stalls
+            expiry = Math.max(expiry, expiries[physical(count - 1)]);
+        }
+        push(e, expiry);
+    }
+
+    /**
+     * Pushes an element which expires at the given time
+     *
+     * @param e element to push
+     * @param expiresAt the time of the clock at which the element expires
+     * @throws IllegalStateException if the buffer is full of live elements
+     * @throws IllegalArgumentException if the element would expire before the
+     * newest element of the buffer
+     */
+    public synchronized void push(E e, long expiresAt) {
+        expire();
+        if (count > 0 && expiresAt < expiries[physical(count - 1)]) {
+            throw new IllegalArgumentException("Expiry times must not decrease");
+        }
+        int slot = head >= data.length ? 0 : head;
+        super.push(e);
+        expiries[slot] = expiresAt;
+
+        // Pushing into a dropped slot overwrites its stale reference
+        garbage = Math.min(garbage, data.length - count);
+    }
+
+    /**
+     * Returns the time at which an element expires
+     *
+     * @param index the index of the element relative to the tail pointer
+     * @return the expiry time of the element
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public synchronized long expiryAt(int index) {
+        expire();
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException();
+        }
+        return expiries[physical(index)];
+    }
+
+    @Override
+    public synchronized E pop() {
+        expire();
+        return super.pop();
+    }
+
+    @Override
+    public synchronized int count() {
+        expire();
+        return count;
+    }
+
+    // The following check and act under one lock, so the elements they check
+    // can not expire before they act
+    @Override
+    public synchronized boolean offer(E e) {
+        return super.offer(e);
+    }
+
+    @Override
+    public synchronized E poll() {
+        return super.poll();
+    }
+
+    @Override
+    public synchronized E peekAhead(int index) {
+        return super.peekAhead(index);
+    }
+
+    @Override
+    public synchronized E element(int index) {
+        expire();
+        return super.element(index);
+    }
+
+    @Override
+    public synchronized Object[] toArray() {
+        expire();
+        return super.toArray();
+    }
+
+    @Override
+    public synchronized void clear() {
+        garbage = 0;
+        super.clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        expire();
+        return super.toString();
+    }
+}
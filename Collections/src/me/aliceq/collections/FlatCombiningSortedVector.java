@@ -0,0 +1,332 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Alice Quiros <email@aliceq.me>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.aliceq.collections;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A SortedVector whose writes are applied by flat combining. Instead of taking
+ * the monitor for each add or remove, a thread publishes its request in a
+ * slot of a shared publication array and tries to become the combiner. The
+ * combiner takes the monitor once, collects every published request, and
+ * applies them as one batch: the added elements are sorted and merged into
+ * the backing array in a single pass, and the removed elements are compacted
+ * out in another. The other threads spin briefly, then wait on the combiner
+ * lock, and usually find their request done once they get it.
+ *
+ * Under contention this turns one binary search and arraycopy per thread into
+ * one merge per batch, and keeps the backing array in the combiner's cache.
+ * Without contention every request is applied by its own thread, as with
+ * SortedVector.
+ *
+ * @author Alice Quiros <email@aliceq.me>
+ * @param <E> the type of elements in this list
+ */
+public class FlatCombiningSortedVector<E> extends SortedVector<E> {
+
+    private static final int ADD = 0, REMOVE = 1;
+    private static final int MAX_SPINS = 128;
+
+    private final AtomicReferenceArray<Request> slots;
+    private final ReentrantLock combiner = new ReentrantLock();
+    private final Comparator<E> order;
+
+    /**
+     * A published add or remove. The combiner writes result before the
+     * volatile write to done, which the publishing thread reads.
+     */
+    private static final class Request {
+
+        final int op;
+        final Object item;
+        boolean result;
+        volatile boolean done;
+
+        Request(int op, Object item) {
+            this.op = op;
+            this.item = item;
+        }
+    }
+
+    /**
+     * Constructor creating an empty FlatCombiningSortedVector with two
+     * publication slots per available processor
+     */
+    public FlatCombiningSortedVector() {
+        this(0, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor creating an empty FlatCombiningSortedVector in ascending
+     * order
+     *
+     * @param initCapacity the initial capacity of the list
+     * @param slots the number of publication slots. Threads which find every
+     * slot taken apply their request under the monitor directly.
+     * @throws IllegalArgumentException if slots is less than 1
+     */
+    public FlatCombiningSortedVector(int initCapacity, int slots) {
+        super(initCapacity, 0);
+        if (slots < 1) {
+            throw new IllegalArgumentException("Slot count must be positive");
+        }
+        this.slots = new AtomicReferenceArray(slots);
+        this.order = storedOrder();
+    }
+
+    @Override
+    public boolean add(E e) {
+        Object event = CollectionEvents.beginAdd();
+        boolean added = execute(new Request(ADD, e));
+        CollectionEvents.endAdd(event, this, size);
+        return added;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return execute(new Request(REMOVE, o));
+    }
+
+    /**
+     * Publishes a request and waits until it has been applied, combining the
+     * pending requests of all threads whenever the combiner lock is free
+     */
+    private boolean execute(Request request) {
+        if (!publish(request)) {
+            // Every slot is taken, so apply the request alone
+            synchronized (this) {
+                apply(new Request[]{request}, 1);
+            }
+            return request.result;
+        }
+
+        // Spin briefly in case the current combiner picks the request up,
+        // then queue on the combiner lock
+        for (int spins = 0; spins < MAX_SPINS && !request.done; spins++) {
+            if (combiner.tryLock()) {
+                try {
+                    combine();
+                } finally {
+                    combiner.unlock();
+                }
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+        if (!request.done) {
+            combiner.lock();
+            try {
+                if (!request.done) {
+                    combine();
+                }
+            } finally {
+                combiner.unlock();
+            }
+        }
+        return request.result;
+    }
+
+    /**
+     * Places a request in a free slot, starting from a slot chosen by the
+     * calling thread's id
+     *
+     * @return false if every slot is taken
+     */
+    private boolean publish(Request request) {
+        int n = slots.length();
+        int start = (int) Math.floorMod((Thread.currentThread().getId() * 0x9E3779B9L) >>> 16, (long) n);
+        for (int i = 0; i < n; i++) {
+            int slot = start + i < n ? start + i : start + i - n;
+            if (slots.get(slot) == null && slots.compareAndSet(slot, null, request)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Collects and applies every published request. Only called by the
+     * holder of the combiner lock.
+     */
+    private void combine() {
+        if (CollectionMetrics.ENABLED) {
+            metrics.lockRequested();
+        }
+        try {
+            synchronized (this) {
+                int n = slots.length();
+                Request[] batch = new Request[n];
+                int count = 0;
+                for (int i = 0; i < n; i++) {
+                    Request request = slots.get(i);
+                    if (request != null) {
+                        batch[count++] = request;
+                        slots.set(i, null);
+                    }
+                }
+                if (count > 0) {
+                    apply(batch, count);
+                }
+            }
+        } finally {
+            if (CollectionMetrics.ENABLED) {
+                metrics.lockReleased();
+            }
+        }
+    }
+
+    /**
+     * Applies a batch of requests: the adds are merged in first, then the
+     * removes are compacted out. Must be called while holding the monitor.
+     */
+    private void apply(Request[] batch, int count) {
+        // Gather and sort the added elements
+        Object[] added = new Object[count];
+        int adds = 0;
+        for (int i = 0; i < count; i++) {
+            if (batch[i].op == ADD) {
+                added[adds++] = batch[i].item;
+                batch[i].result = true;
+            }
+        }
+        if (adds > 0) {
+            Arrays.sort(added, 0, adds, (Comparator) order);
+            mergeSorted(added, adds);
+        }
+
+        // Pick a distinct matching index for every removed element
+        BitSet removed = null;
+        for (int i = 0; i < count; i++) {
+            if (batch[i].op == REMOVE) {
+                if (removed == null) {
+                    removed = new BitSet();
+                }
+                int index = findUnmarked(batch[i].item, removed);
+                if (index >= 0) {
+                    removed.set(index);
+                    batch[i].result = true;
+                }
+            }
+        }
+        if (removed != null && !removed.isEmpty()) {
+            compact(removed);
+        }
+
+        for (int i = 0; i < count; i++) {
+            batch[i].done = true;
+        }
+    }
+
+    /**
+     * Merges a sorted run of elements into the list in one pass from the back,
+     * moving each element at most once
+     */
+    private void mergeSorted(Object[] added, int adds) {
+        // Increment count
+        modCount++;
+
+        int total = size + adds;
+        E[] target = data;
+        if (total > data.length) {
+            target = (E[]) new Object[Math.max(total, growthPolicy.grow(data.length, total))];
+            resized(data.length, target.length);
+        }
+        // From the largest added element down, find where it goes with a
+        // binary search and move the block of larger elements behind it
+        int i = size, k = total;
+        for (int j = adds - 1; j >= 0; j--) {
+            E e = (E) added[j];
+            int pa = 0, pb = i;
+            while (pa < pb) {
+                int mid = (pa + pb) >>> 1;
+                if (order.compare(data[mid], e) > 0) {
+                    pb = mid;
+                } else {
+                    pa = mid + 1;
+                }
+            }
+            k -= i - pa;
+            System.arraycopy(data, pa, target, k, i - pa);
+            target[--k] = e;
+            i = pa;
+        }
+        if (target != data) {
+            System.arraycopy(data, 0, target, 0, i);
+        }
+        if (CollectionMetrics.ENABLED) {
+            metrics.elementsShifted += total - i;
+        }
+        data = target;
+        size = total;
+    }
+
+    /**
+     * Returns the index of an element equal to o which has not been picked by
+     * an earlier remove of the same batch, or -1
+     */
+    private int findUnmarked(Object o, BitSet removed) {
+        if (size == 0) {
+            return -1;
+        }
+        int index = Math.min(positionOf(o), size - 1);
+
+        // Walk back to the first element ordered equal to o
+        while (index > 0 && order.compare(data[index - 1], (E) o) == 0) {
+            index--;
+        }
+        for (; index < size && order.compare(data[index], (E) o) == 0; index++) {
+            if (!removed.get(index) && o.equals(data[index])) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Removes the marked indices, shifting each surviving segment once
+     */
+    private void compact(BitSet removed) {
+        // Increment count
+        modCount++;
+
+        int first = removed.nextSetBit(0);
+        int k = first;
+        for (int r = first; r >= 0 && r < size;) {
+            int next = removed.nextSetBit(r + 1);
+            int end = next < 0 || next > size ? size : next;
+            System.arraycopy(data, r + 1, data, k, end - r - 1);
+            k += end - r - 1;
+            r = next;
+        }
+        if (CollectionMetrics.ENABLED) {
+            metrics.elementsShifted += size - first;
+        }
+        Arrays.fill(data, k, size, null);
+        size = k;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Alice Quiros <email@aliceq.me>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.aliceq.collections;
+
+import java.util.Comparator;
+import java.util.function.ToLongFunction;
+
+/**
+ * An immutable snapshot of a SortedKeyedArrayList. The Eytzinger search tree
+ * holds the primitive keys of the elements instead of the elements themselves,
+ * so a lookup walks a single long array and only dereferences an element once
+ * its position is known.
+ *
+ * @author Alice Quiros <email@aliceq.me>
+ * @param <E> the type of elements in this list
+ */
+public class FrozenKeyedSortedList<E> extends FrozenSortedList<E> {
+
+    protected final ToLongFunction<? super E> keyExtractor;
+    private final long[] keyTree;
+    private final long[] sortedKeys;
+
+    /**
+     * Creates a frozen copy of the first size elements of a keyed list
+     *
+     * @param data the sorted elements
+     * @param keys the keys of the sorted elements
+     * @param size the number of elements to copy
+     * @param keyExtractor the function used to extract a key from each element
+     * @param comparator the comparator ordering the elements
+     * @param sortMode -1 if the elements are ascending, 1 if descending
+     */
+    FrozenKeyedSortedList(Object[] data, long[] keys, int size, ToLongFunction<? super E> keyExtractor, Comparator comparator, int sortMode) {
+        super(data, size, comparator, sortMode, false);
+        this.keyExtractor = keyExtractor;
+        this.sortedKeys = keys;
+        this.keyTree = new long[size + 1];
+        buildTree(0, 1);
+    }
+
+    private int buildTree(int i, int k) {
+        if (k <= size) {
+            i = buildTree(i, 2 * k);
+            keyTree[k] = sortedKeys[i];
+            rank[k] = i++;
+            i = buildTree(i, 2 * k + 1);
+        }
+        return i;
+    }
+
+    @Override
+    public int positionOf(Object o) {
+        return positionOfKey(keyExtractor.applyAsLong((E) o));
+    }
+
+    /**
+     * Returns the position of a key within the list. If one or more elements
+     * with the given key exist, the index of the first of them is returned.
+     * Otherwise the index points to where an element with this key would be.
+     *
+     * @param key the key to search for
+     * @return the position of the key within the list
+     */
+    public int positionOfKey(long key) {
+        final long[] t = keyTree;
+        final int n = size;
+        int k = 1;
+        if (sortMode < 0) {
+            while (k <= n) {
+                k = 2 * k + (t[k] < key ? 1 : 0);
+            }
+        } else {
+            while (k <= n) {
+                k = 2 * k + (t[k] > key ? 1 : 0);
+            }
+        }
+        return rankOf(k);
+    }
+
+    /**
+     * Returns the index of the first element with the specified key, or -1 if
+     * no element in this list has that key.
+     *
+     * @param key the key to search for
+     * @return the index of the first element with the key, or -1
+     */
+    public int indexOfKey(long key) {
+        int index = positionOfKey(key);
+        return index < size && sortedKeys[index] == key ? index : -1;
+    }
+
+    /**
+     * Returns the key of the element at the specified position
+     *
+     * @param index index of the key to return
+     * @return the key of the element at the specified position in this list
+     * @throws IndexOutOfBoundsException if the index is out of range (index < 0
+     * || index >= size())
+     */
+    public long keyAt(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return sortedKeys[index];
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        long key = keyExtractor.applyAsLong((E) o);
+        for (int i = positionOfKey(key); i < size && sortedKeys[i] == key; i++) {
+            if (o.equals(data[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        long key = keyExtractor.applyAsLong((E) o);
+        int last = -1;
+        for (int i = positionOfKey(key); i < size && sortedKeys[i] == key; i++) {
+            if (o.equals(data[i])) {
+                last = i;
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Returns a mutable SortedKeyedArrayList containing the elements of this
+     * list between fromIndex (inclusive) and toIndex (exclusive).
+     */
+    @Override
+    public SortedList<E> cloneRange(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || fromIndex > size || toIndex < 0 || toIndex > size) {
+            throw new IndexOutOfBoundsException();
+        } else if (fromIndex > toIndex) {
+            throw new IllegalArgumentException();
+        }
+
+        int length = toIndex - fromIndex;
+        SortedKeyedArrayList<E> newList = new SortedKeyedArrayList(length, keyExtractor, this.sortMode <= 0);
+        newList.size = length;
+        System.arraycopy(this.data, fromIndex, newList.data, 0, length);
+        System.arraycopy(this.sortedKeys, fromIndex, newList.keys, 0, length);
+        return newList;
+    }
+
+    /**
+     * Returns a mutable SortedKeyedArrayList containing the elements of this
+     * list between fromIndex (inclusive) and toIndex (exclusive) in reversed
+     * order.
+     */
+    @Override
+    public SortedList<E> cloneReverse(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || fromIndex > size || toIndex < 0 || toIndex > size) {
+            throw new IndexOutOfBoundsException();
+        } else if (fromIndex > toIndex) {
+            throw new IllegalArgumentException();
+        }
+
+        int length = toIndex - fromIndex;
+        SortedKeyedArrayList<E> newList = new SortedKeyedArrayList(length, keyExtractor, this.sortMode > 0);
+        newList.size = length;
+        for (int i = 0; i < length; i++) {
+            newList.data[length - i - 1] = this.data[fromIndex + i];
+            newList.keys[length - i - 1] = this.sortedKeys[fromIndex + i];
+        }
+        return newList;
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Alice Quiros <email@aliceq.me>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.aliceq.collections;
+
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * An immutable snapshot of a sorted list laid out for fast lookups. Besides
+ * the elements in sorted order, the snapshot stores its search tree in
+ * Eytzinger (breadth-first) order: the children of node k are found at 2k and
+ * 2k + 1, so the first few levels of every search share the same cache lines
+ * and each level's candidates sit next to each other in memory. The search
+ * loop has no early exit and only selects the next node, which keeps it free
+ * of unpredictable branches. A rank table maps each tree node back to its
+ * index in sorted order so that get(index) stays O(1).
+ *
+ * Any operation which would modify the list throws an
+ * UnsupportedOperationException.
+ *
+ * @author Alice Quiros <email@aliceq.me>
+ * @param <E> the type of elements in this list
+ */
+public class FrozenSortedList<E> extends AbstractSortedList<E> {
+
+    protected final Comparator comparator;
+    protected final int sortMode;
+    protected final int size;
+    protected final E[] data;
+    protected final int[] rank;
+    private final Object[] tree;
+
+    /**
+     * Creates a frozen copy of the first size elements of a sorted array
+     *
+     * @param data the sorted elements
+     * @param size the number of elements to copy
+     * @param comparator the comparator ordering the elements
+     * @param sortMode -1 if the elements are ascending, 1 if descending
+     */
+    FrozenSortedList(Object[] data, int size, Comparator comparator, int sortMode) {
+        this(data, size, comparator, sortMode, true);
+    }
+
+    FrozenSortedList(Object[] data, int size, Comparator comparator, int sortMode, boolean buildTree) {
+        this.comparator = comparator;
+        this.sortMode = sortMode;
+        this.size = size;
+        this.data = (E[]) new Object[size];
+        System.arraycopy(data, 0, this.data, 0, size);
+        this.rank = new int[size + 1];
+        if (buildTree) {
+            this.tree = new Object[size + 1];
+            buildTree(0, 1);
+        } else {
+            this.tree = null;
+        }
+    }
+
+    /**
+     * Fills the Eytzinger tree by walking it in order, which visits the nodes
+     * in the same order as the sorted elements.
+     *
+     * @param i the next sorted index to place
+     * @param k the tree node to fill
+     * @return the next sorted index to place
+     */
+    private int buildTree(int i, int k) {
+        if (k <= size) {
+            i = buildTree(i, 2 * k);
+            tree[k] = data[i];
+            rank[k] = i++;
+            i = buildTree(i, 2 * k + 1);
+        }
+        return i;
+    }
+
+    /**
+     * Converts the last node visited by an Eytzinger search into the sorted
+     * index of the result. The search path turned right for every trailing one
+     * bit of the node, so removing those bits and the last left turn yields the
+     * node at which the answer was found, or 0 if the path never turned left.
+     *
+     * @param k the node at which the search left the tree
+     * @return the sorted index found by the search
+     */
+    protected final int rankOf(int k) {
+        k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+        return k == 0 ? size : rank[k];
+    }
+
+    /**
+     * Returns the position of an object within the list. If equal elements are
+     * present, the index of the first one is returned.
+     *
+     * @param o element to search for
+     * @return the position of the element within the list
+     */
+    @Override
+    public int positionOf(Object o) {
+        final Object[] t = tree;
+        final int n = size;
+        int k = 1;
+        while (k <= n) {
+            k = 2 * k + (SearchStrategy.before(t[k], o, comparator, sortMode) ? 1 : 0);
+        }
+        return rankOf(k);
+    }
+
+    @Override
+    public E get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return data[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Comparator getComparator() {
+        return comparator;
+    }
+
+    @Override
+    public boolean isAscending() {
+        return sortMode <= 0;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        for (int i = positionOf(o); i < size && data[i] != null && comparator.compare(data[i], o) == 0; i++) {
+            if (o.equals(data[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        int last = -1;
+        for (int i = positionOf(o); i < size && data[i] != null && comparator.compare(data[i], o) == 0; i++) {
+            if (o.equals(data[i])) {
+                last = i;
+            }
+        }
+        return last;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] clone = new Object[size];
+        System.arraycopy(data, 0, clone, 0, size);
+        return clone;
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        if (a.length < size) {
+            a = (T[]) java.lang.reflect.Array.newInstance(a.getClass().getComponentType(), size);
+        }
+        System.arraycopy(data, 0, a, 0, size);
+        if (a.length > size) {
+            a[size] = null;
+        }
+        return a;
+    }
+
+    /**
+     * Returns a mutable SortedArrayList containing the elements of this list
+     * between fromIndex (inclusive) and toIndex (exclusive).
+     */
+    @Override
+    public SortedList<E> cloneRange(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || fromIndex > size || toIndex < 0 || toIndex > size) {
+            throw new IndexOutOfBoundsException();
+        } else if (fromIndex > toIndex) {
+            throw new IllegalArgumentException();
+        }
+
+        SortedArrayList<E> newList = new SortedArrayList(toIndex - fromIndex, comparator, this.sortMode <= 0);
+        newList.size = toIndex - fromIndex;
+        System.arraycopy(this.data, fromIndex, newList.data, 0, newList.size);
+        return newList;
+    }
+
+    /**
+     * Returns a mutable SortedArrayList containing the elements of this list
+     * between fromIndex (inclusive) and toIndex (exclusive) in reversed order.
+     */
+    @Override
+    public SortedList<E> cloneReverse(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || fromIndex > size || toIndex < 0 || toIndex > size) {
+            throw new IndexOutOfBoundsException();
+        } else if (fromIndex > toIndex) {
+            throw new IllegalArgumentException();
+        }
+
+        SortedArrayList<E> newList = new SortedArrayList(toIndex - fromIndex, comparator, this.sortMode > 0);
+        newList.size = toIndex - fromIndex;
+        for (int i = 0; i < newList.size; i++) {
+            newList.data[newList.size - i - 1] = this.data[fromIndex + i];
+        }
+        return newList;
+    }
+
+    @Override
+    public boolean add(E e) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public E remove(int index) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String toString() {
+        if (size == 0) {
+            return isAscending() ? "[}" : "{]";
+        }
+
+        StringBuilder s = new StringBuilder(isAscending() ? "[" : "{").append(data[0]);
+        for (int i = 1; i < size; i++) {
+            s.append(',').append(data[i]);
+        }
+        return s.append(isAscending() ? "}" : "]").toString();
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Alice Quiros <email@aliceq.me>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.aliceq.collections;
+
+/**
+ * Decides how much an array-backed collection grows when it runs out of room.
+ *
+ * @author Alice Quiros <email@aliceq.me>
+ */
+public interface GrowthPolicy {
+
+    /**
+     * Grows by half of the current capacity plus one, like ArrayList
+     */
+    public static final GrowthPolicy DEFAULT = geometric(1.5);
+
+    /**
+     * Returns the new capacity of a full array. The collection always grows to
+     * at least minCapacity, even if a smaller capacity is returned.
+     *
+     * @param capacity the current capacity
+     * @param minCapacity the smallest capacity which fits the new elements
+     * @return the new capacity
+     */
+    public int grow(int capacity, int minCapacity);
+
+    /**
+     * Returns a policy which multiplies the capacity by a constant factor.
+     * This makes n insertions cost O(n) reallocation in total.
+     *
+     * @param factor the factor to grow by
+     * @return a geometric growth policy
+     * @throws IllegalArgumentException if factor is not greater than 1
+     */
+    public static GrowthPolicy geometric(final double factor) {
+        if (!(factor > 1)) {
+            throw new IllegalArgumentException("Growth factor must be greater than 1");
+        }
+        return new GrowthPolicy() {
+
+            @Override
+            public int grow(int capacity, int minCapacity) {
+                return clamp((long) (capacity * factor) + 1, minCapacity);
+            }
+
+            @Override
+            public String toString() {
+                return "geometric(" + factor + ")";
+            }
+        };
+    }
+
+    /**
+     * Returns a policy which adds a constant number of slots. This uses the
+     * least memory but makes n insertions cost O(n^2) reallocation in total.
+     *
+     * @param increment the number of slots to add
+     * @return a fixed growth policy
+     * @throws IllegalArgumentException if increment is less than 1
+     */
+    public static GrowthPolicy fixed(final int increment) {
+        if (increment < 1) {
+            throw new IllegalArgumentException("Increment must be positive");
+        }
+        return new GrowthPolicy() {
+
+            @Override
+            public int grow(int capacity, int minCapacity) {
+                return clamp((long) capacity + increment, minCapacity);
+            }
+
+            @Override
+            public String toString() {
+                return "fixed(" + increment + ")";
+            }
+        };
+    }
+
+    /**
+     * Returns a policy which grows geometrically but never adds more than
+     * maxIncrement slots at once, bounding the waste of very large arrays.
+     *
+     * @param factor the factor to grow by
+     * @param maxIncrement the largest number of slots to add at once
+     * @return a capped geometric growth policy
+     * @throws IllegalArgumentException if factor is not greater than 1 or
+     * maxIncrement is less than 1
+     */
+    public static GrowthPolicy capped(final double factor, final int maxIncrement) {
+        if (!(factor > 1)) {
+            throw new IllegalArgumentException("Growth factor must be greater than 1");
+        } else if (maxIncrement < 1) {
+            throw new IllegalArgumentException("Increment must be positive");
+        }
+        return new GrowthPolicy() {
+
+            @Override
+            public int grow(int capacity, int minCapacity) {
+                long increment = Math.min((long) (capacity * (factor - 1)) + 1, maxIncrement);
+                return clamp(capacity + increment, minCapacity);
+            }
+
+            @Override
+            public String toString() {
+                return "capped(" + factor + "," + maxIncrement + ")";
+            }
+        };
+    }
+
+    /**
+     * Bounds a proposed capacity between minCapacity and the largest array
+     * size supported by the VM
+     *
+     * @param proposed the proposed capacity
+     * @param minCapacity the smallest acceptable capacity
+     * @return the capacity to allocate
+     * @throws OutOfMemoryError if minCapacity is negative due to overflow
+     */
+    private static int clamp(long proposed, int minCapacity) {
+        if (minCapacity < 0) {
+            throw new OutOfMemoryError("Required array size too large");
+        }
+        return (int) Math.max(minCapacity, Math.min(proposed, Integer.MAX_VALUE - 8));
+    }
+}
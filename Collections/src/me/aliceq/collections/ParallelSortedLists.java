@@ -0,0 +1,482 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Alice Quiros <email@aliceq.me>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.aliceq.collections;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Fork/join implementations of bulk operations on SortedArrayLists. Every
+ * operation runs on the given ForkJoinPool, or on the common pool if none is
+ * given, and splits its work into chunks of at least GRAIN elements so small
+ * inputs are handled by a single task.
+ *
+ * - build sorts chunks of the source in parallel and merges them pairwise
+ * with parallel merges
+ *
+ * - map applies a function in parallel and sorts the results the same way
+ *
+ * - removeIf and filter evaluate the predicate in parallel, then compact the
+ * kept elements with a prefix sum over the per-chunk counts
+ *
+ * - merge combines two lists by splitting the output along merge-path
+ * diagonals, so every task merges an equal share of the result
+ *
+ * The lists are not locked; a SortedVector must be locked by the caller
+ * while one of these operations runs.
+ *
+ * @author Alice Quiros <email@aliceq.me>
+ */
+public final class ParallelSortedLists {
+
+    /**
+     * The smallest number of elements handled by a single task
+     */
+    public static final int GRAIN = 1 << 13;
+
+    private ParallelSortedLists() {
+    }
+
+    // Construction
+    //
+    /**
+     * Creates an ascending SortedArrayList holding the elements of a
+     * collection, sorting them on the common pool
+     *
+     * @param <E> the type of elements in the list
+     * @param c the elements of the new list
+     * @return a new sorted list
+     */
+    public static <E> SortedArrayList<E> build(Collection<? extends E> c) {
+        return build(c, null, true, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a SortedArrayList holding the elements of a collection, sorting
+     * them on the given pool
+     *
+     * @param <E> the type of elements in the list
+     * @param c the elements of the new list
+     * @param comparator the comparator used to compare elements in the list,
+     * or null for the natural ordering
+     * @param ascending true if the list is ascending, false if descending
+     * @param pool the pool to sort on
+     * @return a new sorted list
+     */
+    public static <E> SortedArrayList<E> build(Collection<? extends E> c, Comparator<E> comparator, boolean ascending, ForkJoinPool pool) {
+        SortedArrayList<E> list = new SortedArrayList(0, comparator, ascending);
+        Object[] elements = c.toArray();
+        sort(elements, elements.length, list.storedOrder(), pool);
+        list.data = (E[]) elements;
+        list.size = elements.length;
+        return list;
+    }
+
+    /**
+     * Creates a new SortedArrayList holding the results of applying a function
+     * to every element of a list, on the common pool
+     *
+     * @param <E> the type of elements in the source list
+     * @param <R> the type of elements in the new list
+     * @param list the source list
+     * @param f the function to apply
+     * @param comparator the comparator of the new list, or null for the
+     * natural ordering
+     * @param ascending true if the new list is ascending
+     * @return a new sorted list of the results
+     */
+    public static <E, R> SortedArrayList<R> map(SortedArrayList<E> list, Function<? super E, ? extends R> f, Comparator<R> comparator, boolean ascending) {
+        return map(list, f, comparator, ascending, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a new SortedArrayList holding the results of applying a function
+     * to every element of a list. The function is applied and the results are
+     * sorted on the given pool.
+     *
+     * @param <E> the type of elements in the source list
+     * @param <R> the type of elements in the new list
+     * @param list the source list
+     * @param f the function to apply
+     * @param comparator the comparator of the new list, or null for the
+     * natural ordering
+     * @param ascending true if the new list is ascending
+     * @param pool the pool to run on
+     * @return a new sorted list of the results
+     */
+    public static <E, R> SortedArrayList<R> map(SortedArrayList<E> list, final Function<? super E, ? extends R> f, Comparator<R> comparator, boolean ascending, ForkJoinPool pool) {
+        flush(list);
+        final E[] source = list.data;
+        final int n = list.size;
+        final Object[] results = new Object[n];
+        pool.invoke(new ChunkTask(0, chunks(n)) {
+
+            @Override
+            void compute(int chunk) {
+                for (int i = chunk * GRAIN, end = Math.min(n, i + GRAIN); i < end; i++) {
+                    results[i] = f.apply(source[i]);
+                }
+            }
+        });
+
+        SortedArrayList<R> mapped = new SortedArrayList(0, comparator, ascending);
+        sort(results, n, mapped.storedOrder(), pool);
+        mapped.data = (R[]) results;
+        mapped.size = n;
+        return mapped;
+    }
+
+    // Filtering
+    //
+    /**
+     * Removes every element of a list matching a predicate, on the common pool
+     *
+     * @param <E> the type of elements in the list
+     * @param list the list to filter
+     * @param filter the predicate selecting the elements to remove
+     * @return true if any element was removed
+     */
+    public static <E> boolean removeIf(SortedArrayList<E> list, Predicate<? super E> filter) {
+        return removeIf(list, filter, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Removes every element of a list matching a predicate. The predicate is
+     * evaluated exactly once per element, in parallel, after which the kept
+     * elements are compacted in parallel at offsets given by a prefix sum of
+     * the number of kept elements in each chunk. Keyed lists have their keys
+     * compacted alongside.
+     *
+     * @param <E> the type of elements in the list
+     * @param list the list to filter
+     * @param filter the predicate selecting the elements to remove
+     * @param pool the pool to run on
+     * @return true if any element was removed
+     */
+    public static <E> boolean removeIf(SortedArrayList<E> list, final Predicate<? super E> filter, ForkJoinPool pool) {
+        flush(list);
+        final E[] source = list.data;
+        final int n = list.size;
+        final int chunks = chunks(n);
+        final boolean[] removed = new boolean[n];
+        final int[] offsets = new int[chunks + 1];
+
+        // Evaluate the predicate and count the kept elements of each chunk
+        pool.invoke(new ChunkTask(0, chunks) {
+
+            @Override
+            void compute(int chunk) {
+                int kept = 0;
+                for (int i = chunk * GRAIN, end = Math.min(n, i + GRAIN); i < end; i++) {
+                    removed[i] = filter.test(source[i]);
+                    if (!removed[i]) {
+                        kept++;
+                    }
+                }
+                offsets[chunk + 1] = kept;
+            }
+        });
+
+        // Turn the counts into output offsets
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            offsets[chunk + 1] += offsets[chunk];
+        }
+        final int kept = offsets[chunks];
+        if (kept == n) {
+            return false;
+        }
+
+        // Copy the kept elements, and keys, to their offsets
+        final E[] target = (E[]) new Object[Math.max(kept, list.data.length / 2)];
+        final long[] sourceKeys = list instanceof SortedKeyedArrayList ? ((SortedKeyedArrayList) list).keys : null;
+        final long[] targetKeys = sourceKeys == null ? null : new long[target.length];
+        pool.invoke(new ChunkTask(0, chunks) {
+
+            @Override
+            void compute(int chunk) {
+                int k = offsets[chunk];
+                for (int i = chunk * GRAIN, end = Math.min(n, i + GRAIN); i < end; i++) {
+                    if (!removed[i]) {
+                        if (targetKeys != null) {
+                            targetKeys[k] = sourceKeys[i];
+                        }
+                        target[k++] = source[i];
+                    }
+                }
+            }
+        });
+
+        // Increment count
+        list.modCount++;
+
+        if (targetKeys != null) {
+            ((SortedKeyedArrayList) list).keys = targetKeys;
+        }
+        list.resized(list.data.length, target.length);
+        list.data = target;
+        list.size = kept;
+        return true;
+    }
+
+    /**
+     * Returns a copy of a list without the elements matching a predicate, on
+     * the common pool
+     *
+     * @param <E> the type of elements in the list
+     * @param list the list to filter
+     * @param filter the predicate selecting the elements to leave out
+     * @return a filtered copy of the list
+     */
+    public static <E> SortedArrayList<E> filter(SortedArrayList<E> list, Predicate<? super E> filter) {
+        return filter(list, filter, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Returns a copy of a list without the elements matching a predicate. The
+     * copy is of the same kind as cloneRange returns for the list.
+     *
+     * @param <E> the type of elements in the list
+     * @param list the list to filter
+     * @param filter the predicate selecting the elements to leave out
+     * @param pool the pool to run on
+     * @return a filtered copy of the list
+     */
+    public static <E> SortedArrayList<E> filter(SortedArrayList<E> list, Predicate<? super E> filter, ForkJoinPool pool) {
+        SortedArrayList<E> copy = (SortedArrayList<E>) list.cloneRange(0, list.size());
+        removeIf(copy, filter, pool);
+        return copy;
+    }
+
+    // Merging
+    //
+    /**
+     * Merges two lists into a new list, on the common pool
+     *
+     * @param <E> the type of elements in the lists
+     * @param a the first list
+     * @param b the second list
+     * @return a new list holding the elements of both lists
+     */
+    public static <E> SortedArrayList<E> merge(SortedArrayList<E> a, SortedArrayList<E> b) {
+        return merge(a, b, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Merges two lists into a new list with the comparator and order of the
+     * first list. The output is split along merge-path diagonals: each split
+     * binary searches for the point where the diagonal crosses the merge path,
+     * so both halves merge the same number of elements.
+     *
+     * @param <E> the type of elements in the lists
+     * @param a the first list
+     * @param b the second list
+     * @param pool the pool to run on
+     * @return a new list holding the elements of both lists
+     * @throws IllegalArgumentException if the lists are not in the same order
+     */
+    public static <E> SortedArrayList<E> merge(SortedArrayList<E> a, SortedArrayList<E> b, ForkJoinPool pool) {
+        if (a.isAscending() != b.isAscending()) {
+            throw new IllegalArgumentException("Lists must have the same order");
+        }
+        flush(a);
+        flush(b);
+        Object[] target = new Object[a.size + b.size];
+        pool.invoke(new MergeTask(a.data, 0, a.size, b.data, 0, b.size, target, 0, a.storedOrder()));
+
+        SortedArrayList<E> merged = new SortedArrayList(0, a.comparator, a.isAscending());
+        merged.searchStrategy = a.searchStrategy;
+        merged.growthPolicy = a.growthPolicy;
+        merged.data = (E[]) target;
+        merged.size = target.length;
+        return merged;
+    }
+
+    // Helpers
+    //
+    private static int chunks(int n) {
+        return (n + GRAIN - 1) / GRAIN;
+    }
+
+    private static void flush(SortedArrayList<?> list) {
+        if (list instanceof SortedBufferedArrayList) {
+            ((SortedBufferedArrayList) list).merge();
+        }
+    }
+
+    /**
+     * Sorts the first n elements of an array with a parallel merge sort
+     */
+    static void sort(Object[] a, int n, Comparator order, ForkJoinPool pool) {
+        if (n <= GRAIN) {
+            Arrays.sort(a, 0, n, order);
+        } else {
+            pool.invoke(new SortTask(a, new Object[n], 0, n, order));
+        }
+    }
+
+    /**
+     * Runs compute for every chunk in [from, to), splitting the range in half
+     * until a single chunk is left
+     */
+    private static abstract class ChunkTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final int from, to;
+
+        ChunkTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        abstract void compute(int chunk);
+
+        @Override
+        protected final void compute() {
+            if (to - from <= 1) {
+                if (to > from) {
+                    compute(from);
+                }
+                return;
+            }
+            final ChunkTask parent = this;
+            int mid = (from + to) >>> 1;
+            invokeAll(new ChunkTask(from, mid) {
+
+                @Override
+                void compute(int chunk) {
+                    parent.compute(chunk);
+                }
+            }, new ChunkTask(mid, to) {
+
+                @Override
+                void compute(int chunk) {
+                    parent.compute(chunk);
+                }
+            });
+        }
+    }
+
+    /**
+     * Sorts a[lo, hi) by sorting both halves in parallel and merging them
+     * through buffer
+     */
+    private static final class SortTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final Object[] a, buffer;
+        private final int lo, hi;
+        private final Comparator order;
+
+        SortTask(Object[] a, Object[] buffer, int lo, int hi, Comparator order) {
+            this.a = a;
+            this.buffer = buffer;
+            this.lo = lo;
+            this.hi = hi;
+            this.order = order;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= GRAIN) {
+                Arrays.sort(a, lo, hi, order);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new SortTask(a, buffer, lo, mid, order), new SortTask(a, buffer, mid, hi, order));
+            if (order.compare(a[mid - 1], a[mid]) <= 0) {
+                // Already in order
+                return;
+            }
+            new MergeTask(a, lo, mid, a, mid, hi, buffer, lo, order).compute();
+            System.arraycopy(buffer, lo, a, lo, hi - lo);
+        }
+    }
+
+    /**
+     * Merges a[aLo, aHi) and b[bLo, bHi) into target at offset. Elements of a
+     * come before equal elements of b.
+     */
+    private static final class MergeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final Object[] a, b, target;
+        private final int aLo, aHi, bLo, bHi, offset;
+        private final Comparator order;
+
+        MergeTask(Object[] a, int aLo, int aHi, Object[] b, int bLo, int bHi, Object[] target, int offset, Comparator order) {
+            this.a = a;
+            this.aLo = aLo;
+            this.aHi = aHi;
+            this.b = b;
+            this.bLo = bLo;
+            this.bHi = bHi;
+            this.target = target;
+            this.offset = offset;
+            this.order = order;
+        }
+
+        @Override
+        protected void compute() {
+            int na = aHi - aLo, nb = bHi - bLo;
+            if (na + nb <= GRAIN) {
+                mergeSequential();
+                return;
+            }
+
+            // Find where the middle diagonal crosses the merge path: i elements
+            // of a and diagonal - i elements of b come before it
+            int diagonal = (na + nb) >>> 1;
+            int lo = Math.max(0, diagonal - nb), hi = Math.min(diagonal, na);
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (order.compare(a[aLo + mid], b[bLo + diagonal - mid - 1]) <= 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            int aSplit = aLo + lo, bSplit = bLo + diagonal - lo;
+            invokeAll(new MergeTask(a, aLo, aSplit, b, bLo, bSplit, target, offset, order),
+                    new MergeTask(a, aSplit, aHi, b, bSplit, bHi, target, offset + diagonal, order));
+        }
+
+        private void mergeSequential() {
+            int i = aLo, j = bLo, k = offset;
+            while (i < aHi && j < bHi) {
+                if (order.compare(a[i], b[j]) <= 0) {
+                    target[k++] = a[i++];
+                } else {
+                    target[k++] = b[j++];
+                }
+            }
+            System.arraycopy(a, i, target, k, aHi - i);
+            System.arraycopy(b, j, target, k + aHi - i, bHi - j);
+        }
+    }
+}
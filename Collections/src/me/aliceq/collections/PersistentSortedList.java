@@ -0,0 +1,748 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Alice Quiros <email@aliceq.me>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.aliceq.collections;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A sorted list stored in a persistent B-tree. Nodes are never modified once
+ * built: an insertion or removal copies only the O(log n) nodes on the path
+ * from the root to the changed leaf and shares every other node with the
+ * previous version. Each branch keeps the cumulative sizes of its children, so
+ * get(index) is O(log n) as well.
+ *
+ * There are two ways to use the list:
+ *
+ * - as a value: plus, minus and minusAt return new versions and leave the list
+ * untouched
+ *
+ * - as a single-writer index: add, remove and clear replace the current
+ * version in place, while snapshot returns an immutable view of the current
+ * version in O(1). Readers holding a snapshot are never affected by later
+ * writes, and iterators always walk the version current when they were made.
+ *
+ * Lists returned by snapshot, plus, minus and minusAt are immutable, and their
+ * mutators throw an UnsupportedOperationException.
+ *
+ * @author Alice Quiros <email@aliceq.me>
+ * @param <E> the type of elements in this list
+ */
+public class PersistentSortedList<E> extends AbstractSortedList<E> {
+
+    static final int MAX_WIDTH = 32;
+    static final int MIN_WIDTH = MAX_WIDTH / 4;
+
+    private static final Node EMPTY = new Leaf(new Object[0]);
+
+    protected final Comparator comparator;
+    protected final int sortMode;
+    protected final boolean writable;
+    private volatile Node root;
+
+    /**
+     * Basic constructor creating an empty PersistentSortedList in ascending
+     * order
+     */
+    public PersistentSortedList() {
+        this(null, true);
+    }
+
+    /**
+     * Constructor creating an empty PersistentSortedList of specified order
+     *
+     * @param c the comparator used to compare elements in the list
+     * @param ascending true if the list is ascending, false if descending
+     */
+    public PersistentSortedList(Comparator<E> c, boolean ascending) {
+        this(c == null ? naturalOrder() : c, ascending ? -1 : 1, EMPTY, true);
+    }
+
+    /**
+     * Constructor creating a PersistentSortedList initialized with a set of
+     * values. The values are sorted once and packed into full leaves.
+     *
+     * @param c collection of values to add on initialization
+     * @param comparator the comparator used to compare elements in the list
+     * @param ascending true if the list is ascending, false if descending
+     */
+    public PersistentSortedList(Collection<? extends E> c, Comparator<E> comparator, boolean ascending) {
+        this(comparator, ascending);
+        Object[] elements = c.toArray();
+        Arrays.sort(elements, order(this.comparator, sortMode));
+        this.root = build(elements, 0, elements.length);
+    }
+
+    private PersistentSortedList(Comparator comparator, int sortMode, Node root, boolean writable) {
+        this.comparator = comparator;
+        this.sortMode = sortMode;
+        this.root = root;
+        this.writable = writable;
+    }
+
+    private static Comparator naturalOrder() {
+        return new Comparator() {
+
+            @Override
+            public int compare(Object o1, Object o2) {
+                if (o1 instanceof Comparable) {
+                    return ((Comparable) o1).compareTo(o2);
+                } else {
+                    return o2.hashCode() - o1.hashCode();
+                }
+            }
+        };
+    }
+
+    private static Comparator order(final Comparator base, final int mode) {
+        return new Comparator() {
+
+            @Override
+            public int compare(Object o1, Object o2) {
+                if (o1 == null) {
+                    return o2 == null ? 0 : 1;
+                } else if (o2 == null) {
+                    return -1;
+                }
+                return -mode * base.compare(o1, o2);
+            }
+        };
+    }
+
+    private PersistentSortedList<E> version(Node root) {
+        return new PersistentSortedList(comparator, sortMode, root, false);
+    }
+
+    // Versions
+    //
+    /**
+     * Returns an immutable view of the current version of the list. This takes
+     * O(1) time and memory.
+     *
+     * @return a snapshot of the list
+     */
+    public PersistentSortedList<E> snapshot() {
+        return writable ? version(root) : this;
+    }
+
+    /**
+     * Returns a new version of the list with an element added
+     *
+     * @param e the element to add
+     * @return the new version
+     */
+    public PersistentSortedList<E> plus(E e) {
+        Node current = root;
+        return version(insert(current, lowerBound(current, e), e));
+    }
+
+    /**
+     * Returns a new version of the list without the first occurrence of an
+     * element, or this list if the element is not present
+     *
+     * @param o the element to remove
+     * @return the new version
+     */
+    public PersistentSortedList<E> minus(Object o) {
+        Node current = root;
+        int index = indexOf(current, o);
+        return index < 0 ? this : version(delete(current, index));
+    }
+
+    /**
+     * Returns a new version of the list without the element at an index
+     *
+     * @param index the index of the element to remove
+     * @return the new version
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public PersistentSortedList<E> minusAt(int index) {
+        Node current = root;
+        if (index < 0 || index >= current.size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return version(delete(current, index));
+    }
+
+    /**
+     * Returns true if the mutators of this list replace its version, or false
+     * if this list is an immutable version
+     *
+     * @return true if the list is writable
+     */
+    public boolean isWritable() {
+        return writable;
+    }
+
+    private void checkWritable() {
+        if (!writable) {
+            throw new UnsupportedOperationException("Immutable version");
+        }
+    }
+
+    // Tree operations
+    //
+    private Node insert(Node node, int index, Object e) {
+        Node[] result = node.insert(index, e);
+        return result.length == 1 ? result[0] : Branch.of(result);
+    }
+
+    private Node delete(Node node, int index) {
+        Node result = node.delete(index);
+        while (result instanceof Branch && ((Branch) result).children.length == 1) {
+            result = ((Branch) result).children[0];
+        }
+        return result;
+    }
+
+    private int lowerBound(Node node, Object o) {
+        int offset = 0;
+        while (node instanceof Branch) {
+            Branch b = (Branch) node;
+            // Find the last child whose first element is before o
+            int pa = 1, pb = b.children.length;
+            while (pa < pb) {
+                int mid = (pa + pb) >>> 1;
+                if (SearchStrategy.before(b.firsts[mid], o, comparator, sortMode)) {
+                    pa = mid + 1;
+                } else {
+                    pb = mid;
+                }
+            }
+            int child = pa - 1;
+            offset += b.start(child);
+            node = b.children[child];
+        }
+        Object[] items = ((Leaf) node).items;
+        int pa = 0, pb = items.length;
+        while (pa < pb) {
+            int mid = (pa + pb) >>> 1;
+            if (SearchStrategy.before(items[mid], o, comparator, sortMode)) {
+                pa = mid + 1;
+            } else {
+                pb = mid;
+            }
+        }
+        return offset + pa;
+    }
+
+    private int indexOf(Node node, Object o) {
+        for (int i = lowerBound(node, o); i < node.size; i++) {
+            Object e = node.get(i);
+            if (e == null ? o == null : e.equals(o)) {
+                return i;
+            } else if (e == null || o == null || comparator.compare(e, o) != 0) {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    private static Node build(Object[] elements, int from, int to) {
+        // Every leaf must be at the same depth, so pick the height first
+        int height = 0;
+        for (long capacity = MAX_WIDTH; capacity < to - from; capacity *= MAX_WIDTH) {
+            height++;
+        }
+        return build(elements, from, to, height);
+    }
+
+    private static Node build(Object[] elements, int from, int to, int height) {
+        if (height == 0) {
+            return new Leaf(Arrays.copyOfRange(elements, from, to));
+        }
+        long capacity = MAX_WIDTH;
+        for (int i = 1; i < height; i++) {
+            capacity *= MAX_WIDTH;
+        }
+        int n = to - from;
+        int children = (int) Math.max(1, (n + capacity - 1) / capacity);
+        Node[] nodes = new Node[children];
+        for (int i = 0; i < children; i++) {
+            nodes[i] = build(elements, from + (int) ((long) n * i / children), from + (int) ((long) n * (i + 1) / children), height - 1);
+        }
+        return Branch.of(nodes);
+    }
+
+    // SortedList
+    //
+    @Override
+    public boolean add(E e) {
+        checkWritable();
+        Node current = root;
+        root = insert(current, lowerBound(current, e), e);
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        checkWritable();
+        Node current = root;
+        int index = indexOf(current, o);
+        if (index < 0) {
+            return false;
+        }
+        root = delete(current, index);
+        return true;
+    }
+
+    @Override
+    public E remove(int index) {
+        checkWritable();
+        Node current = root;
+        if (index < 0 || index >= current.size) {
+            throw new IndexOutOfBoundsException();
+        }
+        E at = (E) current.get(index);
+        root = delete(current, index);
+        return at;
+    }
+
+    @Override
+    public void clear() {
+        checkWritable();
+        root = EMPTY;
+    }
+
+    @Override
+    public E get(int index) {
+        Node current = root;
+        if (index < 0 || index >= current.size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return (E) current.get(index);
+    }
+
+    @Override
+    public int size() {
+        return root.size;
+    }
+
+    @Override
+    public Comparator getComparator() {
+        return comparator;
+    }
+
+    @Override
+    public boolean isAscending() {
+        return sortMode <= 0;
+    }
+
+    @Override
+    public int positionOf(Object o) {
+        return lowerBound(root, o);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        return indexOf(root, o);
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        Node current = root;
+        int last = -1;
+        for (int i = lowerBound(current, o); i < current.size; i++) {
+            Object e = current.get(i);
+            if (e == null ? o == null : e.equals(o)) {
+                last = i;
+            } else if (e == null || o == null || comparator.compare(e, o) != 0) {
+                break;
+            }
+        }
+        return last;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(root, o) >= 0;
+    }
+
+    /**
+     * Returns an iterator over the version of the list current when it is
+     * created. It walks the leaves directly and is never affected by later
+     * writes.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        final ArrayDeque<Branch> branches = new ArrayDeque<>();
+        final ArrayDeque<Integer> positions = new ArrayDeque<>();
+        Node node = root;
+        while (node instanceof Branch) {
+            branches.push((Branch) node);
+            positions.push(0);
+            node = ((Branch) node).children[0];
+        }
+        final Leaf first = (Leaf) node;
+
+        return new Iterator<E>() {
+
+            private Leaf leaf = first;
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                if (index < leaf.items.length) {
+                    return true;
+                }
+                // Climb to the first branch with a next child, then descend to
+                // its leftmost leaf
+                while (!branches.isEmpty()) {
+                    Branch b = branches.peek();
+                    int next = positions.pop() + 1;
+                    if (next < b.children.length) {
+                        positions.push(next);
+                        Node n = b.children[next];
+                        while (n instanceof Branch) {
+                            branches.push((Branch) n);
+                            positions.push(0);
+                            n = ((Branch) n).children[0];
+                        }
+                        leaf = (Leaf) n;
+                        index = 0;
+                        return leaf.items.length > 0;
+                    }
+                    branches.pop();
+                }
+                return false;
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return (E) leaf.items[index++];
+            }
+        };
+    }
+
+    @Override
+    public Object[] toArray() {
+        Node current = root;
+        Object[] array = new Object[current.size];
+        current.copyTo(array, 0);
+        return array;
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        Node current = root;
+        int size = current.size;
+        if (a.length < size) {
+            a = (T[]) java.lang.reflect.Array.newInstance(a.getClass().getComponentType(), size);
+        }
+        current.copyTo(a, 0);
+        if (a.length > size) {
+            a[size] = null;
+        }
+        return a;
+    }
+
+    @Override
+    public SortedList<E> cloneRange(int fromIndex, int toIndex) {
+        Object[] elements = toArray();
+        if (fromIndex < 0 || fromIndex > elements.length || toIndex < 0 || toIndex > elements.length) {
+            throw new IndexOutOfBoundsException();
+        } else if (fromIndex > toIndex) {
+            throw new IllegalArgumentException();
+        }
+        return new PersistentSortedList(comparator, sortMode, build(elements, fromIndex, toIndex), true);
+    }
+
+    @Override
+    public SortedList<E> cloneReverse(int fromIndex, int toIndex) {
+        Object[] elements = toArray();
+        if (fromIndex < 0 || fromIndex > elements.length || toIndex < 0 || toIndex > elements.length) {
+            throw new IndexOutOfBoundsException();
+        } else if (fromIndex > toIndex) {
+            throw new IllegalArgumentException();
+        }
+        Object[] reversed = new Object[toIndex - fromIndex];
+        for (int i = 0; i < reversed.length; i++) {
+            reversed[i] = elements[toIndex - 1 - i];
+        }
+        return new PersistentSortedList(comparator, -sortMode, build(reversed, 0, reversed.length), true);
+    }
+
+    /**
+     * Returns a String representation of the instance in the bracket notation
+     * of SortedArrayList.
+     *
+     * @return a String representation of the instance
+     */
+    @Override
+    public String toString() {
+        Object[] elements = toArray();
+        if (elements.length == 0) {
+            return isAscending() ? "[}" : "{]";
+        }
+
+        StringBuilder s = new StringBuilder(isAscending() ? "[" : "{").append(elements[0]);
+        for (int i = 1; i < elements.length; i++) {
+            s.append(',').append(elements[i]);
+        }
+        return s.append(isAscending() ? "}" : "]").toString();
+    }
+
+    // Nodes
+    //
+    /**
+     * An immutable node of the tree. Modifications return new nodes.
+     */
+    private static abstract class Node {
+
+        final int size;
+
+        Node(int size) {
+            this.size = size;
+        }
+
+        abstract Object get(int index);
+
+        abstract Object first();
+
+        abstract int width();
+
+        /**
+         * Returns the node with e inserted at index, split in two if it
+         * overflows
+         */
+        abstract Node[] insert(int index, Object e);
+
+        /**
+         * Returns the node without the element at index. The result may be
+         * narrower than MIN_WIDTH; its parent rebalances it.
+         */
+        abstract Node delete(int index);
+
+        /**
+         * Returns this node joined with its right sibling, split in two if
+         * the result overflows
+         */
+        abstract Node[] join(Node right);
+
+        abstract void copyTo(Object[] array, int offset);
+    }
+
+    private static final class Leaf extends Node {
+
+        final Object[] items;
+
+        Leaf(Object[] items) {
+            super(items.length);
+            this.items = items;
+        }
+
+        @Override
+        Object get(int index) {
+            return items[index];
+        }
+
+        @Override
+        Object first() {
+            return items.length == 0 ? null : items[0];
+        }
+
+        @Override
+        int width() {
+            return items.length;
+        }
+
+        @Override
+        Node[] insert(int index, Object e) {
+            Object[] result = new Object[items.length + 1];
+            System.arraycopy(items, 0, result, 0, index);
+            result[index] = e;
+            System.arraycopy(items, index, result, index + 1, items.length - index);
+            return split(result);
+        }
+
+        @Override
+        Node delete(int index) {
+            Object[] result = new Object[items.length - 1];
+            System.arraycopy(items, 0, result, 0, index);
+            System.arraycopy(items, index + 1, result, index, items.length - index - 1);
+            return new Leaf(result);
+        }
+
+        @Override
+        Node[] join(Node right) {
+            Object[] other = ((Leaf) right).items;
+            Object[] result = Arrays.copyOf(items, items.length + other.length);
+            System.arraycopy(other, 0, result, items.length, other.length);
+            return split(result);
+        }
+
+        private static Node[] split(Object[] items) {
+            if (items.length <= MAX_WIDTH) {
+                return new Node[]{new Leaf(items)};
+            }
+            int half = items.length >>> 1;
+            return new Node[]{
+                new Leaf(Arrays.copyOfRange(items, 0, half)),
+                new Leaf(Arrays.copyOfRange(items, half, items.length))};
+        }
+
+        @Override
+        void copyTo(Object[] array, int offset) {
+            System.arraycopy(items, 0, array, offset, items.length);
+        }
+    }
+
+    private static final class Branch extends Node {
+
+        final Node[] children;
+        final int[] ends;
+        final Object[] firsts;
+
+        private Branch(Node[] children, int[] ends, Object[] firsts) {
+            super(ends[ends.length - 1]);
+            this.children = children;
+            this.ends = ends;
+            this.firsts = firsts;
+        }
+
+        static Branch of(Node[] children) {
+            int[] ends = new int[children.length];
+            Object[] firsts = new Object[children.length];
+            int total = 0;
+            for (int i = 0; i < children.length; i++) {
+                total += children[i].size;
+                ends[i] = total;
+                firsts[i] = children[i].first();
+            }
+            return new Branch(children, ends, firsts);
+        }
+
+        int start(int child) {
+            return child == 0 ? 0 : ends[child - 1];
+        }
+
+        /**
+         * Returns the child holding index. An index equal to size belongs to
+         * the last child.
+         */
+        int childOf(int index) {
+            int pa = 0, pb = children.length - 1;
+            while (pa < pb) {
+                int mid = (pa + pb) >>> 1;
+                if (ends[mid] <= index) {
+                    pa = mid + 1;
+                } else {
+                    pb = mid;
+                }
+            }
+            return pa;
+        }
+
+        @Override
+        Object get(int index) {
+            Node node = this;
+            while (node instanceof Branch) {
+                Branch b = (Branch) node;
+                int child = b.childOf(index);
+                index -= b.start(child);
+                node = b.children[child];
+            }
+            return ((Leaf) node).items[index];
+        }
+
+        @Override
+        Object first() {
+            return firsts[0];
+        }
+
+        @Override
+        int width() {
+            return children.length;
+        }
+
+        @Override
+        Node[] insert(int index, Object e) {
+            int child = childOf(index);
+            Node[] replacement = children[child].insert(index - start(child), e);
+            return split(replace(child, 1, replacement));
+        }
+
+        @Override
+        Node delete(int index) {
+            int child = childOf(index);
+            Node updated = children[child].delete(index - start(child));
+            if (updated.size == 0) {
+                return children.length == 1 ? updated : of(replace(child, 1, new Node[0]));
+            } else if (updated.width() >= MIN_WIDTH || children.length == 1) {
+                return of(replace(child, 1, new Node[]{updated}));
+            }
+
+            // Rebalance by joining with a sibling
+            if (child > 0) {
+                return of(replace(child - 1, 2, children[child - 1].join(updated)));
+            }
+            return of(replace(child, 2, updated.join(children[child + 1])));
+        }
+
+        @Override
+        Node[] join(Node right) {
+            Node[] other = ((Branch) right).children;
+            Node[] result = Arrays.copyOf(children, children.length + other.length);
+            System.arraycopy(other, 0, result, children.length, other.length);
+            return split(result);
+        }
+
+        /**
+         * Returns a copy of the children with count children starting at
+         * child replaced by the given nodes
+         */
+        private Node[] replace(int child, int count, Node[] nodes) {
+            Node[] result = new Node[children.length - count + nodes.length];
+            System.arraycopy(children, 0, result, 0, child);
+            System.arraycopy(nodes, 0, result, child, nodes.length);
+            System.arraycopy(children, child + count, result, child + nodes.length, children.length - child - count);
+            return result;
+        }
+
+        private static Node[] split(Node[] children) {
+            if (children.length <= MAX_WIDTH) {
+                return new Node[]{of(children)};
+            }
+            int half = children.length >>> 1;
+            return new Node[]{
+                of(Arrays.copyOfRange(children, 0, half)),
+                of(Arrays.copyOfRange(children, half, children.length))};
+        }
+
+        @Override
+        void copyTo(Object[] array, int offset) {
+            for (Node child : children) {
+                child.copyTo(array, offset);
+                offset += child.size;
+            }
+        }
+    }
+}
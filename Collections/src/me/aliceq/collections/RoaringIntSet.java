@@ -0,0 +1,1149 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Alice Quiros <email@aliceq.me>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.aliceq.collections;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+
+/**
+ * An ascending set of int values in the style of a Roaring bitmap. The value
+ * range is split into chunks of 65,536 values sharing their upper 16 bits, and
+ * each non-empty chunk stores its lower 16 bits in the container best suited
+ * to its contents:
+ *
+ * - an array container, a sorted char array, for sparse chunks of at most
+ * 4096 values
+ *
+ * - a bitmap container, 1024 longs, for dense chunks
+ *
+ * - a run container, a list of (start, length) pairs, for clustered chunks.
+ * Chunks are converted to run containers by runOptimize and by the set
+ * operations when that makes them smaller.
+ *
+ * The set operations and, or and andNot combine the containers of both sets
+ * chunk by chunk, using word-parallel operations on bitmaps. Cumulative chunk
+ * cardinalities answer rank queries and get(index).
+ *
+ * @author Alice Quiros <email@aliceq.me>
+ */
+public class RoaringIntSet extends AbstractSortedList<Integer> implements Set<Integer> {
+
+    static final int ARRAY_MAX = 4096;
+
+    private char[] keys;
+    private Container[] containers;
+    private int chunks;
+    private int size;
+    private int[] cumulative;
+    private boolean cumulativeValid;
+
+    /**
+     * Creates an empty set
+     */
+    public RoaringIntSet() {
+        this.keys = new char[4];
+        this.containers = new Container[4];
+    }
+
+    /**
+     * Creates a set holding the given values
+     *
+     * @param values the values to add
+     */
+    public RoaringIntSet(int... values) {
+        this();
+        for (int v : values) {
+            add(v);
+        }
+    }
+
+    /**
+     * Creates a set holding the values of a collection
+     *
+     * @param c the values to add
+     */
+    public RoaringIntSet(Collection<? extends Integer> c) {
+        this();
+        for (Integer v : c) {
+            add(v.intValue());
+        }
+    }
+
+    // Chunks are ordered by their upper bits with the sign bit flipped, so
+    // that iterating chunks in key order yields values in signed order
+    private static char high(int v) {
+        return (char) ((v >>> 16) ^ 0x8000);
+    }
+
+    private static int low(int v) {
+        return v & 0xFFFF;
+    }
+
+    private static int compose(char key, int low) {
+        return ((key ^ 0x8000) << 16) | low;
+    }
+
+    private int findChunk(char key) {
+        return Arrays.binarySearch(keys, 0, chunks, key);
+    }
+
+    private void insertChunk(int index, char key, Container c) {
+        if (chunks == keys.length) {
+            keys = Arrays.copyOf(keys, chunks * 2);
+            containers = Arrays.copyOf(containers, chunks * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, chunks - index);
+        System.arraycopy(containers, index, containers, index + 1, chunks - index);
+        keys[index] = key;
+        containers[index] = c;
+        chunks++;
+    }
+
+    private void removeChunk(int index) {
+        System.arraycopy(keys, index + 1, keys, index, chunks - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, chunks - index - 1);
+        containers[--chunks] = null;
+    }
+
+    private void append(char key, Container c) {
+        if (c.cardinality() > 0) {
+            insertChunk(chunks, key, c);
+            size += c.cardinality();
+        }
+    }
+
+    private int[] cumulative() {
+        if (!cumulativeValid) {
+            if (cumulative == null || cumulative.length < chunks + 1) {
+                cumulative = new int[keys.length + 1];
+            }
+            int total = 0;
+            for (int i = 0; i < chunks; i++) {
+                cumulative[i] = total;
+                total += containers[i].cardinality();
+            }
+            cumulative[chunks] = total;
+            cumulativeValid = true;
+        }
+        return cumulative;
+    }
+
+    // Primitive operations
+    //
+    /**
+     * Adds a value to the set
+     *
+     * @param v the value to add
+     * @return true if the value was added, false if it was already present
+     */
+    public boolean add(int v) {
+        char key = high(v);
+        int i = findChunk(key);
+        if (i < 0) {
+            i = -i - 1;
+            insertChunk(i, key, new ArrayContainer());
+        }
+        Container c = containers[i];
+        int before = c.cardinality();
+        containers[i] = c.add(low(v));
+        if (containers[i].cardinality() == before) {
+            return false;
+        }
+        size++;
+        modCount++;
+        cumulativeValid = false;
+        return true;
+    }
+
+    /**
+     * Removes a value from the set
+     *
+     * @param v the value to remove
+     * @return true if the value was removed, false if it was not present
+     */
+    public boolean removeInt(int v) {
+        int i = findChunk(high(v));
+        if (i < 0 || !containers[i].contains(low(v))) {
+            return false;
+        }
+        containers[i] = containers[i].remove(low(v));
+        if (containers[i].cardinality() == 0) {
+            removeChunk(i);
+        }
+        size--;
+        modCount++;
+        cumulativeValid = false;
+        return true;
+    }
+
+    /**
+     * Returns true if the set contains the value
+     *
+     * @param v the value to look for
+     * @return true if the value is in the set
+     */
+    public boolean contains(int v) {
+        int i = findChunk(high(v));
+        return i >= 0 && containers[i].contains(low(v));
+    }
+
+    /**
+     * Returns the number of values in the set which are less than v. This is
+     * also the index of v if it is in the set.
+     *
+     * @param v the value to rank
+     * @return the number of values less than v
+     */
+    public int rank(int v) {
+        int[] cum = cumulative();
+        int i = findChunk(high(v));
+        if (i < 0) {
+            return cum[-i - 1];
+        }
+        return cum[i] + containers[i].rank(low(v));
+    }
+
+    /**
+     * Returns the value at the specified position in the set
+     *
+     * @param index index of the value to return
+     * @return the value at the specified position
+     * @throws IndexOutOfBoundsException if the index is out of range (index < 0
+     * || index >= size())
+     */
+    public int getInt(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+        int[] cum = cumulative();
+        int pa = 0, pb = chunks;
+        while (pa < pb) {
+            int mid = (pa + pb) >>> 1;
+            if (cum[mid + 1] <= index) {
+                pa = mid + 1;
+            } else {
+                pb = mid;
+            }
+        }
+        return compose(keys[pa], containers[pa].select(index - cum[pa]));
+    }
+
+    /**
+     * Converts every chunk to its smallest representation, which turns
+     * clustered chunks into run containers.
+     */
+    public void runOptimize() {
+        for (int i = 0; i < chunks; i++) {
+            containers[i] = containers[i].optimize();
+        }
+    }
+
+    /**
+     * Returns a new set holding the values present in both sets
+     *
+     * @param other the other set
+     * @return the intersection of the sets
+     */
+    public RoaringIntSet and(RoaringIntSet other) {
+        RoaringIntSet result = new RoaringIntSet();
+        int i = 0, j = 0;
+        while (i < chunks && j < other.chunks) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.append(keys[i], containers[i].and(other.containers[j]).optimize());
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a new set holding the values present in either set
+     *
+     * @param other the other set
+     * @return the union of the sets
+     */
+    public RoaringIntSet or(RoaringIntSet other) {
+        RoaringIntSet result = new RoaringIntSet();
+        int i = 0, j = 0;
+        while (i < chunks || j < other.chunks) {
+            if (j >= other.chunks || (i < chunks && keys[i] < other.keys[j])) {
+                result.append(keys[i], containers[i].copy());
+                i++;
+            } else if (i >= chunks || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.append(keys[i], containers[i].or(other.containers[j]).optimize());
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a new set holding the values of this set which are not present
+     * in the other set
+     *
+     * @param other the other set
+     * @return the difference of the sets
+     */
+    public RoaringIntSet andNot(RoaringIntSet other) {
+        RoaringIntSet result = new RoaringIntSet();
+        int i = 0, j = 0;
+        while (i < chunks) {
+            if (j >= other.chunks || keys[i] < other.keys[j]) {
+                result.append(keys[i], containers[i].copy());
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.append(keys[i], containers[i].andNot(other.containers[j]).optimize());
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns an iterator over the values of the set in ascending order which
+     * does not box them
+     *
+     * @return a primitive iterator over the set
+     */
+    public PrimitiveIterator.OfInt intIterator() {
+        return new PrimitiveIterator.OfInt() {
+
+            private final int expectedModCount = modCount;
+            private int chunk = 0;
+            private PrimitiveIterator.OfInt current = chunks > 0 ? containers[0].iterator() : null;
+
+            @Override
+            public boolean hasNext() {
+                while (current != null && !current.hasNext()) {
+                    current = ++chunk < chunks ? containers[chunk].iterator() : null;
+                }
+                return current != null;
+            }
+
+            @Override
+            public int nextInt() {
+                if (expectedModCount != modCount) {
+                    throw new ConcurrentModificationException();
+                } else if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return compose(keys[chunk], current.nextInt());
+            }
+        };
+    }
+
+    /**
+     * Returns an estimate of the heap memory used by the set in bytes
+     *
+     * @return the approximate size of the set in memory
+     */
+    public long sizeInBytes() {
+        long bytes = 16 + 16 + 2L * keys.length + 16 + 4L * containers.length;
+        for (int i = 0; i < chunks; i++) {
+            bytes += containers[i].sizeInBytes();
+        }
+        return bytes;
+    }
+
+    // SortedList and Set
+    //
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Integer get(int index) {
+        return getInt(index);
+    }
+
+    @Override
+    public Comparator getComparator() {
+        return null;
+    }
+
+    @Override
+    public boolean isAscending() {
+        return true;
+    }
+
+    @Override
+    public boolean add(Integer e) {
+        return add(e.intValue());
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Integer && contains(((Integer) o).intValue());
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof Integer && removeInt(((Integer) o).intValue());
+    }
+
+    @Override
+    public Integer remove(int index) {
+        int v = getInt(index);
+        removeInt(v);
+        return v;
+    }
+
+    @Override
+    public int positionOf(Object o) {
+        return rank(((Number) o).intValue());
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof Integer)) {
+            return -1;
+        }
+        int v = (Integer) o;
+        return contains(v) ? rank(v) : -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    @Override
+    public void clear() {
+        modCount++;
+        keys = new char[4];
+        containers = new Container[4];
+        chunks = 0;
+        size = 0;
+        cumulativeValid = false;
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return intIterator();
+    }
+
+    /**
+     * Returns the values of the set as an ascending array
+     *
+     * @return the values of the set
+     */
+    public int[] toIntArray() {
+        int[] array = new int[size];
+        PrimitiveIterator.OfInt it = intIterator();
+        for (int i = 0; i < size; i++) {
+            array[i] = it.nextInt();
+        }
+        return array;
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] array = new Object[size];
+        PrimitiveIterator.OfInt it = intIterator();
+        for (int i = 0; i < size; i++) {
+            array[i] = it.nextInt();
+        }
+        return array;
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        if (a.length < size) {
+            a = (T[]) java.lang.reflect.Array.newInstance(a.getClass().getComponentType(), size);
+        }
+        PrimitiveIterator.OfInt it = intIterator();
+        for (int i = 0; i < size; i++) {
+            a[i] = (T) (Integer) it.nextInt();
+        }
+        if (a.length > size) {
+            a[size] = null;
+        }
+        return a;
+    }
+
+    @Override
+    public SortedList<Integer> cloneRange(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || fromIndex > size || toIndex < 0 || toIndex > size) {
+            throw new IndexOutOfBoundsException();
+        } else if (fromIndex > toIndex) {
+            throw new IllegalArgumentException();
+        }
+        return new RoaringIntSet(Arrays.copyOfRange(toIntArray(), fromIndex, toIndex));
+    }
+
+    /**
+     * Returns an uncompressed descending SortedArrayList holding the values
+     * between fromIndex (inclusive) and toIndex (exclusive), since these sets
+     * are always ascending.
+     */
+    @Override
+    public SortedList<Integer> cloneReverse(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || fromIndex > size || toIndex < 0 || toIndex > size) {
+            throw new IndexOutOfBoundsException();
+        } else if (fromIndex > toIndex) {
+            throw new IllegalArgumentException();
+        }
+        int[] values = toIntArray();
+        SortedArrayList<Integer> newList = new SortedArrayList<>(toIndex - fromIndex, false);
+
+        // Values are added largest first, so each add appends without shifting
+        for (int i = toIndex - 1; i >= fromIndex; i--) {
+            newList.add(values[i]);
+        }
+        return newList;
+    }
+
+    /**
+     * Compares the specified object with this set for equality. As required by
+     * Set, returns true if the object is a set of the same size containing
+     * every element of this set. Two RoaringIntSets are compared without
+     * boxing.
+     *
+     * @param o object to compare with
+     * @return true if the object is a set equal to this one
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof Set)) {
+            return false;
+        }
+        Set<?> other = (Set<?>) o;
+        if (other.size() != size) {
+            return false;
+        }
+        if (o instanceof RoaringIntSet) {
+            PrimitiveIterator.OfInt a = intIterator();
+            PrimitiveIterator.OfInt b = ((RoaringIntSet) o).intIterator();
+            while (a.hasNext()) {
+                if (a.nextInt() != b.nextInt()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        for (Object e : other) {
+            if (!contains(e)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the sum of the hash codes of the elements, as required by Set.
+     * This is the same value a set of boxed Integers returns.
+     *
+     * @return the hash code of the set
+     */
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        PrimitiveIterator.OfInt it = intIterator();
+        while (it.hasNext()) {
+            hash += it.nextInt();
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        if (size == 0) {
+            return "[}";
+        }
+        StringBuilder s = new StringBuilder("[");
+        PrimitiveIterator.OfInt it = intIterator();
+        s.append(it.nextInt());
+        while (it.hasNext()) {
+            s.append(',').append(it.nextInt());
+        }
+        return s.append('}').toString();
+    }
+
+    // Containers
+    //
+    /**
+     * Holds the lower 16 bits of the values of a chunk. Mutating operations
+     * return the container which should replace this one, which may be of a
+     * different kind.
+     */
+    private static abstract class Container {
+
+        abstract int cardinality();
+
+        abstract boolean contains(int x);
+
+        abstract Container add(int x);
+
+        abstract Container remove(int x);
+
+        /**
+         * Returns the number of values less than x
+         */
+        abstract int rank(int x);
+
+        /**
+         * Returns the j-th smallest value
+         */
+        abstract int select(int j);
+
+        abstract PrimitiveIterator.OfInt iterator();
+
+        abstract BitmapContainer toBitmap();
+
+        abstract long sizeInBytes();
+
+        abstract Container copy();
+
+        Container and(Container other) {
+            if (this instanceof ArrayContainer) {
+                return ((ArrayContainer) this).filter(other, true);
+            } else if (other instanceof ArrayContainer) {
+                return ((ArrayContainer) other).filter(this, true);
+            }
+            return toBitmap().andBitmap(other.toBitmap());
+        }
+
+        Container or(Container other) {
+            if (this instanceof ArrayContainer && other instanceof ArrayContainer
+                    && cardinality() + other.cardinality() <= ARRAY_MAX) {
+                return ((ArrayContainer) this).merge((ArrayContainer) other);
+            }
+            return toBitmap().orBitmap(other.toBitmap());
+        }
+
+        Container andNot(Container other) {
+            if (this instanceof ArrayContainer) {
+                return ((ArrayContainer) this).filter(other, false);
+            }
+            return toBitmap().andNotBitmap(other.toBitmap());
+        }
+
+        /**
+         * Returns the smallest representation of this container's values
+         */
+        Container optimize() {
+            int card = cardinality();
+            int runs = 0;
+            int previous = -2;
+            for (PrimitiveIterator.OfInt it = iterator(); it.hasNext();) {
+                int x = it.nextInt();
+                if (x != previous + 1) {
+                    runs++;
+                }
+                previous = x;
+            }
+            long runBytes = 4L * runs;
+            long arrayBytes = card <= ARRAY_MAX ? 2L * card : Long.MAX_VALUE;
+            long bitmapBytes = 8L * BitmapContainer.WORDS;
+            if (runBytes < arrayBytes && runBytes < bitmapBytes) {
+                return this instanceof RunContainer ? this : RunContainer.of(this, runs);
+            } else if (arrayBytes <= bitmapBytes) {
+                return this instanceof ArrayContainer ? this : ArrayContainer.of(this);
+            } else {
+                return this instanceof BitmapContainer ? this : toBitmap();
+            }
+        }
+    }
+
+    private static final class ArrayContainer extends Container {
+
+        char[] content;
+        int card;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] content, int card) {
+            this.content = content;
+            this.card = card;
+        }
+
+        static ArrayContainer of(Container c) {
+            char[] content = new char[c.cardinality()];
+            int n = 0;
+            for (PrimitiveIterator.OfInt it = c.iterator(); it.hasNext();) {
+                content[n++] = (char) it.nextInt();
+            }
+            return new ArrayContainer(content, n);
+        }
+
+        @Override
+        int cardinality() {
+            return card;
+        }
+
+        @Override
+        boolean contains(int x) {
+            return Arrays.binarySearch(content, 0, card, (char) x) >= 0;
+        }
+
+        @Override
+        Container add(int x) {
+            int i = Arrays.binarySearch(content, 0, card, (char) x);
+            if (i >= 0) {
+                return this;
+            } else if (card >= ARRAY_MAX) {
+                return toBitmap().add(x);
+            }
+            i = -i - 1;
+            if (card == content.length) {
+                content = Arrays.copyOf(content, Math.min(card * 2, ARRAY_MAX));
+            }
+            System.arraycopy(content, i, content, i + 1, card - i);
+            content[i] = (char) x;
+            card++;
+            return this;
+        }
+
+        @Override
+        Container remove(int x) {
+            int i = Arrays.binarySearch(content, 0, card, (char) x);
+            if (i >= 0) {
+                System.arraycopy(content, i + 1, content, i, card - i - 1);
+                card--;
+            }
+            return this;
+        }
+
+        @Override
+        int rank(int x) {
+            int i = Arrays.binarySearch(content, 0, card, (char) x);
+            return i >= 0 ? i : -i - 1;
+        }
+
+        @Override
+        int select(int j) {
+            return content[j];
+        }
+
+        @Override
+        PrimitiveIterator.OfInt iterator() {
+            return new PrimitiveIterator.OfInt() {
+
+                int i = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return i < card;
+                }
+
+                @Override
+                public int nextInt() {
+                    return content[i++];
+                }
+            };
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            BitmapContainer b = new BitmapContainer();
+            for (int i = 0; i < card; i++) {
+                b.words[content[i] >>> 6] |= 1L << content[i];
+            }
+            b.card = card;
+            return b;
+        }
+
+        @Override
+        long sizeInBytes() {
+            return 16 + 16 + 2L * content.length;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(content, card), card);
+        }
+
+        /**
+         * Keeps the values which are (keep = true) or are not (keep = false)
+         * in the other container
+         */
+        ArrayContainer filter(Container other, boolean keep) {
+            char[] result = new char[card];
+            int n = 0;
+            for (int i = 0; i < card; i++) {
+                if (other.contains(content[i]) == keep) {
+                    result[n++] = content[i];
+                }
+            }
+            return new ArrayContainer(result, n);
+        }
+
+        ArrayContainer merge(ArrayContainer other) {
+            char[] result = new char[card + other.card];
+            int i = 0, j = 0, n = 0;
+            while (i < card && j < other.card) {
+                char a = content[i], b = other.content[j];
+                if (a < b) {
+                    result[n++] = a;
+                    i++;
+                } else if (a > b) {
+                    result[n++] = b;
+                    j++;
+                } else {
+                    result[n++] = a;
+                    i++;
+                    j++;
+                }
+            }
+            while (i < card) {
+                result[n++] = content[i++];
+            }
+            while (j < other.card) {
+                result[n++] = other.content[j++];
+            }
+            return new ArrayContainer(result, n);
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+
+        static final int WORDS = 1024;
+
+        final long[] words;
+        int card;
+
+        BitmapContainer() {
+            this(new long[WORDS], 0);
+        }
+
+        BitmapContainer(long[] words, int card) {
+            this.words = words;
+            this.card = card;
+        }
+
+        @Override
+        int cardinality() {
+            return card;
+        }
+
+        @Override
+        boolean contains(int x) {
+            return (words[x >>> 6] & (1L << x)) != 0;
+        }
+
+        @Override
+        Container add(int x) {
+            long w = words[x >>> 6];
+            long updated = w | (1L << x);
+            if (updated != w) {
+                words[x >>> 6] = updated;
+                card++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(int x) {
+            long w = words[x >>> 6];
+            long updated = w & ~(1L << x);
+            if (updated != w) {
+                words[x >>> 6] = updated;
+                card--;
+                if (card <= ARRAY_MAX) {
+                    return ArrayContainer.of(this);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        int rank(int x) {
+            int w = x >>> 6;
+            int r = 0;
+            for (int i = 0; i < w; i++) {
+                r += Long.bitCount(words[i]);
+            }
+            return r + Long.bitCount(words[w] & ((1L << x) - 1));
+        }
+
+        @Override
+        int select(int j) {
+            for (int i = 0; i < WORDS; i++) {
+                int c = Long.bitCount(words[i]);
+                if (j < c) {
+                    long w = words[i];
+                    for (; j > 0; j--) {
+                        w &= w - 1;
+                    }
+                    return (i << 6) + Long.numberOfTrailingZeros(w);
+                }
+                j -= c;
+            }
+            throw new IndexOutOfBoundsException();
+        }
+
+        @Override
+        PrimitiveIterator.OfInt iterator() {
+            return new PrimitiveIterator.OfInt() {
+
+                int i = 0;
+                long w = words[0];
+
+                @Override
+                public boolean hasNext() {
+                    while (w == 0) {
+                        if (++i >= WORDS) {
+                            return false;
+                        }
+                        w = words[i];
+                    }
+                    return true;
+                }
+
+                @Override
+                public int nextInt() {
+                    hasNext();
+                    int x = (i << 6) + Long.numberOfTrailingZeros(w);
+                    w &= w - 1;
+                    return x;
+                }
+            };
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            return this;
+        }
+
+        @Override
+        long sizeInBytes() {
+            return 16 + 16 + 8L * WORDS;
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), card);
+        }
+
+        private static Container shrink(long[] words) {
+            int card = 0;
+            for (long w : words) {
+                card += Long.bitCount(w);
+            }
+            BitmapContainer b = new BitmapContainer(words, card);
+            return card <= ARRAY_MAX ? ArrayContainer.of(b) : b;
+        }
+
+        Container andBitmap(BitmapContainer other) {
+            long[] result = new long[WORDS];
+            for (int i = 0; i < WORDS; i++) {
+                result[i] = words[i] & other.words[i];
+            }
+            return shrink(result);
+        }
+
+        Container orBitmap(BitmapContainer other) {
+            long[] result = new long[WORDS];
+            for (int i = 0; i < WORDS; i++) {
+                result[i] = words[i] | other.words[i];
+            }
+            return shrink(result);
+        }
+
+        Container andNotBitmap(BitmapContainer other) {
+            long[] result = new long[WORDS];
+            for (int i = 0; i < WORDS; i++) {
+                result[i] = words[i] & ~other.words[i];
+            }
+            return shrink(result);
+        }
+    }
+
+    private static final class RunContainer extends Container {
+
+        // Pairs of (start, length - 1)
+        final char[] runs;
+        final int nRuns;
+        final int card;
+
+        RunContainer(char[] runs, int nRuns, int card) {
+            this.runs = runs;
+            this.nRuns = nRuns;
+            this.card = card;
+        }
+
+        static RunContainer of(Container c, int nRuns) {
+            char[] runs = new char[2 * nRuns];
+            int r = -1, previous = -2;
+            for (PrimitiveIterator.OfInt it = c.iterator(); it.hasNext();) {
+                int x = it.nextInt();
+                if (x != previous + 1) {
+                    r++;
+                    runs[2 * r] = (char) x;
+                } else {
+                    runs[2 * r + 1]++;
+                }
+                previous = x;
+            }
+            return new RunContainer(runs, nRuns, c.cardinality());
+        }
+
+        /**
+         * Returns the index of the last run starting at or before x, or -1
+         */
+        private int findRun(int x) {
+            int pa = 0, pb = nRuns;
+            while (pa < pb) {
+                int mid = (pa + pb) >>> 1;
+                if (runs[2 * mid] <= x) {
+                    pa = mid + 1;
+                } else {
+                    pb = mid;
+                }
+            }
+            return pa - 1;
+        }
+
+        /**
+         * Converts to a mutable container before an update
+         */
+        private Container mutable() {
+            return card <= ARRAY_MAX ? ArrayContainer.of(this) : toBitmap();
+        }
+
+        @Override
+        int cardinality() {
+            return card;
+        }
+
+        @Override
+        boolean contains(int x) {
+            int r = findRun(x);
+            return r >= 0 && x <= runs[2 * r] + runs[2 * r + 1];
+        }
+
+        @Override
+        Container add(int x) {
+            return contains(x) ? this : mutable().add(x);
+        }
+
+        @Override
+        Container remove(int x) {
+            return contains(x) ? mutable().remove(x) : this;
+        }
+
+        @Override
+        int rank(int x) {
+            int rank = 0;
+            for (int r = 0; r < nRuns; r++) {
+                int start = runs[2 * r], length = runs[2 * r + 1] + 1;
+                if (x < start + length) {
+                    return rank + Math.max(0, x - start);
+                }
+                rank += length;
+            }
+            return rank;
+        }
+
+        @Override
+        int select(int j) {
+            for (int r = 0; r < nRuns; r++) {
+                int length = runs[2 * r + 1] + 1;
+                if (j < length) {
+                    return runs[2 * r] + j;
+                }
+                j -= length;
+            }
+            throw new IndexOutOfBoundsException();
+        }
+
+        @Override
+        PrimitiveIterator.OfInt iterator() {
+            return new PrimitiveIterator.OfInt() {
+
+                int r = 0, offset = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return r < nRuns;
+                }
+
+                @Override
+                public int nextInt() {
+                    int x = runs[2 * r] + offset;
+                    if (offset++ == runs[2 * r + 1]) {
+                        r++;
+                        offset = 0;
+                    }
+                    return x;
+                }
+            };
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            BitmapContainer b = new BitmapContainer();
+            for (int r = 0; r < nRuns; r++) {
+                int start = runs[2 * r], end = start + runs[2 * r + 1];
+                int firstWord = start >>> 6, lastWord = end >>> 6;
+                long firstMask = -1L << start, lastMask = -1L >>> (63 - (end & 63));
+                if (firstWord == lastWord) {
+                    b.words[firstWord] |= firstMask & lastMask;
+                } else {
+                    b.words[firstWord] |= firstMask;
+                    for (int w = firstWord + 1; w < lastWord; w++) {
+                        b.words[w] = -1L;
+                    }
+                    b.words[lastWord] |= lastMask;
+                }
+            }
+            b.card = card;
+            return b;
+        }
+
+        @Override
+        long sizeInBytes() {
+            return 16 + 16 + 2L * runs.length;
+        }
+
+        @Override
+        Container copy() {
+            return this;
+        }
+    }
+}
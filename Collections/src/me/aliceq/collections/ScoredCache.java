@@ -0,0 +1,404 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Alice Quiros <email@aliceq.me>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.aliceq.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.ToDoubleBiFunction;
+
+/**
+ * A bounded cache which evicts the entry with the lowest score. Entries are
+ * indexed by key in a HashMap and kept in a descending SortedArrayList ordered
+ * by score, so the entry to evict is always the last element of the array and
+ * removing it shifts nothing. Among entries with equal scores the oldest is
+ * evicted first.
+ *
+ * Since every entry has a distinct position in the order, a score update finds
+ * the entry with a binary search and moves it to its new position with a
+ * single arraycopy over the entries in between, instead of an indexOf scan
+ * followed by a remove and an add. Batches of updates are applied in place and
+ * the array is re-sorted once.
+ *
+ * This class is not synchronized.
+ *
+ * @author Alice Quiros <email@aliceq.me>
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+public class ScoredCache<K, V> {
+
+    private static final class Entry<K, V> {
+
+        final K key;
+        V value;
+        double score;
+        final long sequence;
+
+        Entry(K key, V value, double score, long sequence) {
+            this.key = key;
+            this.value = value;
+            this.score = score;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final Comparator<Entry> BY_SCORE = new Comparator<Entry>() {
+
+        @Override
+        public int compare(Entry o1, Entry o2) {
+            int c = Double.compare(o1.score, o2.score);
+            return c != 0 ? c : Long.compare(o1.sequence, o2.sequence);
+        }
+    };
+
+    // Orders entries as they are stored: highest score first
+    private static final Comparator<Entry> STORED = BY_SCORE.reversed();
+
+    private final int capacity;
+    private final HashMap<K, Entry<K, V>> index;
+    private final SortedArrayList<Entry<K, V>> entries;
+    private final BiConsumer<? super K, ? super V> evictionListener;
+    private long sequence = 0;
+
+    /**
+     * Creates a cache holding at most capacity entries
+     *
+     * @param capacity the maximum number of entries
+     */
+    public ScoredCache(int capacity) {
+        this(capacity, null);
+    }
+
+    /**
+     * Creates a cache holding at most capacity entries which reports evicted
+     * entries to a listener
+     *
+     * @param capacity the maximum number of entries
+     * @param evictionListener called with the key and value of every entry
+     * evicted to make room, or null
+     * @throws IllegalArgumentException if capacity is less than 1
+     */
+    public ScoredCache(int capacity, BiConsumer<? super K, ? super V> evictionListener) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.index = new HashMap<>();
+        this.entries = new SortedArrayList(0, BY_SCORE, false);
+        this.evictionListener = evictionListener;
+    }
+
+    private static void checkScore(double score) {
+        if (Double.isNaN(score)) {
+            throw new IllegalArgumentException("Score must be a number");
+        }
+    }
+
+    /**
+     * Adds or replaces an entry. If the cache is full, the entry with the
+     * lowest score is evicted, which may be the new entry itself.
+     *
+     * @param key the key of the entry
+     * @param value the value of the entry
+     * @param score the score of the entry
+     * @return the previous value of the key, or null
+     * @throws IllegalArgumentException if score is NaN
+     */
+    public V put(K key, V value, double score) {
+        checkScore(score);
+        Entry<K, V> e = index.get(key);
+        if (e != null) {
+            V previous = e.value;
+            e.value = value;
+            rescore(e, score);
+            return previous;
+        }
+
+        e = new Entry(key, value, score, sequence++);
+        index.put(key, e);
+        entries.add(e);
+        if (entries.size > capacity) {
+            evict();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the value of a key, or null if it is not cached
+     *
+     * @param key the key to look up
+     * @return the value of the key or null
+     */
+    public V get(K key) {
+        Entry<K, V> e = index.get(key);
+        return e == null ? null : e.value;
+    }
+
+    /**
+     * Returns the score of a key, or NaN if it is not cached
+     *
+     * @param key the key to look up
+     * @return the score of the key or NaN
+     */
+    public double getScore(K key) {
+        Entry<K, V> e = index.get(key);
+        return e == null ? Double.NaN : e.score;
+    }
+
+    /**
+     * Returns true if the key is cached
+     *
+     * @param key the key to look up
+     * @return true if the key is cached
+     */
+    public boolean containsKey(K key) {
+        return index.containsKey(key);
+    }
+
+    /**
+     * Changes the score of a key in O(log n) plus one arraycopy over the
+     * entries between its old and new positions
+     *
+     * @param key the key to update
+     * @param score the new score
+     * @return true if the key is cached
+     * @throws IllegalArgumentException if score is NaN
+     */
+    public boolean setScore(K key, double score) {
+        checkScore(score);
+        Entry<K, V> e = index.get(key);
+        if (e == null) {
+            return false;
+        }
+        rescore(e, score);
+        return true;
+    }
+
+    /**
+     * Changes the scores of several keys at once. Small batches are applied
+     * one at a time; larger batches update the scores in place and sort the
+     * array once, which is cheap for an array that is still mostly in order.
+     *
+     * @param scores the new scores by key. Keys which are not cached are
+     * ignored.
+     * @throws IllegalArgumentException if a score is NaN
+     */
+    public void setScores(Map<? extends K, Double> scores) {
+        for (Double score : scores.values()) {
+            checkScore(score);
+        }
+        if (scores.size() * 16 < entries.size) {
+            for (Map.Entry<? extends K, Double> s : scores.entrySet()) {
+                setScore(s.getKey(), s.getValue());
+            }
+            return;
+        }
+        for (Map.Entry<? extends K, Double> s : scores.entrySet()) {
+            Entry<K, V> e = index.get(s.getKey());
+            if (e != null) {
+                e.score = s.getValue();
+            }
+        }
+        resort();
+    }
+
+    /**
+     * Recomputes the score of every entry and sorts the array once
+     *
+     * @param scorer computes the new score of an entry from its key and value
+     * @throws IllegalArgumentException if a new score is NaN
+     */
+    public void rescoreAll(ToDoubleBiFunction<? super K, ? super V> scorer) {
+        double[] scores = new double[entries.size];
+        for (int i = 0; i < entries.size; i++) {
+            Entry<K, V> e = entryAt(i);
+            scores[i] = scorer.applyAsDouble(e.key, e.value);
+            checkScore(scores[i]);
+        }
+        for (int i = 0; i < entries.size; i++) {
+            entryAt(i).score = scores[i];
+        }
+        resort();
+    }
+
+    private Entry<K, V> entryAt(int index) {
+        return (Entry<K, V>) ((Object[]) entries.data)[index];
+    }
+
+    private void resort() {
+        Arrays.sort((Object[]) entries.data, 0, entries.size, (Comparator) STORED);
+        entries.modCount++;
+    }
+
+    /**
+     * Moves an entry to the position of its new score. The entries between the
+     * old and new positions shift by one.
+     */
+    private void rescore(Entry<K, V> e, double score) {
+        Object[] data = entries.data;
+        int from = entries.positionOf(e);
+        e.score = score;
+
+        int to;
+        if (from > 0 && STORED.compare((Entry) data[from - 1], e) > 0) {
+            // Moves toward the front: find the first entry ordered after e
+            int pa = 0, pb = from - 1;
+            while (pa < pb) {
+                int mid = (pa + pb) >>> 1;
+                if (STORED.compare((Entry) data[mid], e) > 0) {
+                    pb = mid;
+                } else {
+                    pa = mid + 1;
+                }
+            }
+            to = pa;
+            System.arraycopy(data, to, data, to + 1, from - to);
+        } else if (from < entries.size - 1 && STORED.compare((Entry) data[from + 1], e) < 0) {
+            // Moves toward the end: find the last entry ordered before e
+            int pa = from + 1, pb = entries.size - 1;
+            while (pa < pb) {
+                int mid = (pa + pb + 1) >>> 1;
+                if (STORED.compare((Entry) data[mid], e) < 0) {
+                    pa = mid;
+                } else {
+                    pb = mid - 1;
+                }
+            }
+            to = pa;
+            System.arraycopy(data, from + 1, data, from, to - from);
+        } else {
+            return;
+        }
+        data[to] = e;
+        entries.modCount++;
+    }
+
+    /**
+     * Removes a key from the cache
+     *
+     * @param key the key to remove
+     * @return the value of the key, or null if it was not cached
+     */
+    public V remove(K key) {
+        Entry<K, V> e = index.remove(key);
+        if (e == null) {
+            return null;
+        }
+        entries.remove(entries.positionOf(e));
+        return e.value;
+    }
+
+    /**
+     * Evicts the entry with the lowest score in O(1) and reports it to the
+     * eviction listener
+     *
+     * @return the key of the evicted entry, or null if the cache is empty
+     */
+    public K evict() {
+        if (entries.size == 0) {
+            return null;
+        }
+        Entry<K, V> e = entries.remove(entries.size - 1);
+        index.remove(e.key);
+        if (evictionListener != null) {
+            evictionListener.accept(e.key, e.value);
+        }
+        return e.key;
+    }
+
+    /**
+     * Returns the key with the lowest score, the next to be evicted
+     *
+     * @return the key with the lowest score, or null if the cache is empty
+     */
+    public K lowestKey() {
+        return entries.size == 0 ? null : entryAt(entries.size - 1).key;
+    }
+
+    /**
+     * Returns the lowest score in the cache
+     *
+     * @return the lowest score, or NaN if the cache is empty
+     */
+    public double lowestScore() {
+        return entries.size == 0 ? Double.NaN : entryAt(entries.size - 1).score;
+    }
+
+    /**
+     * Returns the keys of the cache from the highest to the lowest score
+     *
+     * @return the keys in score order
+     */
+    public List<K> keysByScore() {
+        List<K> keys = new ArrayList<>(entries.size);
+        for (int i = 0; i < entries.size; i++) {
+            keys.add(entryAt(i).key);
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the number of entries in the cache
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return entries.size;
+    }
+
+    /**
+     * Returns the maximum number of entries in the cache
+     *
+     * @return the capacity of the cache
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Removes every entry without notifying the eviction listener
+     */
+    public void clear() {
+        index.clear();
+        entries.clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder("{");
+        for (int i = 0; i < entries.size; i++) {
+            Entry<K, V> e = entryAt(i);
+            if (i > 0) {
+                s.append(',');
+            }
+            s.append(e.key).append('=').append(e.value).append('@').append(e.score);
+        }
+        return s.append('}').toString();
+    }
+}
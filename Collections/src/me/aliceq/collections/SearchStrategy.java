@@ -0,0 +1,391 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Alice Quiros <email@aliceq.me>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.aliceq.collections;
+
+import java.util.Comparator;
+
+/**
+ * Strategies used by sorted array lists to find the position of an element.
+ * Each strategy returns a valid insertion point for the searched value; when
+ * equal values are present the returned index points to one of them.
+ *
+ * Strategies which rely on numeric keys (INTERPOLATION) fall back to a plain
+ * binary search when used with Comparator-ordered elements.
+ *
+ * @author Alice Quiros <email@aliceq.me>
+ */
+public enum SearchStrategy {
+
+    /**
+     * Plain midpoint binary search. A good general purpose default.
+     */
+    BINARY {
+
+        @Override
+        int positionOf(Object[] data, int size, Object o, Comparator c, int sortMode) {
+            int pa = 0, pb = size;
+
+            while (pa < pb) {
+                int mid = (pa + pb) >>> 1;
+                int comp = data[mid] == null ? -1 : c.compare(data[mid], o) * sortMode;
+
+                if (comp > 0) {
+                    pa = mid + 1;
+                } else if (comp < 0) {
+                    pb = mid;
+                } else {
+                    return mid;
+                }
+            }
+            return pa;
+        }
+
+        @Override
+        int positionOf(long[] keys, int size, long key, boolean ascending) {
+            int pa = 0, pb = size;
+
+            while (pa < pb) {
+                int mid = (pa + pb) >>> 1;
+                if (before(keys[mid], key, ascending)) {
+                    pa = mid + 1;
+                } else {
+                    pb = mid;
+                }
+            }
+            return pa;
+        }
+    },
+    /**
+     * Binary search with a fixed number of iterations and no early exit. The
+     * loop body only selects the next base index, which lets the JIT emit a
+     * conditional move instead of an unpredictable branch. Best for lookups of
+     * random keys in small to medium sized lists.
+     */
+    BRANCHLESS {
+
+        @Override
+        int positionOf(Object[] data, int size, Object o, Comparator c, int sortMode) {
+            if (size == 0) {
+                return 0;
+            }
+            int base = 0, n = size;
+            while (n > 1) {
+                int half = n >>> 1;
+                base = before(data[base + half], o, c, sortMode) ? base + half : base;
+                n -= half;
+            }
+            return before(data[base], o, c, sortMode) ? base + 1 : base;
+        }
+
+        @Override
+        int positionOf(long[] keys, int size, long key, boolean ascending) {
+            if (size == 0) {
+                return 0;
+            }
+            int base = 0, n = size;
+            if (ascending) {
+                while (n > 1) {
+                    int half = n >>> 1;
+                    base = keys[base + half] < key ? base + half : base;
+                    n -= half;
+                }
+                return keys[base] < key ? base + 1 : base;
+            } else {
+                while (n > 1) {
+                    int half = n >>> 1;
+                    base = keys[base + half] > key ? base + half : base;
+                    n -= half;
+                }
+                return keys[base] > key ? base + 1 : base;
+            }
+        }
+    },
+    /**
+     * Interpolation search, which guesses the position of a key from the keys
+     * at both ends of the remaining range. Needs O(log log n) probes for
+     * uniformly distributed keys. Whenever a probe fails to halve the range the
+     * next probe is a midpoint probe, so skewed keys are still found in
+     * O(log n).
+     */
+    INTERPOLATION {
+
+        @Override
+        int positionOf(Object[] data, int size, Object o, Comparator c, int sortMode) {
+            return BINARY.positionOf(data, size, o, c, sortMode);
+        }
+
+        @Override
+        int positionOf(long[] keys, int size, long key, boolean ascending) {
+            if (size == 0 || !before(keys[0], key, ascending)) {
+                return 0;
+            }
+            int hi = size - 1;
+            if (before(keys[hi], key, ascending)) {
+                return size;
+            }
+
+            // keys[lo] is before key and keys[hi] is not, so the answer is in (lo, hi]
+            int lo = 0;
+            boolean bisect = false;
+            while (hi - lo > 1) {
+                int range = hi - lo;
+                int mid;
+                if (bisect) {
+                    mid = (lo + hi) >>> 1;
+                } else {
+                    double fraction = ((double) key - keys[lo]) / ((double) keys[hi] - keys[lo]);
+                    mid = lo + 1 + (int) (fraction * (range - 1));
+                    if (mid >= hi) {
+                        mid = hi - 1;
+                    } else if (mid <= lo) {
+                        mid = lo + 1;
+                    }
+                }
+
+                if (before(keys[mid], key, ascending)) {
+                    lo = mid;
+                } else {
+                    hi = mid;
+                }
+                bisect = (hi - lo) * 2 > range;
+            }
+            return hi;
+        }
+    },
+    /**
+     * Exponential (galloping) search starting from the end of the list,
+     * followed by a binary search within the bracketed range. Needs O(log d)
+     * probes where d is the distance of the key from the end of the list,
+     * which makes it well suited to time-ordered data where lookups and
+     * inserts mostly land near the tail.
+     */
+    EXPONENTIAL {
+
+        @Override
+        int positionOf(Object[] data, int size, Object o, Comparator c, int sortMode) {
+            int hi = size, bound = 1;
+            int lo = size - 1;
+            while (lo >= 0 && !before(data[lo], o, c, sortMode)) {
+                hi = lo;
+                bound <<= 1;
+                lo = size - bound;
+            }
+
+            int pa = lo < 0 ? 0 : lo + 1, pb = hi;
+            while (pa < pb) {
+                int mid = (pa + pb) >>> 1;
+                if (before(data[mid], o, c, sortMode)) {
+                    pa = mid + 1;
+                } else {
+                    pb = mid;
+                }
+            }
+            return pa;
+        }
+
+        @Override
+        int positionOf(long[] keys, int size, long key, boolean ascending) {
+            int hi = size, bound = 1;
+            int lo = size - 1;
+            while (lo >= 0 && !before(keys[lo], key, ascending)) {
+                hi = lo;
+                bound <<= 1;
+                lo = size - bound;
+            }
+
+            int pa = lo < 0 ? 0 : lo + 1, pb = hi;
+            while (pa < pb) {
+                int mid = (pa + pb) >>> 1;
+                if (before(keys[mid], key, ascending)) {
+                    pa = mid + 1;
+                } else {
+                    pb = mid;
+                }
+            }
+            return pa;
+        }
+    },
+    /**
+     * Finger search: an exponential search which starts from the last position
+     * the list found, in whichever direction the key lies, followed by a binary
+     * search within the bracketed range. Needs O(log d) probes where d is the
+     * distance from the previous position, which makes near-sequential inserts
+     * and lookups of nearby keys cheap while random lookups cost at most about
+     * twice a binary search. Without a previous position it behaves like
+     * EXPONENTIAL.
+     */
+    FINGER {
+
+        @Override
+        int positionOf(Object[] data, int size, Object o, Comparator c, int sortMode) {
+            return EXPONENTIAL.positionOf(data, size, o, c, sortMode);
+        }
+
+        @Override
+        int positionOf(long[] keys, int size, long key, boolean ascending) {
+            return EXPONENTIAL.positionOf(keys, size, key, ascending);
+        }
+
+        @Override
+        int positionOf(Object[] data, int size, Object o, Comparator c, int sortMode, int hint) {
+            int h = Math.max(0, Math.min(hint, size));
+            int lo, hi;
+            if (h < size && before(data[h], o, c, sortMode)) {
+                // Gallop forward: data[lo - 1] is before o
+                lo = h + 1;
+                int bound = 1;
+                while (lo + bound - 1 < size && before(data[lo + bound - 1], o, c, sortMode)) {
+                    lo += bound;
+                    bound <<= 1;
+                }
+                hi = Math.min(size, lo + bound - 1);
+            } else {
+                // Gallop backward: data[hi] is not before o, or hi is size
+                hi = h;
+                int bound = 1;
+                while (hi - bound >= 0 && !before(data[hi - bound], o, c, sortMode)) {
+                    hi -= bound;
+                    bound <<= 1;
+                }
+                lo = Math.max(0, hi - bound + 1);
+            }
+
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (before(data[mid], o, c, sortMode)) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        @Override
+        int positionOf(long[] keys, int size, long key, boolean ascending, int hint) {
+            int h = Math.max(0, Math.min(hint, size));
+            int lo, hi;
+            if (h < size && before(keys[h], key, ascending)) {
+                lo = h + 1;
+                int bound = 1;
+                while (lo + bound - 1 < size && before(keys[lo + bound - 1], key, ascending)) {
+                    lo += bound;
+                    bound <<= 1;
+                }
+                hi = Math.min(size, lo + bound - 1);
+            } else {
+                hi = h;
+                int bound = 1;
+                while (hi - bound >= 0 && !before(keys[hi - bound], key, ascending)) {
+                    hi -= bound;
+                    bound <<= 1;
+                }
+                lo = Math.max(0, hi - bound + 1);
+            }
+
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (before(keys[mid], key, ascending)) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    };
+
+    /**
+     * Returns the position of an object within the first size elements of a
+     * sorted array
+     *
+     * @param data the sorted elements
+     * @param size the number of elements in use
+     * @param o the object to search for
+     * @param c the comparator ordering the elements
+     * @param sortMode -1 if the elements are ascending, 1 if descending
+     * @return the position of the object
+     */
+    abstract int positionOf(Object[] data, int size, Object o, Comparator c, int sortMode);
+
+    /**
+     * Returns the position of a key within the first size keys of a sorted
+     * array. If equal keys are present, the index of the first one is returned.
+     *
+     * @param keys the sorted keys
+     * @param size the number of keys in use
+     * @param key the key to search for
+     * @param ascending true if the keys are ascending, false if descending
+     * @return the position of the key
+     */
+    abstract int positionOf(long[] keys, int size, long key, boolean ascending);
+
+    /**
+     * Returns the position of an object, given the position the list found
+     * last time as a hint. Only FINGER uses the hint; the other strategies
+     * ignore it.
+     *
+     * @param data the sorted elements
+     * @param size the number of elements in use
+     * @param o the object to search for
+     * @param c the comparator ordering the elements
+     * @param sortMode -1 if the elements are ascending, 1 if descending
+     * @param hint the previous position, which may be out of range
+     * @return the position of the object
+     */
+    int positionOf(Object[] data, int size, Object o, Comparator c, int sortMode, int hint) {
+        return positionOf(data, size, o, c, sortMode);
+    }
+
+    /**
+     * Returns the position of a key, given the position the list found last
+     * time as a hint. Only FINGER uses the hint; the other strategies ignore
+     * it.
+     *
+     * @param keys the sorted keys
+     * @param size the number of keys in use
+     * @param key the key to search for
+     * @param ascending true if the keys are ascending, false if descending
+     * @param hint the previous position, which may be out of range
+     * @return the position of the key
+     */
+    int positionOf(long[] keys, int size, long key, boolean ascending, int hint) {
+        return positionOf(keys, size, key, ascending);
+    }
+
+    /**
+     * Returns true if element e is ordered strictly before object o. Null
+     * elements are ordered after everything.
+     */
+    static boolean before(Object e, Object o, Comparator c, int sortMode) {
+        return e != null && c.compare(e, o) * sortMode > 0;
+    }
+
+    /**
+     * Returns true if key a is ordered strictly before key b
+     */
+    static boolean before(long a, long b, boolean ascending) {
+        return ascending ? a < b : a > b;
+    }
+}
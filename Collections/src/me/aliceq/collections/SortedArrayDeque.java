@@ -0,0 +1,790 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Alice Quiros <email@aliceq.me>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.aliceq.collections;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A sorted list which doubles as a priority Queue and Deque. The elements are
+ * stored contiguously in the middle of the backing array with free space on
+ * both sides, like a gap buffer with the gaps at its ends. Removing the first
+ * or last element moves a boundary and shifts nothing, and an insert shifts
+ * the elements between its position and the nearer end, so adding near
+ * either end is cheap. Elements ordered before the first or after the last
+ * element are placed after a single comparison.
+ *
+ * Since the order of the elements is fixed by the comparator, every insertion
+ * method of Deque, including addFirst, addLast and push, inserts the element
+ * at its sorted position after any equal elements. The head of the queue is
+ * the first element: the smallest in an ascending deque and the largest in a
+ * descending one. Null elements are not permitted.
+ *
+ * This class is not synchronized.
+ *
+ * @author Alice Quiros <email@aliceq.me>
+ * @param <E> the type of elements in this deque
+ */
+public class SortedArrayDeque<E> extends AbstractSortedList<E> implements Deque<E> {
+
+    protected final Comparator comparator;
+    protected final int sortMode;
+    protected E[] data;
+    protected int start, size;
+    protected GrowthPolicy growthPolicy = GrowthPolicy.DEFAULT;
+    protected final CollectionMetrics metrics;
+    private final Comparator countingComparator;
+
+    /**
+     * Basic constructor creating an empty SortedArrayDeque in ascending order
+     */
+    public SortedArrayDeque() {
+        this(0, null, true);
+    }
+
+    /**
+     * Constructor creating an empty SortedArrayDeque of specified order
+     *
+     * @param ascending true if the deque is ascending, false if descending
+     */
+    public SortedArrayDeque(boolean ascending) {
+        this(0, null, ascending);
+    }
+
+    /**
+     * Constructor creating an empty SortedArrayDeque of specified order and
+     * initial capacity
+     *
+     * @param initCapacity the initial capacity of the deque
+     * @param c the comparator used to compare elements in the deque
+     * @param ascending true if the deque is ascending, false if descending
+     */
+    public SortedArrayDeque(int initCapacity, Comparator<E> c, boolean ascending) {
+        this.data = (E[]) new Object[initCapacity];
+        this.start = initCapacity / 2;
+        this.sortMode = ascending ? -1 : 1;
+
+        if (c == null) {
+            this.comparator = new Comparator<E>() {
+
+                @Override
+                public int compare(E o1, E o2) {
+                    if (o1 instanceof Comparable) {
+                        return ((Comparable) o1).compareTo(o2);
+                    } else {
+                        return o2.hashCode() - o1.hashCode();
+                    }
+                }
+            };
+        } else {
+            this.comparator = c;
+        }
+
+        this.metrics = CollectionMetrics.create(getClass().getSimpleName());
+        this.countingComparator = metrics == null ? comparator : metrics.counting(comparator);
+    }
+
+    /**
+     * Constructor creating a SortedArrayDeque initialized with a set of values
+     *
+     * @param c collection of values to add on initialization
+     * @throws NullPointerException if c contains a null element
+     */
+    public SortedArrayDeque(Collection<? extends E> c) {
+        this(c, null, true);
+    }
+
+    /**
+     * Constructor creating a SortedArrayDeque initialized with a set of
+     * values. The values are sorted once rather than inserted one at a time.
+     *
+     * @param c collection of values to add on initialization
+     * @param comparator the comparator used to compare elements in the deque
+     * @param ascending true if the deque is ascending, false if descending
+     * @throws NullPointerException if c contains a null element
+     */
+    public SortedArrayDeque(Collection<? extends E> c, Comparator<E> comparator, boolean ascending) {
+        this(0, comparator, ascending);
+        Object[] values = c.toArray();
+        for (Object o : values) {
+            if (o == null) {
+                throw new NullPointerException();
+            }
+        }
+
+        final Comparator base = this.comparator;
+        final int mode = this.sortMode;
+        Arrays.sort(values, new Comparator<Object>() {
+
+            @Override
+            public int compare(Object o1, Object o2) {
+                return -mode * base.compare(o1, o2);
+            }
+        });
+
+        int capacity = values.length + (values.length >> 1) + 2;
+        this.data = (E[]) new Object[capacity];
+        this.start = (capacity - values.length) / 2;
+        this.size = values.length;
+        System.arraycopy(values, 0, data, start, size);
+    }
+
+    private Comparator comparator() {
+        return CollectionMetrics.ENABLED ? countingComparator : comparator;
+    }
+
+    /**
+     * Returns the number of elements ordered strictly before o, or if
+     * inclusive is true, ordered before or equal to o
+     */
+    private int search(Object o, boolean inclusive) {
+        if (CollectionMetrics.ENABLED) {
+            metrics.searches++;
+        }
+        Comparator c = comparator();
+        int pa = 0, pb = size;
+        while (pa < pb) {
+            int mid = (pa + pb) >>> 1;
+            int cmp = c.compare(data[start + mid], o) * sortMode;
+            if (cmp > 0 || (inclusive && cmp == 0)) {
+                pa = mid + 1;
+            } else {
+                pb = mid;
+            }
+        }
+        return pa;
+    }
+
+    @Override
+    public int positionOf(Object o) {
+        if (o == null) {
+            throw new NullPointerException();
+        }
+        return search(o, false);
+    }
+
+    /**
+     * Returns the position an element is inserted at, after any equal
+     * elements. Elements ordered before the first or after the last element
+     * are placed after a single comparison.
+     */
+    private int insertionPoint(E e) {
+        if (size == 0) {
+            return 0;
+        }
+        Comparator c = comparator();
+        if (c.compare(data[start + size - 1], e) * sortMode >= 0) {
+            return size;
+        } else if (c.compare(data[start], e) * sortMode < 0) {
+            return 0;
+        }
+        return search(e, true);
+    }
+
+    @Override
+    public boolean add(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        Object event = CollectionEvents.beginAdd();
+        insert(insertionPoint(e), e);
+        CollectionEvents.endAdd(event, this, size);
+        return true;
+    }
+
+    /**
+     * Inserts an element at the specified position, shifting the elements
+     * between it and the nearer end of the deque. The caller is responsible
+     * for keeping the deque sorted.
+     *
+     * @param index the position to insert at
+     * @param e the element to insert
+     */
+    protected void insert(int index, E e) {
+        // Increment count
+        modCount++;
+
+        if (index < size - index) {
+            // Shift the front back one
+            if (start == 0) {
+                recenter(size + 1);
+            }
+            System.arraycopy(data, start, data, start - 1, index);
+            start--;
+            if (CollectionMetrics.ENABLED) {
+                metrics.elementsShifted += index;
+            }
+        } else {
+            // Shift the back forward one
+            if (start + size == data.length) {
+                recenter(size + 1);
+            }
+            System.arraycopy(data, start + index, data, start + index + 1, size - index);
+            if (CollectionMetrics.ENABLED) {
+                metrics.elementsShifted += size - index;
+            }
+        }
+
+        data[start + index] = e;
+        size++;
+    }
+
+    /**
+     * Moves the elements to the middle of the backing array, leaving room on
+     * both sides. The array grows according to the growth policy unless the
+     * free space left after minCapacity elements is at least half of
+     * minCapacity, so every recentering is paid for by a proportional number of
+     * cheap inserts.
+     *
+     * @param minCapacity the number of elements which must fit
+     */
+    private void recenter(int minCapacity) {
+        int required = minCapacity + (minCapacity >> 1) + 2;
+        if (data.length >= required) {
+            int newStart = (data.length - size) / 2;
+            System.arraycopy(data, start, data, newStart, size);
+            if (start < newStart) {
+                Arrays.fill(data, start, Math.min(start + size, newStart), null);
+            } else {
+                Arrays.fill(data, Math.max(start, newStart + size), start + size, null);
+            }
+            start = newStart;
+        } else {
+            int newCapacity = Math.max(growthPolicy.grow(data.length, required), required);
+            E[] target = (E[]) new Object[newCapacity];
+            int newStart = (newCapacity - size) / 2;
+            System.arraycopy(data, start, target, newStart, size);
+            resized(data.length, newCapacity);
+            data = target;
+            start = newStart;
+        }
+    }
+
+    /**
+     * Records that the backing storage was reallocated
+     *
+     * @param oldCapacity the previous capacity
+     * @param newCapacity the new capacity
+     */
+    protected void resized(int oldCapacity, int newCapacity) {
+        long bytes = (long) newCapacity * CollectionMetrics.REFERENCE_BYTES;
+        if (CollectionMetrics.ENABLED) {
+            metrics.resized(bytes);
+        }
+        CollectionEvents.resized(this, oldCapacity, newCapacity, bytes);
+    }
+
+    @Override
+    public E remove(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+        // Increment count
+        modCount++;
+
+        E at = data[start + index];
+        if (index < size - index - 1) {
+            // Shift the front forward one
+            System.arraycopy(data, start, data, start + 1, index);
+            data[start++] = null;
+            if (CollectionMetrics.ENABLED) {
+                metrics.elementsShifted += index;
+            }
+        } else {
+            // Shift the back back one
+            System.arraycopy(data, start + index + 1, data, start + index, size - index - 1);
+            data[start + size - 1] = null;
+            if (CollectionMetrics.ENABLED) {
+                metrics.elementsShifted += size - index - 1;
+            }
+        }
+        size--;
+        return at;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int index = indexOf(o);
+        if (index < 0) {
+            return false;
+        }
+        remove(index);
+        return true;
+    }
+
+    /**
+     * Removes every element contained in c in a single pass
+     *
+     * @param c the elements to remove
+     * @return true if the deque changed
+     */
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        return retain(c, false);
+    }
+
+    /**
+     * Removes every element not contained in c in a single pass
+     *
+     * @param c the elements to keep
+     * @return true if the deque changed
+     */
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        return retain(c, true);
+    }
+
+    private boolean retain(Collection<?> c, boolean keep) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            E e = data[start + i];
+            if (c.contains(e) == keep) {
+                data[start + kept++] = e;
+            }
+        }
+        if (kept == size) {
+            return false;
+        }
+        // Increment count
+        modCount++;
+        Arrays.fill(data, start + kept, start + size, null);
+        size = kept;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        // Increment count
+        modCount++;
+
+        Arrays.fill(data, start, start + size, null);
+        size = 0;
+        start = data.length / 2;
+    }
+
+    @Override
+    public E get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return data[start + index];
+    }
+
+    /**
+     * Returns the index of the first occurrence of an element. The equal run
+     * is found with a binary search, so only elements which compare equal to o
+     * are tested with equals.
+     *
+     * @param o element to search for
+     * @return the index of the first occurrence, or -1
+     */
+    @Override
+    public int indexOf(Object o) {
+        if (o == null) {
+            return -1;
+        }
+        Comparator c = comparator();
+        for (int i = search(o, false); i < size && c.compare(data[start + i], o) == 0; i++) {
+            if (o.equals(data[start + i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        if (o == null) {
+            return -1;
+        }
+        Comparator c = comparator();
+        for (int i = search(o, true) - 1; i >= 0 && c.compare(data[start + i], o) == 0; i--) {
+            if (o.equals(data[start + i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    @Override
+    public boolean isAscending() {
+        return sortMode <= 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Comparator<E> getComparator() {
+        return comparator;
+    }
+
+    /**
+     * Returns the number of elements the deque can hold before it needs to
+     * move or grow its backing array
+     *
+     * @return the capacity of the backing array
+     */
+    public int capacity() {
+        return data.length;
+    }
+
+    /**
+     * Returns the policy used to grow the backing array
+     *
+     * @return the growth policy
+     */
+    public GrowthPolicy getGrowthPolicy() {
+        return growthPolicy;
+    }
+
+    /**
+     * Sets the policy used to grow the backing array
+     *
+     * @param policy the growth policy
+     * @throws NullPointerException if policy is null
+     */
+    public void setGrowthPolicy(GrowthPolicy policy) {
+        if (policy == null) {
+            throw new NullPointerException();
+        }
+        this.growthPolicy = policy;
+    }
+
+    /**
+     * Returns a snapshot of the instrumentation counters of this deque. If
+     * instrumentation is disabled, every counter is zero.
+     *
+     * @return a snapshot of the counters
+     */
+    public CollectionStats stats() {
+        return metrics == null ? CollectionStats.EMPTY : metrics.snapshot();
+    }
+
+    /**
+     * Returns the live instrumentation counters of this deque, for instance to
+     * register them with JMX, or null if instrumentation is disabled.
+     *
+     * @return the counters or null
+     */
+    public CollectionMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void addFirst(E e) {
+        add(e);
+    }
+
+    @Override
+    public void addLast(E e) {
+        add(e);
+    }
+
+    @Override
+    public boolean offerFirst(E e) {
+        return add(e);
+    }
+
+    @Override
+    public boolean offerLast(E e) {
+        return add(e);
+    }
+
+    @Override
+    public boolean offer(E e) {
+        return add(e);
+    }
+
+    @Override
+    public void push(E e) {
+        add(e);
+    }
+
+    @Override
+    public E pollFirst() {
+        if (size == 0) {
+            return null;
+        }
+        // Increment count
+        modCount++;
+
+        E e = data[start];
+        data[start++] = null;
+        if (--size == 0) {
+            start = data.length / 2;
+        }
+        return e;
+    }
+
+    @Override
+    public E pollLast() {
+        if (size == 0) {
+            return null;
+        }
+        // Increment count
+        modCount++;
+
+        E e = data[start + --size];
+        data[start + size] = null;
+        if (size == 0) {
+            start = data.length / 2;
+        }
+        return e;
+    }
+
+    /**
+     * Removes and returns the smallest element in O(1)
+     *
+     * @return the smallest element, or null if the deque is empty
+     */
+    public E pollSmallest() {
+        return isAscending() ? pollFirst() : pollLast();
+    }
+
+    /**
+     * Removes and returns the largest element in O(1)
+     *
+     * @return the largest element, or null if the deque is empty
+     */
+    public E pollLargest() {
+        return isAscending() ? pollLast() : pollFirst();
+    }
+
+    @Override
+    public E peekFirst() {
+        return size == 0 ? null : data[start];
+    }
+
+    @Override
+    public E peekLast() {
+        return size == 0 ? null : data[start + size - 1];
+    }
+
+    @Override
+    public E removeFirst() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return pollFirst();
+    }
+
+    @Override
+    public E removeLast() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return pollLast();
+    }
+
+    @Override
+    public E getFirst() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return data[start];
+    }
+
+    @Override
+    public E getLast() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return data[start + size - 1];
+    }
+
+    @Override
+    public E poll() {
+        return pollFirst();
+    }
+
+    @Override
+    public E peek() {
+        return peekFirst();
+    }
+
+    @Override
+    public E remove() {
+        return removeFirst();
+    }
+
+    @Override
+    public E element() {
+        return getFirst();
+    }
+
+    @Override
+    public E pop() {
+        return removeFirst();
+    }
+
+    @Override
+    public boolean removeFirstOccurrence(Object o) {
+        return remove(o);
+    }
+
+    @Override
+    public boolean removeLastOccurrence(Object o) {
+        int index = lastIndexOf(o);
+        if (index < 0) {
+            return false;
+        }
+        remove(index);
+        return true;
+    }
+
+    @Override
+    public Object[] toArray() {
+        return Arrays.copyOfRange(data, start, start + size, Object[].class);
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        if (a.length < size) {
+            return (T[]) Arrays.copyOfRange(data, start, start + size, a.getClass());
+        }
+        System.arraycopy(data, start, a, 0, size);
+        if (a.length > size) {
+            a[size] = null;
+        }
+        return a;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Itr(false);
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        return new Itr(true);
+    }
+
+    @Override
+    public SortedList<E> cloneRange(int fromIndex, int toIndex) {
+        return copyRange(fromIndex, toIndex, false);
+    }
+
+    @Override
+    public SortedList<E> cloneReverse(int fromIndex, int toIndex) {
+        return copyRange(fromIndex, toIndex, true);
+    }
+
+    private SortedArrayDeque<E> copyRange(int fromIndex, int toIndex, boolean reverse) {
+        if (fromIndex < 0 || fromIndex > size || toIndex < 0 || toIndex > size) {
+            throw new IndexOutOfBoundsException();
+        } else if (fromIndex > toIndex) {
+            throw new IllegalArgumentException();
+        }
+
+        int length = toIndex - fromIndex;
+        SortedArrayDeque<E> copy = new SortedArrayDeque(length + (length >> 1) + 2, comparator, isAscending() != reverse);
+        copy.growthPolicy = growthPolicy;
+        copy.start = (copy.data.length - length) / 2;
+        copy.size = length;
+        for (int i = 0; i < length; i++) {
+            copy.data[copy.start + i] = data[start + (reverse ? toIndex - i - 1 : fromIndex + i)];
+        }
+        return copy;
+    }
+
+    /**
+     * Returns a String representation of the instance, using the same bracket
+     * notation as SortedArrayList
+     *
+     * @return a String representation of the instance
+     */
+    @Override
+    public String toString() {
+        if (size == 0) {
+            return isAscending() ? "[}" : "{]";
+        }
+
+        StringBuilder s = new StringBuilder(isAscending() ? "[" : "{").append(data[start]);
+        for (int i = 1; i < size; i++) {
+            s.append(',').append(data[start + i]);
+        }
+        return s.append(isAscending() ? '}' : ']').toString();
+    }
+
+    /**
+     * A fail-fast iterator walking the backing array in either direction
+     */
+    private class Itr implements Iterator<E> {
+
+        private final boolean descending;
+        private int cursor;
+        private int lastReturned = -1;
+        private int expectedModCount = modCount;
+
+        Itr(boolean descending) {
+            this.descending = descending;
+            this.cursor = descending ? size - 1 : 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return descending ? cursor >= 0 : cursor < size;
+        }
+
+        @Override
+        public E next() {
+            if (expectedModCount != modCount) {
+                throw new ConcurrentModificationException();
+            } else if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = cursor;
+            cursor += descending ? -1 : 1;
+            return data[start + lastReturned];
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned < 0) {
+                throw new IllegalStateException();
+            } else if (expectedModCount != modCount) {
+                throw new ConcurrentModificationException();
+            }
+            SortedArrayDeque.this.remove(lastReturned);
+            if (!descending) {
+                cursor = lastReturned;
+            }
+            lastReturned = -1;
+            expectedModCount = modCount;
+        }
+    }
+}
@@ -23,8 +23,15 @@
  */
 package me.aliceq.collections;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 
 /**
  * A JCF-like ArrayList which maintains a sorted collection of elements.
@@ -38,6 +45,15 @@ public class SortedArrayList<E> extends AbstractSortedList<E> {
     protected final int sortMode;
     protected int size = 0;
     protected E[] data;
+    protected SearchStrategy searchStrategy = SearchStrategy.BINARY;
+    protected GrowthPolicy growthPolicy = GrowthPolicy.DEFAULT;
+    protected int finger = 0;
+    protected final CollectionMetrics metrics;
+    /**
+     * The comparator wrapped to count comparisons when metrics are enabled,
+     * otherwise the comparator itself
+     */
+    protected final Comparator countingComparator;
 
     /**
      * Basic constructor creating an empty SortedArrayList in ascending order
@@ -94,6 +110,9 @@ public class SortedArrayList<E> extends AbstractSortedList<E> {
         } else {
             this.comparator = c;
         }
+
+        this.metrics = CollectionMetrics.create(getClass().getSimpleName());
+        this.countingComparator = metrics == null ? comparator : metrics.counting(comparator);
     }
 
     /**
@@ -139,57 +158,203 @@ public class SortedArrayList<E> extends AbstractSortedList<E> {
 
     @Override
     public Object[] toArray() {
-        Comparable[] clone = new Comparable[size];
+        Object[] clone = new Object[size];
         System.arraycopy(data, 0, clone, 0, size);
         return clone;
     }
 
     @Override
     public <T> T[] toArray(T[] a) {
-        if (a.length >= size) {
-            // Copy and return a
-            System.arraycopy(data, 0, a, 0, size);
-            for (int i = size; i < a.length; i++) {
-                a[i] = null;
-            }
-            return a;
-        } else {
-            // Return new array
-            if (a instanceof Object[]) {
-                return (T[]) toArray(); // This probably won't work....
-            } else {
-                throw new ClassCastException();
-            }
+        if (a.length < size) {
+            // Return new array of the same runtime type
+            return (T[]) Arrays.copyOf(data, size, a.getClass());
+        }
+        System.arraycopy(data, 0, a, 0, size);
+        if (a.length > size) {
+            a[size] = null;
+        }
+        return a;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Itr(0);
+    }
+
+    @Override
+    public ListIterator<E> listIterator() {
+        return new Itr(0);
+    }
+
+    @Override
+    public ListIterator<E> listIterator(int index) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return new Itr(index);
+    }
+
+    /**
+     * Performs the given action for each element of the list in order. The
+     * elements are read straight from the backing array and the list is only
+     * checked for concurrent modification once the scan is complete.
+     *
+     * @param action the action to perform on each element
+     * @throws ConcurrentModificationException if the list was modified during
+     * the scan
+     */
+    @Override
+    public void forEach(Consumer<? super E> action) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        final int expectedModCount = modCount;
+        final E[] elements = data;
+        final int n = size;
+        for (int i = 0; i < n; i++) {
+            action.accept(elements[i]);
         }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Returns a spliterator over the backing array, which streams use to scan
+     * and split the list without going through get. Like the spliterator of
+     * java.util.ArrayList it is late-binding: it covers the elements present
+     * when it is first traversed, split or sized, not when it is created.
+     * forEachRemaining checks for concurrent modification once the scan is
+     * complete, and tryAdvance after each element.
+     *
+     * @return a spliterator over the elements of the list
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        return new ArraySpliterator(0, -1, 0, Spliterator.ORDERED, null);
     }
 
     @Override
     public boolean add(E e) {
+        Object event = CollectionEvents.beginAdd();
+        insert(insertionPoint(e), e);
+        CollectionEvents.endAdd(event, this, size);
+        return true;
+    }
+
+    /**
+     * Inserts an element at the specified position, shifting the elements
+     * after it forward and growing the backing array according to the growth
+     * policy if it is full. The caller is responsible for keeping the list
+     * sorted.
+     *
+     * @param index the position to insert at
+     * @param e the element to insert
+     */
+    protected void insert(int index, E e) {
         // Increment count
         modCount++;
 
-        // Target array
-        E[] target = data;
-
-        // Get the index to insert
-        int index = positionOf(e);
-
-        // If current array isn't big enough, make a new one but only copy up to the index
-        if (++size >= data.length) {
-            // Increase array size
-            int newCapacity = (data.length * 3) / 2 + 1;  // Sun implementation
-            target = (E[]) new Comparable[newCapacity];
+        if (size == data.length) {
+            // If current array isn't big enough, make a new one and copy around the index
+            int newCapacity = growthPolicy.grow(data.length, size + 1);
+            E[] target = (E[]) new Object[Math.max(newCapacity, size + 1)];
             System.arraycopy(data, 0, target, 0, index);
+            System.arraycopy(data, index, target, index + 1, size - index);
+            resized(data.length, target.length);
+            data = target;
+        } else {
+            // Shift values forward
+            System.arraycopy(data, index, data, index + 1, size - index);
+        }
+        if (CollectionMetrics.ENABLED) {
+            metrics.elementsShifted += size - index;
         }
 
-        // Shift values forward
-        System.arraycopy(data, index, target, index + 1, size - index - 1);
+        data[index] = e;
+        size++;
+    }
 
-        // Set index
-        target[index] = e;
+    /**
+     * Records that the backing storage was reallocated
+     *
+     * @param oldCapacity the previous capacity
+     * @param newCapacity the new capacity
+     */
+    protected void resized(int oldCapacity, int newCapacity) {
+        long bytes = (long) newCapacity * CollectionMetrics.REFERENCE_BYTES;
+        if (CollectionMetrics.ENABLED) {
+            metrics.resized(bytes);
+        }
+        CollectionEvents.resized(this, oldCapacity, newCapacity, bytes);
+    }
 
+    /**
+     * Replaces the backing array with one of the given capacity, which must
+     * be at least the size of the list
+     *
+     * @param newCapacity the new capacity
+     */
+    protected void reallocate(int newCapacity) {
+        E[] target = (E[]) new Object[newCapacity];
+        System.arraycopy(data, 0, target, 0, size);
+        resized(data.length, newCapacity);
         data = target;
-        return true;
+    }
+
+    /**
+     * Increases the capacity of the list, if necessary, so that it can hold at
+     * least minCapacity elements without growing again.
+     *
+     * @param minCapacity the desired minimum capacity
+     */
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > data.length) {
+            modCount++;
+            reallocate(minCapacity);
+        }
+    }
+
+    /**
+     * Trims the capacity of the list to its current size, releasing the
+     * unused part of the backing array.
+     */
+    public void trimToSize() {
+        if (size < data.length) {
+            modCount++;
+            reallocate(size);
+        }
+    }
+
+    /**
+     * Returns the number of elements the list can hold before it needs to grow
+     *
+     * @return the capacity of the backing array
+     */
+    public int capacity() {
+        return data.length;
+    }
+
+    /**
+     * Returns the policy used to grow the backing array
+     *
+     * @return the growth policy
+     */
+    public GrowthPolicy getGrowthPolicy() {
+        return growthPolicy;
+    }
+
+    /**
+     * Sets the policy used to grow the backing array
+     *
+     * @param policy the growth policy
+     * @throws NullPointerException if policy is null
+     */
+    public void setGrowthPolicy(GrowthPolicy policy) {
+        if (policy == null) {
+            throw new NullPointerException();
+        }
+        this.growthPolicy = policy;
     }
 
     @Override
@@ -203,11 +368,11 @@ public class SortedArrayList<E> extends AbstractSortedList<E> {
         E at = data[index];
 
         // Shift all back one
-        for (int i = index + 1; i < size; i++) {
-            data[index - 1] = data[index];
+        System.arraycopy(data, index + 1, data, index, size - index - 1);
+        if (CollectionMetrics.ENABLED) {
+            metrics.elementsShifted += size - index - 1;
         }
-
-        size--;
+        data[--size] = null;
         return at;
     }
 
@@ -216,30 +381,91 @@ public class SortedArrayList<E> extends AbstractSortedList<E> {
         // Increment count
         modCount++;
 
+        for (int i = 0; i < size; i++) {
+            data[i] = null;
+        }
         size = 0;
     }
 
     @Override
     public int positionOf(Object o) {
+        int index;
+        if (CollectionMetrics.ENABLED) {
+            metrics.searches++;
+            index = searchStrategy.positionOf(data, size, o, countingComparator, sortMode, finger);
+        } else {
+            index = searchStrategy.positionOf(data, size, o, comparator, sortMode, finger);
+        }
+        // Only the finger search reads the hint, so avoid the write otherwise
+        if (searchStrategy == SearchStrategy.FINGER) {
+            finger = index;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the position an element is inserted at. Elements ordered
+     * strictly after the last element are appended after a single comparison;
+     * any other element is placed by positionOf.
+     *
+     * @param e the element to insert
+     * @return the position to insert the element at
+     */
+    protected int insertionPoint(E e) {
         if (size == 0) {
             return 0;
         }
+        E last = data[size - 1];
+        if (last != null && e != null) {
+            Comparator c = CollectionMetrics.ENABLED ? countingComparator : comparator;
+            if (c.compare(last, e) * sortMode > 0) {
+                return size;
+            }
+        }
+        return positionOf(e);
+    }
 
-        int pa = 0, pb = size;
+    /**
+     * Returns a snapshot of the instrumentation counters of this list. If
+     * instrumentation is disabled, every counter is zero.
+     *
+     * @return a snapshot of the counters
+     */
+    public CollectionStats stats() {
+        return metrics == null ? CollectionStats.EMPTY : metrics.snapshot();
+    }
 
-        while (pa < pb) {
-            int mid = (pa + pb) / 2;
-            int comp = data[mid] == null ? -1 : comparator.compare(data[mid], o) * sortMode;
+    /**
+     * Returns the live instrumentation counters of this list, for instance to
+     * register them with JMX, or null if instrumentation is disabled.
+     *
+     * @return the counters or null
+     */
+    public CollectionMetrics getMetrics() {
+        return metrics;
+    }
 
-            if (comp > 0) {
-                pa = mid + 1;
-            } else if (comp < 0) {
-                pb = mid;
-            } else {
-                return mid;
-            }
+    /**
+     * Returns the strategy used by positionOf to search through the list
+     *
+     * @return the current search strategy
+     */
+    public SearchStrategy getSearchStrategy() {
+        return searchStrategy;
+    }
+
+    /**
+     * Sets the strategy used by positionOf to search through the list. By
+     * default lists use a plain binary search.
+     *
+     * @param strategy the search strategy to use
+     * @throws NullPointerException if strategy is null
+     */
+    public void setSearchStrategy(SearchStrategy strategy) {
+        if (strategy == null) {
+            throw new NullPointerException();
         }
-        return pa;
+        this.searchStrategy = strategy;
     }
 
     @Override
@@ -294,8 +520,10 @@ public class SortedArrayList<E> extends AbstractSortedList<E> {
         }
 
         SortedArrayList<E> newList = new SortedArrayList(this.sortMode > 0);
+        newList.searchStrategy = searchStrategy;
+        newList.growthPolicy = growthPolicy;
         newList.size = toIndex - fromIndex;
-        newList.data = (E[]) new Comparable[newList.size];
+        newList.data = (E[]) new Object[newList.size];
         for (int i = 0; i < newList.size; i++) {
             newList.data[newList.size - i - 1] = this.data[fromIndex + i];
         }
@@ -311,12 +539,47 @@ public class SortedArrayList<E> extends AbstractSortedList<E> {
         }
 
         SortedArrayList<E> newList = new SortedArrayList(this.sortMode <= 0);
+        newList.searchStrategy = searchStrategy;
+        newList.growthPolicy = growthPolicy;
         newList.size = toIndex - fromIndex;
-        newList.data = (E[]) new Comparable[newList.size];
+        newList.data = (E[]) new Object[newList.size];
         System.arraycopy(this.data, fromIndex, newList.data, 0, newList.size);
         return newList;
     }
 
+    /**
+     * Returns a comparator which orders elements the way they are stored in
+     * the backing array, following the sort order and placing nulls last
+     *
+     * @return the order of the backing array
+     */
+    Comparator<E> storedOrder() {
+        final Comparator base = this.comparator;
+        final int mode = this.sortMode;
+        return new Comparator<E>() {
+
+            @Override
+            public int compare(E o1, E o2) {
+                if (o1 == null) {
+                    return o2 == null ? 0 : 1;
+                } else if (o2 == null) {
+                    return -1;
+                }
+                return -mode * base.compare(o1, o2);
+            }
+        };
+    }
+
+    /**
+     * Returns an immutable snapshot of the list optimized for lookups. Later
+     * changes to this list are not reflected in the snapshot.
+     *
+     * @return a frozen copy of the list
+     */
+    public FrozenSortedList<E> freeze() {
+        return new FrozenSortedList(data, size, comparator, sortMode);
+    }
+
     @Override
     public boolean remove(Object o) {
         int indexOf = indexOf(o);
@@ -330,7 +593,7 @@ public class SortedArrayList<E> extends AbstractSortedList<E> {
     @Override
     public boolean contains(Object o) {
         int index = positionOf(o);
-        return data[index].equals(o);
+        return index < size && (o == null ? data[index] == null : o.equals(data[index]));
     }
 
     /**
@@ -356,4 +619,209 @@ public class SortedArrayList<E> extends AbstractSortedList<E> {
         s += (isAscending() ? "}" : "]");
         return s;
     }
+
+    /**
+     * A ListIterator which walks the backing array directly. Like the
+     * iterators of java.util.ArrayList it is fail-fast: it throws a
+     * ConcurrentModificationException once the list is changed other than
+     * through the iterator.
+     */
+    protected class Itr implements ListIterator<E> {
+
+        protected int cursor;
+        protected int lastReturned = -1;
+        protected int expectedModCount = modCount;
+
+        protected Itr(int index) {
+            this.cursor = index;
+        }
+
+        protected final void concurrentModificationCheck() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor < size;
+        }
+
+        @Override
+        public E next() {
+            concurrentModificationCheck();
+            int i = cursor;
+            if (i >= size) {
+                throw new NoSuchElementException();
+            }
+            cursor = i + 1;
+            return data[lastReturned = i];
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return cursor > 0;
+        }
+
+        @Override
+        public E previous() {
+            concurrentModificationCheck();
+            int i = cursor - 1;
+            if (i < 0) {
+                throw new NoSuchElementException();
+            }
+            cursor = i;
+            return data[lastReturned = i];
+        }
+
+        @Override
+        public int nextIndex() {
+            return cursor;
+        }
+
+        @Override
+        public int previousIndex() {
+            return cursor - 1;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned < 0) {
+                throw new IllegalStateException();
+            }
+            concurrentModificationCheck();
+            SortedArrayList.this.remove(lastReturned);
+            cursor = lastReturned;
+            lastReturned = -1;
+            expectedModCount = modCount;
+        }
+
+        /**
+         * Elements of a sorted list have a fixed position, so they can not be
+         * replaced through an iterator.
+         *
+         * @throws UnsupportedOperationException always
+         */
+        @Override
+        public void set(E e) {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Adds an element to the list at its sorted position. If it lands
+         * before the cursor, the cursor is moved so the next call to next
+         * returns the same element it would have returned before.
+         *
+         * @param e the element to add
+         */
+        @Override
+        public void add(E e) {
+            concurrentModificationCheck();
+            int index = positionOf(e);
+            int before = size();
+            SortedArrayList.this.add(e);
+            if (size() > before && index < cursor) {
+                cursor++;
+            }
+            lastReturned = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    /**
+     * A late-binding, fail-fast Spliterator over the backing array. The range
+     * and expected modCount are bound on first use; a fence of -1 means the
+     * spliterator is not yet bound and covers the list up to its size.
+     */
+    protected class ArraySpliterator implements Spliterator<E> {
+
+        protected int index;
+        protected int fence;
+        protected int expectedModCount;
+        protected final int characteristics;
+        protected final Comparator<? super E> order;
+
+        /**
+         * @param origin the first index covered
+         * @param fence one past the last index covered, or -1 to bind to the
+         * size of the list on first use
+         * @param expectedModCount the modCount expected once bound
+         * @param characteristics characteristics reported besides SIZED and
+         * SUBSIZED
+         * @param order the comparator returned by getComparator if SORTED
+         */
+        protected ArraySpliterator(int origin, int fence, int expectedModCount, int characteristics, Comparator<? super E> order) {
+            this.index = origin;
+            this.fence = fence;
+            this.expectedModCount = expectedModCount;
+            this.characteristics = characteristics | Spliterator.SIZED | Spliterator.SUBSIZED;
+            this.order = order;
+        }
+
+        private int getFence() {
+            if (fence < 0) {
+                expectedModCount = modCount;
+                fence = size;
+            }
+            return fence;
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            int hi = getFence(), lo = index, mid = (lo + hi) >>> 1;
+            return lo >= mid ? null : new ArraySpliterator(lo, index = mid, expectedModCount, characteristics, order);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            int hi = getFence(), i = index;
+            if (i < hi) {
+                index = i + 1;
+                action.accept(data[i]);
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            final E[] elements = data;
+            final int hi = getFence();
+            int i = index;
+            index = hi;
+            for (; i < hi && i < elements.length; i++) {
+                action.accept(elements[i]);
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return getFence() - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return characteristics;
+        }
+
+        @Override
+        public Comparator<? super E> getComparator() {
+            if (hasCharacteristics(Spliterator.SORTED)) {
+                return order;
+            }
+            throw new IllegalStateException();
+        }
+    }
 }
@@ -0,0 +1,1043 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Alice Quiros <email@aliceq.me>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.aliceq.collections;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+/**
+ * A NavigableMap which stores its keys and values in two parallel sorted
+ * arrays. A lookup is a binary search over the key array, and an entry costs
+ * two array slots instead of the node, with its key, value, parent, children
+ * and color, which TreeMap allocates for every entry. Keys appended in order
+ * are placed after a single comparison; any other insertion or removal shifts
+ * the entries after it, so the map suits read-mostly workloads.
+ *
+ * Keys are ordered by the comparator, or by their natural ordering if the
+ * comparator is null, and may not be null. Submaps, descending maps and key
+ * sets are views backed by the same arrays. Entries returned by the
+ * navigation methods are snapshots, like those of TreeMap.
+ *
+ * This class is not synchronized.
+ *
+ * @author Alice Quiros <email@aliceq.me>
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+public class SortedArrayMap<K, V> extends AbstractMap<K, V> implements NavigableMap<K, V> {
+
+    protected final Comparator<? super K> comparator;
+    protected K[] keys;
+    protected V[] values;
+    protected int size = 0;
+    protected int modCount = 0;
+    protected GrowthPolicy growthPolicy = GrowthPolicy.DEFAULT;
+    private final Range all = new Range(true, null, false, true, null, false, false);
+
+    /**
+     * Basic constructor creating an empty SortedArrayMap ordered by the
+     * natural ordering of its keys
+     */
+    public SortedArrayMap() {
+        this(0, null);
+    }
+
+    /**
+     * Constructor creating an empty SortedArrayMap ordered by a comparator
+     *
+     * @param comparator the comparator used to order the keys, or null for
+     * their natural ordering
+     */
+    public SortedArrayMap(Comparator<? super K> comparator) {
+        this(0, comparator);
+    }
+
+    /**
+     * Constructor creating an empty SortedArrayMap of specified initial
+     * capacity
+     *
+     * @param initCapacity the initial capacity of the map
+     * @param comparator the comparator used to order the keys, or null for
+     * their natural ordering
+     */
+    public SortedArrayMap(int initCapacity, Comparator<? super K> comparator) {
+        this.comparator = comparator;
+        this.keys = (K[]) new Object[initCapacity];
+        this.values = (V[]) new Object[initCapacity];
+    }
+
+    /**
+     * Constructor creating a SortedArrayMap with the entries of another map.
+     * If the map is a SortedMap its comparator is used and its keys are
+     * appended in order.
+     *
+     * @param m the map whose entries are copied
+     */
+    public SortedArrayMap(Map<? extends K, ? extends V> m) {
+        this(m.size(), m instanceof SortedMap ? ((SortedMap<K, ? extends V>) m).comparator() : null);
+        putAll(m);
+    }
+
+    private int compare(Object k1, Object k2) {
+        return comparator == null ? ((Comparable) k1).compareTo(k2) : comparator.compare((K) k1, (K) k2);
+    }
+
+    /**
+     * Returns the index of a key, or (-(insertion point) - 1) if it is absent
+     */
+    private int search(Object key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        return Arrays.binarySearch(keys, 0, size, (K) key, comparator);
+    }
+
+    /**
+     * Returns the index of the greatest key less than key, or -1
+     */
+    private int lowerIndex(Object key) {
+        int index = search(key);
+        return index >= 0 ? index - 1 : -index - 2;
+    }
+
+    /**
+     * Returns the index of the greatest key less than or equal to key, or -1
+     */
+    private int floorIndex(Object key) {
+        int index = search(key);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * Returns the index of the least key greater than or equal to key, or size
+     */
+    private int ceilingIndex(Object key) {
+        int index = search(key);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * Returns the index of the least key greater than key, or size
+     */
+    private int higherIndex(Object key) {
+        int index = search(key);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    /**
+     * Inserts an entry at the specified position, shifting the entries after
+     * it forward and growing the backing arrays according to the growth policy
+     * if they are full
+     */
+    private void insert(int index, K key, V value) {
+        // Increment count
+        modCount++;
+
+        if (size == keys.length) {
+            int newCapacity = Math.max(growthPolicy.grow(keys.length, size + 1), size + 1);
+            K[] newKeys = (K[]) new Object[newCapacity];
+            V[] newValues = (V[]) new Object[newCapacity];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(keys, index, newKeys, index + 1, size - index);
+            System.arraycopy(values, 0, newValues, 0, index);
+            System.arraycopy(values, index, newValues, index + 1, size - index);
+            CollectionEvents.resized(this, keys.length, newCapacity, 2L * newCapacity * CollectionMetrics.REFERENCE_BYTES);
+            keys = newKeys;
+            values = newValues;
+        } else {
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            System.arraycopy(values, index, values, index + 1, size - index);
+        }
+        keys[index] = key;
+        values[index] = value;
+        size++;
+    }
+
+    /**
+     * Removes the entries between fromIndex, inclusive, and toIndex, exclusive
+     */
+    private void removeRange(int fromIndex, int toIndex) {
+        if (fromIndex >= toIndex) {
+            return;
+        }
+        // Increment count
+        modCount++;
+
+        System.arraycopy(keys, toIndex, keys, fromIndex, size - toIndex);
+        System.arraycopy(values, toIndex, values, fromIndex, size - toIndex);
+        int newSize = size - (toIndex - fromIndex);
+        Arrays.fill(keys, newSize, size, null);
+        Arrays.fill(values, newSize, size, null);
+        size = newSize;
+    }
+
+    private V removeAt(int index) {
+        V value = values[index];
+        removeRange(index, index + 1);
+        return value;
+    }
+
+    private Map.Entry<K, V> entryAt(int index) {
+        return index < 0 ? null : new AbstractMap.SimpleImmutableEntry(keys[index], values[index]);
+    }
+
+    private K keyAt(int index) {
+        return index < 0 ? null : keys[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public V get(Object key) {
+        int index = search(key);
+        return index >= 0 ? values[index] : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return search(key) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        for (int i = 0; i < size; i++) {
+            if (Objects.equals(value, values[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        int index;
+        if (key == null) {
+            throw new NullPointerException();
+        } else if (size > 0 && compare(keys[size - 1], key) < 0) {
+            index = -size - 1;
+        } else {
+            index = search(key);
+        }
+
+        if (index >= 0) {
+            V previous = values[index];
+            values[index] = value;
+            return previous;
+        }
+        insert(-index - 1, key, value);
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        int index = search(key);
+        return index >= 0 ? removeAt(index) : null;
+    }
+
+    @Override
+    public void clear() {
+        removeRange(0, size);
+    }
+
+    /**
+     * Returns the number of entries the map can hold before it needs to grow
+     *
+     * @return the capacity of the backing arrays
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Trims the capacity of the map to its current size, releasing the unused
+     * part of the backing arrays
+     */
+    public void trimToSize() {
+        if (size < keys.length) {
+            modCount++;
+            CollectionEvents.resized(this, keys.length, size, 2L * size * CollectionMetrics.REFERENCE_BYTES);
+            keys = Arrays.copyOf(keys, size);
+            values = Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * Returns the policy used to grow the backing arrays
+     *
+     * @return the growth policy
+     */
+    public GrowthPolicy getGrowthPolicy() {
+        return growthPolicy;
+    }
+
+    /**
+     * Sets the policy used to grow the backing arrays
+     *
+     * @param policy the growth policy
+     * @throws NullPointerException if policy is null
+     */
+    public void setGrowthPolicy(GrowthPolicy policy) {
+        if (policy == null) {
+            throw new NullPointerException();
+        }
+        this.growthPolicy = policy;
+    }
+
+    @Override
+    public Comparator<? super K> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return all.entrySet();
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return navigableKeySet();
+    }
+
+    @Override
+    public Map.Entry<K, V> lowerEntry(K key) {
+        return entryAt(lowerIndex(key));
+    }
+
+    @Override
+    public K lowerKey(K key) {
+        return keyAt(lowerIndex(key));
+    }
+
+    @Override
+    public Map.Entry<K, V> floorEntry(K key) {
+        return entryAt(floorIndex(key));
+    }
+
+    @Override
+    public K floorKey(K key) {
+        return keyAt(floorIndex(key));
+    }
+
+    @Override
+    public Map.Entry<K, V> ceilingEntry(K key) {
+        int index = ceilingIndex(key);
+        return index < size ? entryAt(index) : null;
+    }
+
+    @Override
+    public K ceilingKey(K key) {
+        int index = ceilingIndex(key);
+        return index < size ? keys[index] : null;
+    }
+
+    @Override
+    public Map.Entry<K, V> higherEntry(K key) {
+        int index = higherIndex(key);
+        return index < size ? entryAt(index) : null;
+    }
+
+    @Override
+    public K higherKey(K key) {
+        int index = higherIndex(key);
+        return index < size ? keys[index] : null;
+    }
+
+    @Override
+    public Map.Entry<K, V> firstEntry() {
+        return entryAt(size == 0 ? -1 : 0);
+    }
+
+    @Override
+    public Map.Entry<K, V> lastEntry() {
+        return entryAt(size - 1);
+    }
+
+    @Override
+    public K firstKey() {
+        return all.firstKey();
+    }
+
+    @Override
+    public K lastKey() {
+        return all.lastKey();
+    }
+
+    @Override
+    public Map.Entry<K, V> pollFirstEntry() {
+        return all.pollFirstEntry();
+    }
+
+    @Override
+    public Map.Entry<K, V> pollLastEntry() {
+        return all.pollLastEntry();
+    }
+
+    @Override
+    public NavigableMap<K, V> descendingMap() {
+        return all.descendingMap();
+    }
+
+    @Override
+    public NavigableSet<K> navigableKeySet() {
+        return new KeySet(this);
+    }
+
+    @Override
+    public NavigableSet<K> descendingKeySet() {
+        return new KeySet(descendingMap());
+    }
+
+    @Override
+    public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+        return all.subMap(fromKey, fromInclusive, toKey, toInclusive);
+    }
+
+    @Override
+    public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+        return all.headMap(toKey, inclusive);
+    }
+
+    @Override
+    public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+        return all.tailMap(fromKey, inclusive);
+    }
+
+    @Override
+    public SortedMap<K, V> subMap(K fromKey, K toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> headMap(K toKey) {
+        return headMap(toKey, false);
+    }
+
+    @Override
+    public SortedMap<K, V> tailMap(K fromKey) {
+        return tailMap(fromKey, true);
+    }
+
+    /**
+     * A view of the entries between two bounds. The bounds are kept in
+     * ascending key order; a descending view walks the same range backwards.
+     * The range is located with two binary searches whenever it is needed, so
+     * the view stays consistent with changes to the map.
+     */
+    private class Range extends AbstractMap<K, V> implements NavigableMap<K, V> {
+
+        private final boolean fromStart, loInclusive, toEnd, hiInclusive, descending;
+        private final K lo, hi;
+
+        Range(boolean fromStart, K lo, boolean loInclusive, boolean toEnd, K hi, boolean hiInclusive, boolean descending) {
+            this.fromStart = fromStart;
+            this.lo = lo;
+            this.loInclusive = loInclusive;
+            this.toEnd = toEnd;
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+            this.descending = descending;
+        }
+
+        private int low() {
+            return fromStart ? 0 : loInclusive ? ceilingIndex(lo) : higherIndex(lo);
+        }
+
+        private int high() {
+            return toEnd ? size : hiInclusive ? higherIndex(hi) : ceilingIndex(hi);
+        }
+
+        private boolean inRange(Object key) {
+            if (key == null) {
+                throw new NullPointerException();
+            }
+            if (!fromStart) {
+                int c = compare(key, lo);
+                if (c < 0 || (c == 0 && !loInclusive)) {
+                    return false;
+                }
+            }
+            if (!toEnd) {
+                int c = compare(key, hi);
+                if (c > 0 || (c == 0 && !hiInclusive)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns true if key may bound a view of this view: it must lie
+         * within the range, and may only equal an exclusive bound if it is
+         * exclusive itself
+         */
+        private boolean inRange(Object key, boolean inclusive) {
+            if (inclusive) {
+                return inRange(key);
+            }
+            return (fromStart || compare(key, lo) >= 0) && (toEnd || compare(key, hi) <= 0);
+        }
+
+        /**
+         * Checks a new bound of a view of this view. Like TreeMap, only the
+         * new bound is checked; bounds kept from this view are already valid.
+         */
+        private void checkBound(K key, boolean inclusive) {
+            if (key == null) {
+                throw new NullPointerException();
+            } else if (!inRange(key, inclusive)) {
+                throw new IllegalArgumentException("Key out of range");
+            }
+        }
+
+        private Range subRange(boolean fs, K l, boolean li, boolean te, K h, boolean hin) {
+            if (!fs && !te && compare(l, h) > 0) {
+                throw new IllegalArgumentException("fromKey > toKey");
+            }
+            return new Range(fs, l, li, te, h, hin, descending);
+        }
+
+        @Override
+        public int size() {
+            return Math.max(0, high() - low());
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return high() <= low();
+        }
+
+        @Override
+        public V get(Object key) {
+            return inRange(key) ? SortedArrayMap.this.get(key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return inRange(key) && SortedArrayMap.this.containsKey(key);
+        }
+
+        @Override
+        public V put(K key, V value) {
+            if (!inRange(key)) {
+                throw new IllegalArgumentException("Key out of range");
+            }
+            return SortedArrayMap.this.put(key, value);
+        }
+
+        @Override
+        public V remove(Object key) {
+            return inRange(key) ? SortedArrayMap.this.remove(key) : null;
+        }
+
+        @Override
+        public void clear() {
+            removeRange(low(), high());
+        }
+
+        @Override
+        public Comparator<? super K> comparator() {
+            return descending ? Collections.reverseOrder(comparator) : comparator;
+        }
+
+        private int ascLower(K key) {
+            int index = Math.min(lowerIndex(key), high() - 1);
+            return index >= low() ? index : -1;
+        }
+
+        private int ascFloor(K key) {
+            int index = Math.min(floorIndex(key), high() - 1);
+            return index >= low() ? index : -1;
+        }
+
+        private int ascCeiling(K key) {
+            int index = Math.max(ceilingIndex(key), low());
+            return index < high() ? index : -1;
+        }
+
+        private int ascHigher(K key) {
+            int index = Math.max(higherIndex(key), low());
+            return index < high() ? index : -1;
+        }
+
+        private int firstIndex() {
+            int l = low(), h = high();
+            return l >= h ? -1 : descending ? h - 1 : l;
+        }
+
+        private int lastIndex() {
+            int l = low(), h = high();
+            return l >= h ? -1 : descending ? l : h - 1;
+        }
+
+        @Override
+        public Map.Entry<K, V> lowerEntry(K key) {
+            return entryAt(descending ? ascHigher(key) : ascLower(key));
+        }
+
+        @Override
+        public K lowerKey(K key) {
+            return keyAt(descending ? ascHigher(key) : ascLower(key));
+        }
+
+        @Override
+        public Map.Entry<K, V> floorEntry(K key) {
+            return entryAt(descending ? ascCeiling(key) : ascFloor(key));
+        }
+
+        @Override
+        public K floorKey(K key) {
+            return keyAt(descending ? ascCeiling(key) : ascFloor(key));
+        }
+
+        @Override
+        public Map.Entry<K, V> ceilingEntry(K key) {
+            return entryAt(descending ? ascFloor(key) : ascCeiling(key));
+        }
+
+        @Override
+        public K ceilingKey(K key) {
+            return keyAt(descending ? ascFloor(key) : ascCeiling(key));
+        }
+
+        @Override
+        public Map.Entry<K, V> higherEntry(K key) {
+            return entryAt(descending ? ascLower(key) : ascHigher(key));
+        }
+
+        @Override
+        public K higherKey(K key) {
+            return keyAt(descending ? ascLower(key) : ascHigher(key));
+        }
+
+        @Override
+        public Map.Entry<K, V> firstEntry() {
+            return entryAt(firstIndex());
+        }
+
+        @Override
+        public Map.Entry<K, V> lastEntry() {
+            return entryAt(lastIndex());
+        }
+
+        @Override
+        public K firstKey() {
+            int index = firstIndex();
+            if (index < 0) {
+                throw new NoSuchElementException();
+            }
+            return keys[index];
+        }
+
+        @Override
+        public K lastKey() {
+            int index = lastIndex();
+            if (index < 0) {
+                throw new NoSuchElementException();
+            }
+            return keys[index];
+        }
+
+        @Override
+        public Map.Entry<K, V> pollFirstEntry() {
+            int index = firstIndex();
+            Map.Entry<K, V> entry = entryAt(index);
+            if (index >= 0) {
+                removeAt(index);
+            }
+            return entry;
+        }
+
+        @Override
+        public Map.Entry<K, V> pollLastEntry() {
+            int index = lastIndex();
+            Map.Entry<K, V> entry = entryAt(index);
+            if (index >= 0) {
+                removeAt(index);
+            }
+            return entry;
+        }
+
+        @Override
+        public NavigableMap<K, V> descendingMap() {
+            return new Range(fromStart, lo, loInclusive, toEnd, hi, hiInclusive, !descending);
+        }
+
+        @Override
+        public NavigableSet<K> navigableKeySet() {
+            return new KeySet(this);
+        }
+
+        @Override
+        public Set<K> keySet() {
+            return navigableKeySet();
+        }
+
+        @Override
+        public NavigableSet<K> descendingKeySet() {
+            return new KeySet(descendingMap());
+        }
+
+        @Override
+        public NavigableMap<K, V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive) {
+            checkBound(fromKey, fromInclusive);
+            checkBound(toKey, toInclusive);
+            if (descending) {
+                return subRange(false, toKey, toInclusive, false, fromKey, fromInclusive);
+            }
+            return subRange(false, fromKey, fromInclusive, false, toKey, toInclusive);
+        }
+
+        @Override
+        public NavigableMap<K, V> headMap(K toKey, boolean inclusive) {
+            checkBound(toKey, inclusive);
+            if (descending) {
+                return subRange(false, toKey, inclusive, toEnd, hi, hiInclusive);
+            }
+            return subRange(fromStart, lo, loInclusive, false, toKey, inclusive);
+        }
+
+        @Override
+        public NavigableMap<K, V> tailMap(K fromKey, boolean inclusive) {
+            checkBound(fromKey, inclusive);
+            if (descending) {
+                return subRange(fromStart, lo, loInclusive, false, fromKey, inclusive);
+            }
+            return subRange(false, fromKey, inclusive, toEnd, hi, hiInclusive);
+        }
+
+        @Override
+        public SortedMap<K, V> subMap(K fromKey, K toKey) {
+            return subMap(fromKey, true, toKey, false);
+        }
+
+        @Override
+        public SortedMap<K, V> headMap(K toKey) {
+            return headMap(toKey, false);
+        }
+
+        @Override
+        public SortedMap<K, V> tailMap(K fromKey) {
+            return tailMap(fromKey, true);
+        }
+
+        @Override
+        public Set<Map.Entry<K, V>> entrySet() {
+            return new AbstractSet<Map.Entry<K, V>>() {
+
+                @Override
+                public int size() {
+                    return Range.this.size();
+                }
+
+                @Override
+                public boolean isEmpty() {
+                    return Range.this.isEmpty();
+                }
+
+                @Override
+                public Iterator<Map.Entry<K, V>> iterator() {
+                    return new EntryIterator(descending);
+                }
+
+                @Override
+                public boolean contains(Object o) {
+                    if (!(o instanceof Map.Entry)) {
+                        return false;
+                    }
+                    Map.Entry<?, ?> e = (Map.Entry) o;
+                    if (e.getKey() == null || !inRange(e.getKey())) {
+                        return false;
+                    }
+                    int index = search(e.getKey());
+                    return index >= 0 && Objects.equals(values[index], e.getValue());
+                }
+
+                @Override
+                public boolean remove(Object o) {
+                    if (!contains(o)) {
+                        return false;
+                    }
+                    removeAt(search(((Map.Entry) o).getKey()));
+                    return true;
+                }
+
+                @Override
+                public void clear() {
+                    Range.this.clear();
+                }
+            };
+        }
+
+        /**
+         * A fail-fast iterator over the range of the view in either direction
+         */
+        private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+
+            private final boolean backwards;
+            private int cursor, end;
+            private int lastReturned = -1;
+            private int expectedModCount = modCount;
+
+            EntryIterator(boolean backwards) {
+                this.backwards = backwards;
+                int l = low(), h = high();
+                this.cursor = backwards ? h - 1 : l;
+                this.end = backwards ? l : h;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return backwards ? cursor >= end : cursor < end;
+            }
+
+            @Override
+            public Map.Entry<K, V> next() {
+                if (expectedModCount != modCount) {
+                    throw new ConcurrentModificationException();
+                } else if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                lastReturned = cursor;
+                cursor += backwards ? -1 : 1;
+                return new ArrayEntry(lastReturned);
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned < 0) {
+                    throw new IllegalStateException();
+                } else if (expectedModCount != modCount) {
+                    throw new ConcurrentModificationException();
+                }
+                removeAt(lastReturned);
+                if (!backwards) {
+                    cursor--;
+                    end--;
+                }
+                lastReturned = -1;
+                expectedModCount = modCount;
+            }
+        }
+    }
+
+    /**
+     * An entry returned by iteration. The value is written through to the map
+     * by setValue, which looks the key up again if the entry has moved.
+     */
+    private class ArrayEntry extends AbstractMap.SimpleEntry<K, V> {
+
+        private static final long serialVersionUID = 1L;
+        private int index;
+
+        ArrayEntry(int index) {
+            super(keys[index], values[index]);
+            this.index = index;
+        }
+
+        @Override
+        public V setValue(V value) {
+            if (index >= size || keys[index] != getKey()) {
+                index = search(getKey());
+                if (index < 0) {
+                    throw new IllegalStateException("Entry was removed");
+                }
+            }
+            values[index] = value;
+            return super.setValue(value);
+        }
+    }
+
+    /**
+     * A NavigableSet of the keys of a NavigableMap, backed by the map
+     *
+     * @param <K> the type of keys
+     */
+    private static class KeySet<K> extends AbstractSet<K> implements NavigableSet<K> {
+
+        private final NavigableMap<K, ?> m;
+
+        KeySet(NavigableMap<K, ?> m) {
+            this.m = m;
+        }
+
+        @Override
+        public int size() {
+            return m.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return m.isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return m.containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!m.containsKey(o)) {
+                return false;
+            }
+            m.remove(o);
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            m.clear();
+        }
+
+        @Override
+        public Iterator<K> iterator() {
+            final Iterator<? extends Map.Entry<K, ?>> entries = m.entrySet().iterator();
+            return new Iterator<K>() {
+
+                @Override
+                public boolean hasNext() {
+                    return entries.hasNext();
+                }
+
+                @Override
+                public K next() {
+                    return entries.next().getKey();
+                }
+
+                @Override
+                public void remove() {
+                    entries.remove();
+                }
+            };
+        }
+
+        @Override
+        public Iterator<K> descendingIterator() {
+            return descendingSet().iterator();
+        }
+
+        @Override
+        public Comparator<? super K> comparator() {
+            return m.comparator();
+        }
+
+        @Override
+        public K first() {
+            return m.firstKey();
+        }
+
+        @Override
+        public K last() {
+            return m.lastKey();
+        }
+
+        @Override
+        public K lower(K e) {
+            return m.lowerKey(e);
+        }
+
+        @Override
+        public K floor(K e) {
+            return m.floorKey(e);
+        }
+
+        @Override
+        public K ceiling(K e) {
+            return m.ceilingKey(e);
+        }
+
+        @Override
+        public K higher(K e) {
+            return m.higherKey(e);
+        }
+
+        @Override
+        public K pollFirst() {
+            Map.Entry<K, ?> e = m.pollFirstEntry();
+            return e == null ? null : e.getKey();
+        }
+
+        @Override
+        public K pollLast() {
+            Map.Entry<K, ?> e = m.pollLastEntry();
+            return e == null ? null : e.getKey();
+        }
+
+        @Override
+        public NavigableSet<K> descendingSet() {
+            return new KeySet(m.descendingMap());
+        }
+
+        @Override
+        public NavigableSet<K> subSet(K fromElement, boolean fromInclusive, K toElement, boolean toInclusive) {
+            return new KeySet(m.subMap(fromElement, fromInclusive, toElement, toInclusive));
+        }
+
+        @Override
+        public NavigableSet<K> headSet(K toElement, boolean inclusive) {
+            return new KeySet(m.headMap(toElement, inclusive));
+        }
+
+        @Override
+        public NavigableSet<K> tailSet(K fromElement, boolean inclusive) {
+            return new KeySet(m.tailMap(fromElement, inclusive));
+        }
+
+        @Override
+        public SortedSet<K> subSet(K fromElement, K toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public SortedSet<K> headSet(K toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public SortedSet<K> tailSet(K fromElement) {
+            return tailSet(fromElement, true);
+        }
+    }
+}
@@ -23,16 +23,72 @@
  */
 package me.aliceq.collections;
 
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.Spliterator;
 
 /**
  * An implementation of SortedArrayList which prevents duplicate objects from
- * being added
+ * being added. Two objects are duplicates if they compare equal and are equal
+ * according to equals.
+ *
+ * The set is navigable in the order it is stored: floor, ceiling, lower and
+ * higher are answered with a single binary search, and headSet, tailSet,
+ * subSet and descendingSet return views backed by the same array, like those
+ * of TreeSet. The order is that of the comparator returned by comparator(),
+ * which is reversed for a descending set. Navigation methods do not accept
+ * null.
  *
  * @author Alice Quiros <email@aliceq.me>
  * @param <E> the type of elements in this list
  */
-public class SortedArraySet<E> extends SortedArrayList<E> implements Set<E> {
+public class SortedArraySet<E> extends SortedArrayList<E> implements NavigableSet<E> {
+
+    /**
+     * Basic constructor creating an empty SortedArraySet in ascending order
+     */
+    public SortedArraySet() {
+        super();
+    }
+
+    /**
+     * Constructor creating an empty SortedArraySet of specified order
+     *
+     * @param ascending true if the set is ascending, false if descending
+     */
+    public SortedArraySet(boolean ascending) {
+        super(ascending);
+    }
+
+    /**
+     * Constructor creating an empty SortedArraySet of specified order and
+     * initial capacity
+     *
+     * @param initCapacity the initial capacity of the set
+     * @param c the comparator used to compare elements in the set
+     * @param ascending true if the set is ascending, false if descending
+     */
+    public SortedArraySet(int initCapacity, Comparator<E> c, boolean ascending) {
+        super(initCapacity, c, ascending);
+    }
+
+    /**
+     * Constructor creating a SortedArraySet initialized with a set of values
+     *
+     * @param c collection of values to add on initialization. Duplicates are
+     * dropped.
+     */
+    public SortedArraySet(Collection<? extends E> c) {
+        super(c);
+    }
 
     /**
      * Adds an element to the list at its sorted position. If the object already
@@ -44,36 +100,587 @@ public class SortedArraySet<E> extends SortedArrayList<E> implements Set<E> {
      */
     @Override
     public boolean add(E e) {
+        Object event = CollectionEvents.beginAdd();
+
+        // Get the index to insert
+        int index = insertionPoint(e);
+
+        // Check existance
+        boolean added;
+        if (e == null) {
+            added = !(index < size && data[index] == e);
+        } else if (index == size) {
+            added = true;
+        } else {
+            index = bound(index, e, false);
+            added = indexOfEqual(e, index) < 0;
+        }
+        if (added) {
+            insert(index, e);
+        }
+
+        CollectionEvents.endAdd(event, this, size);
+        return added;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (o == null) {
+            return size > 0 && data[size - 1] == null;
+        }
+        return indexOfEqual(o, bound(o, false)) >= 0;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (o == null) {
+            return super.remove(o);
+        }
+        int index = indexOfEqual(o, bound(o, false));
+        if (index < 0) {
+            return false;
+        }
+        remove(index);
+        return true;
+    }
+
+    /**
+     * Returns the number of elements ordered before o, or if inclusive is
+     * true, the number of elements ordered before or equal to o. Nulls are
+     * ordered last. The search goes through positionOf, so it uses the search
+     * strategy of the list and is counted by its metrics.
+     */
+    private int bound(Object o, boolean inclusive) {
+        if (o == null) {
+            throw new NullPointerException();
+        }
+        return bound(positionOf(o), o, inclusive);
+    }
+
+    /**
+     * Returns the bound of o given a position found by the search strategy,
+     * which may be any of the elements comparing equal to o
+     */
+    private int bound(int index, Object o, boolean inclusive) {
+        Comparator c = CollectionMetrics.ENABLED ? countingComparator : comparator;
+        if (inclusive) {
+            while (index < size && data[index] != null && c.compare(data[index], o) == 0) {
+                index++;
+            }
+        } else {
+            while (index > 0 && data[index - 1] != null && c.compare(data[index - 1], o) == 0) {
+                index--;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns the index of an element equal to o among the elements comparing
+     * equal to it, starting from index, or -1
+     */
+    private int indexOfEqual(Object o, int index) {
+        Comparator c = CollectionMetrics.ENABLED ? countingComparator : comparator;
+        for (int i = index; i < size && data[i] != null && c.compare(data[i], o) == 0; i++) {
+            if (o.equals(data[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Removes the elements between fromIndex, inclusive, and toIndex, exclusive
+     */
+    private void removeRange(int fromIndex, int toIndex) {
+        if (fromIndex >= toIndex) {
+            return;
+        }
         // Increment count
         modCount++;
 
-        // Target array
-        E[] target = data;
+        System.arraycopy(data, toIndex, data, fromIndex, size - toIndex);
+        if (CollectionMetrics.ENABLED) {
+            metrics.elementsShifted += size - toIndex;
+        }
+        int newSize = size - (toIndex - fromIndex);
+        for (int i = newSize; i < size; i++) {
+            data[i] = null;
+        }
+        size = newSize;
+    }
 
-        // Get the index to insert
-        int index = positionOf(e);
+    private E elementAt(int index) {
+        return index < 0 ? null : data[index];
+    }
 
-        // Check existance
-        if (index < size && data[index] == e) {
+    @Override
+    public Comparator<? super E> comparator() {
+        return storedOrder();
+    }
+
+    /**
+     * Compares the specified object with this set for equality. As required by
+     * Set, returns true if the object is a set of the same size containing
+     * every element of this set.
+     *
+     * @param o object to compare with
+     * @return true if the object is a set equal to this one
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof Set)) {
             return false;
         }
+        Collection<?> c = (Collection<?>) o;
+        if (c.size() != size) {
+            return false;
+        }
+        try {
+            return containsAll(c);
+        } catch (ClassCastException | NullPointerException ex) {
+            return false;
+        }
+    }
 
-        // If current array isn't big enough, make a new one but only copy up to the index
-        if (++size >= data.length) {
-            // Increase array size
-            int newCapacity = (data.length * 3) / 2 + 1;  // Sun implementation
-            target = (E[]) new Comparable[newCapacity];
-            System.arraycopy(data, 0, target, 0, index);
+    /**
+     * Returns the sum of the hash codes of the elements, as required by Set
+     *
+     * @return the hash code of the set
+     */
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (int i = 0; i < size; i++) {
+            if (data[i] != null) {
+                hash += data[i].hashCode();
+            }
         }
+        return hash;
+    }
 
-        // Shift values forward
-        System.arraycopy(data, index, target, index + 1, size - index - 1);
+    /**
+     * Returns a late-binding spliterator over the backing array. Unlike the
+     * list's, it reports DISTINCT and SORTED, with comparator() as its
+     * comparator.
+     *
+     * @return a spliterator over the elements of the set
+     */
+    @Override
+    public Spliterator<E> spliterator() {
+        return new ArraySpliterator(0, -1, 0, Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED, storedOrder());
+    }
 
-        // Set index
-        target[index] = e;
+    @Override
+    public E first() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return data[0];
+    }
 
-        data = target;
-        return true;
+    @Override
+    public E last() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return data[size - 1];
+    }
+
+    @Override
+    public E lower(E e) {
+        return elementAt(bound(e, false) - 1);
+    }
+
+    @Override
+    public E floor(E e) {
+        return elementAt(bound(e, true) - 1);
+    }
+
+    @Override
+    public E ceiling(E e) {
+        int index = bound(e, false);
+        return index < size ? data[index] : null;
+    }
+
+    @Override
+    public E higher(E e) {
+        int index = bound(e, true);
+        return index < size ? data[index] : null;
+    }
+
+    @Override
+    public E pollFirst() {
+        return size == 0 ? null : remove(0);
+    }
+
+    @Override
+    public E pollLast() {
+        return size == 0 ? null : remove(size - 1);
+    }
+
+    @Override
+    public NavigableSet<E> descendingSet() {
+        return new SubSet(true, null, false, true, null, false, true);
     }
 
+    @Override
+    public Iterator<E> descendingIterator() {
+        return descendingSet().iterator();
+    }
+
+    @Override
+    public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+        return new SubSet(false, fromElement, fromInclusive, false, toElement, toInclusive, false).check();
+    }
+
+    @Override
+    public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+        return new SubSet(true, null, false, false, toElement, inclusive, false).check();
+    }
+
+    @Override
+    public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+        return new SubSet(false, fromElement, inclusive, true, null, false, false).check();
+    }
+
+    @Override
+    public SortedSet<E> subSet(E fromElement, E toElement) {
+        return subSet(fromElement, true, toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> headSet(E toElement) {
+        return headSet(toElement, false);
+    }
+
+    @Override
+    public SortedSet<E> tailSet(E fromElement) {
+        return tailSet(fromElement, true);
+    }
+
+    /**
+     * A view of the elements between two bounds. The bounds are kept in the
+     * stored order of the set; a descending view walks the same range
+     * backwards. The range is located with two binary searches whenever it is
+     * needed, so the view stays consistent with changes to the set.
+     */
+    private class SubSet extends AbstractSet<E> implements NavigableSet<E> {
+
+        private final boolean fromStart, loInclusive, toEnd, hiInclusive, descending;
+        private final E lo, hi;
+
+        SubSet(boolean fromStart, E lo, boolean loInclusive, boolean toEnd, E hi, boolean hiInclusive, boolean descending) {
+            this.fromStart = fromStart;
+            this.lo = lo;
+            this.loInclusive = loInclusive;
+            this.toEnd = toEnd;
+            this.hi = hi;
+            this.hiInclusive = hiInclusive;
+            this.descending = descending;
+        }
+
+        /**
+         * Checks that the bounds are not null and in order
+         */
+        SubSet check() {
+            if ((!fromStart && lo == null) || (!toEnd && hi == null)) {
+                throw new NullPointerException();
+            } else if (!fromStart && !toEnd && compare(lo, hi) > 0) {
+                throw new IllegalArgumentException("fromElement > toElement");
+            }
+            return this;
+        }
+
+        /**
+         * Compares two elements in stored order
+         */
+        private int compare(Object o1, Object o2) {
+            return -sortMode * comparator.compare(o1, o2);
+        }
+
+        private int low() {
+            return fromStart ? 0 : bound(lo, !loInclusive);
+        }
+
+        private int high() {
+            return toEnd ? size : bound(hi, hiInclusive);
+        }
+
+        private boolean tooLow(Object o) {
+            if (fromStart) {
+                return false;
+            }
+            int c = compare(o, lo);
+            return c < 0 || (c == 0 && !loInclusive);
+        }
+
+        private boolean tooHigh(Object o) {
+            if (toEnd) {
+                return false;
+            }
+            int c = compare(o, hi);
+            return c > 0 || (c == 0 && !hiInclusive);
+        }
+
+        private boolean inRange(Object o) {
+            return o != null && !tooLow(o) && !tooHigh(o);
+        }
+
+        /**
+         * Returns true if o may bound a view of this view: it must lie within
+         * the range, and may only equal an exclusive bound if it is exclusive
+         * itself
+         */
+        private boolean inRange(Object o, boolean inclusive) {
+            return inclusive ? inRange(o) : o != null
+                    && (fromStart || compare(o, lo) >= 0) && (toEnd || compare(o, hi) <= 0);
+        }
+
+        /**
+         * Checks a new bound of a view of this view. Like TreeSet, only the
+         * new bound is checked; bounds kept from this view are already valid.
+         */
+        private void checkBound(E o, boolean inclusive) {
+            if (o == null) {
+                throw new NullPointerException();
+            } else if (!inRange(o, inclusive)) {
+                throw new IllegalArgumentException("Bound out of range");
+            }
+        }
+
+        private SubSet subRange(boolean fs, E l, boolean li, boolean te, E h, boolean hin) {
+            return new SubSet(fs, l, li, te, h, hin, descending).check();
+        }
+
+        @Override
+        public int size() {
+            return Math.max(0, high() - low());
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return high() <= low();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return inRange(o) && SortedArraySet.this.contains(o);
+        }
+
+        @Override
+        public boolean add(E e) {
+            if (!inRange(e)) {
+                throw new IllegalArgumentException("Element out of range");
+            }
+            return SortedArraySet.this.add(e);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return inRange(o) && SortedArraySet.this.remove(o);
+        }
+
+        @Override
+        public void clear() {
+            removeRange(low(), high());
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return new SubItr(descending);
+        }
+
+        @Override
+        public Iterator<E> descendingIterator() {
+            return new SubItr(!descending);
+        }
+
+        @Override
+        public Comparator<? super E> comparator() {
+            return descending ? Collections.reverseOrder(storedOrder()) : storedOrder();
+        }
+
+        private int ascLower(E e) {
+            int index = Math.min(bound(e, false), high()) - 1;
+            return index >= low() ? index : -1;
+        }
+
+        private int ascFloor(E e) {
+            int index = Math.min(bound(e, true), high()) - 1;
+            return index >= low() ? index : -1;
+        }
+
+        private int ascCeiling(E e) {
+            int index = Math.max(bound(e, false), low());
+            return index < high() ? index : -1;
+        }
+
+        private int ascHigher(E e) {
+            int index = Math.max(bound(e, true), low());
+            return index < high() ? index : -1;
+        }
+
+        private int firstIndex() {
+            int l = low(), h = high();
+            return l >= h ? -1 : descending ? h - 1 : l;
+        }
+
+        private int lastIndex() {
+            int l = low(), h = high();
+            return l >= h ? -1 : descending ? l : h - 1;
+        }
+
+        @Override
+        public E lower(E e) {
+            return elementAt(descending ? ascHigher(e) : ascLower(e));
+        }
+
+        @Override
+        public E floor(E e) {
+            return elementAt(descending ? ascCeiling(e) : ascFloor(e));
+        }
+
+        @Override
+        public E ceiling(E e) {
+            return elementAt(descending ? ascFloor(e) : ascCeiling(e));
+        }
+
+        @Override
+        public E higher(E e) {
+            return elementAt(descending ? ascLower(e) : ascHigher(e));
+        }
+
+        @Override
+        public E first() {
+            int index = firstIndex();
+            if (index < 0) {
+                throw new NoSuchElementException();
+            }
+            return data[index];
+        }
+
+        @Override
+        public E last() {
+            int index = lastIndex();
+            if (index < 0) {
+                throw new NoSuchElementException();
+            }
+            return data[index];
+        }
+
+        @Override
+        public E pollFirst() {
+            int index = firstIndex();
+            return index < 0 ? null : SortedArraySet.this.remove(index);
+        }
+
+        @Override
+        public E pollLast() {
+            int index = lastIndex();
+            return index < 0 ? null : SortedArraySet.this.remove(index);
+        }
+
+        @Override
+        public NavigableSet<E> descendingSet() {
+            return new SubSet(fromStart, lo, loInclusive, toEnd, hi, hiInclusive, !descending);
+        }
+
+        @Override
+        public NavigableSet<E> subSet(E fromElement, boolean fromInclusive, E toElement, boolean toInclusive) {
+            checkBound(fromElement, fromInclusive);
+            checkBound(toElement, toInclusive);
+            if (descending) {
+                return subRange(false, toElement, toInclusive, false, fromElement, fromInclusive);
+            }
+            return subRange(false, fromElement, fromInclusive, false, toElement, toInclusive);
+        }
+
+        @Override
+        public NavigableSet<E> headSet(E toElement, boolean inclusive) {
+            checkBound(toElement, inclusive);
+            if (descending) {
+                return subRange(false, toElement, inclusive, toEnd, hi, hiInclusive);
+            }
+            return subRange(fromStart, lo, loInclusive, false, toElement, inclusive);
+        }
+
+        @Override
+        public NavigableSet<E> tailSet(E fromElement, boolean inclusive) {
+            checkBound(fromElement, inclusive);
+            if (descending) {
+                return subRange(fromStart, lo, loInclusive, false, fromElement, inclusive);
+            }
+            return subRange(false, fromElement, inclusive, toEnd, hi, hiInclusive);
+        }
+
+        @Override
+        public SortedSet<E> subSet(E fromElement, E toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+
+        @Override
+        public SortedSet<E> headSet(E toElement) {
+            return headSet(toElement, false);
+        }
+
+        @Override
+        public SortedSet<E> tailSet(E fromElement) {
+            return tailSet(fromElement, true);
+        }
+
+        /**
+         * A fail-fast iterator over the range of the view in either direction
+         */
+        private class SubItr implements Iterator<E> {
+
+            private final boolean backwards;
+            private int cursor, end;
+            private int lastReturned = -1;
+            private int expectedModCount = modCount;
+
+            SubItr(boolean backwards) {
+                this.backwards = backwards;
+                int l = low(), h = high();
+                this.cursor = backwards ? h - 1 : l;
+                this.end = backwards ? l : h;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return backwards ? cursor >= end : cursor < end;
+            }
+
+            @Override
+            public E next() {
+                if (expectedModCount != modCount) {
+                    throw new ConcurrentModificationException();
+                } else if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                lastReturned = cursor;
+                cursor += backwards ? -1 : 1;
+                return data[lastReturned];
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned < 0) {
+                    throw new IllegalStateException();
+                } else if (expectedModCount != modCount) {
+                    throw new ConcurrentModificationException();
+                }
+                SortedArraySet.this.remove(lastReturned);
+                if (!backwards) {
+                    cursor--;
+                    end--;
+                }
+                lastReturned = -1;
+                expectedModCount = modCount;
+            }
+        }
+    }
 }
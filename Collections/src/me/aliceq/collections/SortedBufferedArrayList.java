@@ -0,0 +1,296 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Alice Quiros <email@aliceq.me>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.aliceq.collections;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A SortedArrayList optimized for write-heavy phases. Added elements are
+ * appended to an unsorted buffer instead of being inserted at their sorted
+ * position. The buffer is sorted and merged into the list by the first
+ * operation which needs to read the list, or once it grows past the merge
+ * threshold and holds at least as many elements as the sorted part of the
+ * list. Merging at geometrically growing sizes keeps the amortized cost of an
+ * add close to that of ArrayList.add.
+ *
+ * All read operations see the merged list, so positionOf, get and the
+ * iterators always behave as if each element had been inserted in order.
+ *
+ * @author Alice Quiros <email@aliceq.me>
+ * @param <E> the type of elements in this list
+ */
+public class SortedBufferedArrayList<E> extends SortedArrayList<E> {
+
+    private final Comparator<E> order;
+    protected E[] pending;
+    protected int pendingCount = 0;
+    protected int mergeThreshold;
+
+    /**
+     * Basic constructor creating an empty SortedBufferedArrayList in ascending
+     * order. By default the buffer is merged once it holds 8192 elements.
+     */
+    public SortedBufferedArrayList() {
+        this(0, null, true, 8192);
+    }
+
+    /**
+     * Constructor creating an empty SortedBufferedArrayList
+     *
+     * @param initCapacity the initial capacity of the list
+     * @param c the comparator used to compare elements in the list
+     * @param ascending true if the list is ascending, false if descending
+     * @param mergeThreshold the minimum number of buffered elements which
+     * triggers a merge without a read
+     * @throws IllegalArgumentException if mergeThreshold is less than 1
+     */
+    public SortedBufferedArrayList(int initCapacity, Comparator<E> c, boolean ascending, int mergeThreshold) {
+        super(initCapacity, c, ascending);
+        if (mergeThreshold < 1) {
+            throw new IllegalArgumentException("Merge threshold must be positive");
+        }
+        this.mergeThreshold = mergeThreshold;
+        this.pending = (E[]) new Object[Math.min(mergeThreshold, 16)];
+
+        this.order = storedOrder();
+    }
+
+    /**
+     * Returns the minimum number of buffered elements which triggers a merge
+     *
+     * @return the merge threshold
+     */
+    public int getMergeThreshold() {
+        return mergeThreshold;
+    }
+
+    /**
+     * Sets the minimum number of buffered elements which triggers a merge
+     *
+     * @param mergeThreshold the new merge threshold
+     * @throws IllegalArgumentException if mergeThreshold is less than 1
+     */
+    public void setMergeThreshold(int mergeThreshold) {
+        if (mergeThreshold < 1) {
+            throw new IllegalArgumentException("Merge threshold must be positive");
+        }
+        this.mergeThreshold = mergeThreshold;
+    }
+
+    /**
+     * Appends an element to the unsorted buffer. The element becomes visible
+     * at its sorted position to every subsequent read.
+     *
+     * @param e element to add
+     * @return true
+     */
+    @Override
+    public boolean add(E e) {
+        // Increment count
+        modCount++;
+
+        if (pendingCount == pending.length) {
+            pending = Arrays.copyOf(pending, pending.length * 3 / 2 + 1);
+        }
+        pending[pendingCount++] = e;
+
+        if (pendingCount >= mergeThreshold && pendingCount >= size) {
+            merge();
+        }
+        return true;
+    }
+
+    /**
+     * Sorts the buffered elements and merges them into the list. This is done
+     * automatically when needed but may be called to move the cost of the merge
+     * out of the next read.
+     */
+    public void merge() {
+        if (pendingCount == 0) {
+            return;
+        }
+
+        Arrays.sort(pending, 0, pendingCount, order);
+
+        // Merge from the back so the existing array can be reused in place
+        int total = size + pendingCount;
+        E[] target = data;
+        if (total > data.length) {
+            target = (E[]) new Object[Math.max(total, growthPolicy.grow(data.length, total))];
+            resized(data.length, target.length);
+        }
+        int i = size - 1, j = pendingCount - 1, k = total - 1;
+        while (j >= 0) {
+            if (i >= 0 && order.compare(data[i], pending[j]) > 0) {
+                target[k--] = data[i--];
+            } else {
+                target[k--] = pending[j--];
+            }
+        }
+        if (target != data) {
+            System.arraycopy(data, 0, target, 0, i + 1);
+        }
+
+        Arrays.fill(pending, 0, pendingCount, null);
+        data = target;
+        size = total;
+        pendingCount = 0;
+    }
+
+    @Override
+    public void trimToSize() {
+        merge();
+        super.trimToSize();
+    }
+
+    @Override
+    public int size() {
+        return size + pendingCount;
+    }
+
+    @Override
+    public E get(int index) {
+        merge();
+        return super.get(index);
+    }
+
+    @Override
+    public E remove(int index) {
+        merge();
+        return super.remove(index);
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(pending, 0, pendingCount, null);
+        pendingCount = 0;
+        super.clear();
+    }
+
+    @Override
+    public int positionOf(Object o) {
+        merge();
+        return super.positionOf(o);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        merge();
+        return super.indexOf(o);
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        merge();
+        return super.lastIndexOf(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        merge();
+        int index = super.positionOf(o);
+        return index < size && o.equals(data[index]);
+    }
+
+    @Override
+    public Object[] toArray() {
+        merge();
+        Object[] clone = new Object[size];
+        System.arraycopy(data, 0, clone, 0, size);
+        return clone;
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        merge();
+        return super.toArray(a);
+    }
+
+    @Override
+    public ListIterator<E> listIterator(int index) {
+        merge();
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return new Itr(index) {
+
+            @Override
+            public void add(E e) {
+                super.add(e);
+                merge();
+            }
+        };
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return listIterator(0);
+    }
+
+    @Override
+    public ListIterator<E> listIterator() {
+        return listIterator(0);
+    }
+
+    @Override
+    public void forEach(Consumer<? super E> action) {
+        merge();
+        super.forEach(action);
+    }
+
+    @Override
+    public Spliterator<E> spliterator() {
+        merge();
+        return super.spliterator();
+    }
+
+    @Override
+    public SortedList<E> cloneRange(int fromIndex, int toIndex) {
+        merge();
+        return super.cloneRange(fromIndex, toIndex);
+    }
+
+    @Override
+    public SortedList<E> cloneReverse(int fromIndex, int toIndex) {
+        merge();
+        return super.cloneReverse(fromIndex, toIndex);
+    }
+
+    @Override
+    public FrozenSortedList<E> freeze() {
+        merge();
+        return super.freeze();
+    }
+
+    @Override
+    public String toString() {
+        merge();
+        return super.toString();
+    }
+}
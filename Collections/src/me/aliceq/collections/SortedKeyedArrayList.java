@@ -0,0 +1,340 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Alice Quiros <email@aliceq.me>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.aliceq.collections;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.function.ToLongFunction;
+
+/**
+ * A SortedArrayList which orders its elements by a primitive key extracted
+ * from each element. Extracted keys are cached in an array parallel to the
+ * element array so that searches compare primitives directly and only touch
+ * the elements themselves once a matching key has been found.
+ *
+ * Int keys are supported by any extractor returning an int, since the value
+ * is widened to a long. Null elements are not permitted.
+ *
+ * @author Alice Quiros <email@aliceq.me>
+ * @param <E> the type of elements in this list
+ */
+public class SortedKeyedArrayList<E> extends SortedArrayList<E> {
+
+    protected final ToLongFunction<? super E> keyExtractor;
+    protected long[] keys;
+
+    /**
+     * Constructor creating an empty SortedKeyedArrayList in ascending order
+     *
+     * @param keyExtractor the function used to extract a key from each element
+     */
+    public SortedKeyedArrayList(ToLongFunction<? super E> keyExtractor) {
+        this(0, keyExtractor, true);
+    }
+
+    /**
+     * Constructor creating an empty SortedKeyedArrayList of specified order and
+     * initial capacity
+     *
+     * @param initCapacity the initial capacity of the list
+     * @param keyExtractor the function used to extract a key from each element
+     * @param ascending true if the list is ascending, false if descending
+     */
+    public SortedKeyedArrayList(int initCapacity, ToLongFunction<? super E> keyExtractor, boolean ascending) {
+        super(initCapacity, keyComparator(keyExtractor), ascending);
+        this.keyExtractor = keyExtractor;
+        this.keys = new long[initCapacity];
+    }
+
+    /**
+     * Constructor creating a SortedKeyedArrayList initialized with a set of
+     * values
+     *
+     * @param c collection of values to add on initialization
+     * @param keyExtractor the function used to extract a key from each element
+     * @param ascending true if the list is ascending, false if descending
+     */
+    public SortedKeyedArrayList(Collection<? extends E> c, ToLongFunction<? super E> keyExtractor, boolean ascending) {
+        this(c.size(), keyExtractor, ascending);
+        for (E e : c) {
+            this.add(e);
+        }
+    }
+
+    private static <E> Comparator<E> keyComparator(final ToLongFunction<? super E> f) {
+        if (f == null) {
+            throw new NullPointerException();
+        }
+        return new Comparator<E>() {
+
+            @Override
+            public int compare(E o1, E o2) {
+                return Long.compare(f.applyAsLong(o1), f.applyAsLong(o2));
+            }
+        };
+    }
+
+    /**
+     * Returns the function used to extract keys from elements
+     *
+     * @return the key extractor
+     */
+    public ToLongFunction<? super E> getKeyExtractor() {
+        return keyExtractor;
+    }
+
+    /**
+     * Returns the cached key of the element at the specified position
+     *
+     * @param index index of the key to return
+     * @return the key of the element at the specified position in this list
+     * @throws IndexOutOfBoundsException if the index is out of range (index < 0
+     * || index >= size())
+     */
+    public long keyAt(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return keys[index];
+    }
+
+    @Override
+    public boolean add(E e) {
+        Object event = CollectionEvents.beginAdd();
+        long key = keyExtractor.applyAsLong(e);
+        // Append after a single comparison when the key is past the last one
+        int index = size > 0 && SearchStrategy.before(keys[size - 1], key, sortMode < 0) ? size : positionOfKey(key);
+        insert(index, e, key);
+        CollectionEvents.endAdd(event, this, size);
+        return true;
+    }
+
+    @Override
+    protected void insert(int index, E e) {
+        insert(index, e, keyExtractor.applyAsLong(e));
+    }
+
+    /**
+     * Inserts an element and its key at the specified position, shifting the
+     * elements after it forward and growing the backing arrays if needed.
+     *
+     * @param index the position to insert at
+     * @param e the element to insert
+     * @param key the key of the element
+     */
+    protected void insert(int index, E e, long key) {
+        // Increment count
+        modCount++;
+
+        if (size == data.length) {
+            // If current arrays aren't big enough, make new ones and copy around the index
+            int newCapacity = Math.max(growthPolicy.grow(data.length, size + 1), size + 1);
+            E[] target = (E[]) new Object[newCapacity];
+            long[] targetKeys = new long[newCapacity];
+            System.arraycopy(data, 0, target, 0, index);
+            System.arraycopy(keys, 0, targetKeys, 0, index);
+            System.arraycopy(data, index, target, index + 1, size - index);
+            System.arraycopy(keys, index, targetKeys, index + 1, size - index);
+            resized(data.length, newCapacity);
+            data = target;
+            keys = targetKeys;
+        } else {
+            // Shift values forward
+            System.arraycopy(data, index, data, index + 1, size - index);
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+        }
+        if (CollectionMetrics.ENABLED) {
+            metrics.elementsShifted += size - index;
+        }
+
+        data[index] = e;
+        keys[index] = key;
+        size++;
+    }
+
+    @Override
+    protected void resized(int oldCapacity, int newCapacity) {
+        long bytes = (long) newCapacity * (CollectionMetrics.REFERENCE_BYTES + 8);
+        if (CollectionMetrics.ENABLED) {
+            metrics.resized(bytes);
+        }
+        CollectionEvents.resized(this, oldCapacity, newCapacity, bytes);
+    }
+
+    @Override
+    protected void reallocate(int newCapacity) {
+        keys = Arrays.copyOf(keys, newCapacity);
+        super.reallocate(newCapacity);
+    }
+
+    @Override
+    public E remove(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        // Increment count
+        modCount++;
+
+        E at = data[index];
+
+        // Shift all back one
+        int moved = size - index - 1;
+        System.arraycopy(data, index + 1, data, index, moved);
+        System.arraycopy(keys, index + 1, keys, index, moved);
+        if (CollectionMetrics.ENABLED) {
+            metrics.elementsShifted += moved;
+        }
+        data[--size] = null;
+        return at;
+    }
+
+    @Override
+    public void clear() {
+        // Increment count
+        modCount++;
+
+        for (int i = 0; i < size; i++) {
+            data[i] = null;
+        }
+        size = 0;
+    }
+
+    @Override
+    public int positionOf(Object o) {
+        return positionOfKey(keyExtractor.applyAsLong((E) o));
+    }
+
+    /**
+     * Returns the position of a key within the list. If one or more elements
+     * with the given key exist, the index of the first of them is returned.
+     * Otherwise the index points to where an element with this key will be
+     * added when inserted.
+     *
+     * @param key the key to search for
+     * @return the position of the key within the list
+     */
+    public int positionOfKey(long key) {
+        if (CollectionMetrics.ENABLED) {
+            metrics.searches++;
+        }
+        int index = searchStrategy.positionOf(keys, size, key, sortMode < 0, finger);
+        // Only the finger search reads the hint, so avoid the write otherwise
+        if (searchStrategy == SearchStrategy.FINGER) {
+            finger = index;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the index of the first element with the specified key, or -1 if
+     * no element in this list has that key.
+     *
+     * @param key the key to search for
+     * @return the index of the first element with the key, or -1
+     */
+    public int indexOfKey(long key) {
+        int index = positionOfKey(key);
+        return index < size && keys[index] == key ? index : -1;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        long key = keyExtractor.applyAsLong((E) o);
+        for (int i = positionOfKey(key); i < size && keys[i] == key; i++) {
+            if (o.equals(data[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        long key = keyExtractor.applyAsLong((E) o);
+        int last = -1;
+        for (int i = positionOfKey(key); i < size && keys[i] == key; i++) {
+            if (o.equals(data[i])) {
+                last = i;
+            }
+        }
+        return last;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] clone = new Object[size];
+        System.arraycopy(data, 0, clone, 0, size);
+        return clone;
+    }
+
+    @Override
+    public FrozenKeyedSortedList<E> freeze() {
+        return new FrozenKeyedSortedList(data, Arrays.copyOf(keys, size), size, keyExtractor, comparator, sortMode);
+    }
+
+    @Override
+    public SortedList<E> cloneReverse(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || fromIndex > size || toIndex < 0 || toIndex > size) {
+            throw new IndexOutOfBoundsException();
+        } else if (fromIndex > toIndex) {
+            throw new IllegalArgumentException();
+        }
+
+        int length = toIndex - fromIndex;
+        SortedKeyedArrayList<E> newList = new SortedKeyedArrayList(length, keyExtractor, this.sortMode > 0);
+        newList.searchStrategy = searchStrategy;
+        newList.growthPolicy = growthPolicy;
+        newList.size = length;
+        for (int i = 0; i < length; i++) {
+            newList.data[length - i - 1] = this.data[fromIndex + i];
+            newList.keys[length - i - 1] = this.keys[fromIndex + i];
+        }
+        return newList;
+    }
+
+    @Override
+    public SortedList<E> cloneRange(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || fromIndex > size || toIndex < 0 || toIndex > size) {
+            throw new IndexOutOfBoundsException();
+        } else if (fromIndex > toIndex) {
+            throw new IllegalArgumentException();
+        }
+
+        int length = toIndex - fromIndex;
+        SortedKeyedArrayList<E> newList = new SortedKeyedArrayList(length, keyExtractor, this.sortMode <= 0);
+        newList.searchStrategy = searchStrategy;
+        newList.growthPolicy = growthPolicy;
+        newList.size = length;
+        System.arraycopy(this.data, fromIndex, newList.data, 0, length);
+        System.arraycopy(this.keys, fromIndex, newList.keys, 0, length);
+        return newList;
+    }
+}
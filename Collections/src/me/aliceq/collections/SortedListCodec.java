@@ -0,0 +1,369 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Alice Quiros <email@aliceq.me>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.aliceq.collections;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.function.LongFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * A compact binary format for sorted lists of elements which are fully
+ * described by a numeric key, such as ids or timestamps.
+ *
+ * Because the keys are ordered, each key is stored as the zigzag varint
+ * encoded difference from the previous key, which takes a single byte for
+ * dense keys. Keys are grouped into blocks; a skip index in the header holds
+ * the first key and byte offset of every block so that a range of the list
+ * can be decoded without reading the blocks before it.
+ *
+ * Encoding writes directly into a ByteBuffer, and FileChannels are accessed
+ * through memory mapped buffers, so no intermediate copies are made. Decoding
+ * fills the backing arrays of a SortedKeyedArrayList in order without
+ * re-sorting.
+ *
+ * The layout, in big-endian order, is: magic (int), flags (byte, bit 0 set if
+ * ascending), count (int), block size (int), block count (int), one skip
+ * entry per block holding its first key (long) and the offset of its deltas
+ * from the end of the header (int), then the deltas of every block.
+ *
+ * @author Alice Quiros <email@aliceq.me>
+ * @param <E> the type of elements in the lists
+ */
+public class SortedListCodec<E> {
+
+    /**
+     * Codec for lists of Long
+     */
+    public static final SortedListCodec<Long> LONGS = new SortedListCodec<>(Long::longValue, Long::valueOf);
+
+    /**
+     * Codec for lists of Integer
+     */
+    public static final SortedListCodec<Integer> INTEGERS = new SortedListCodec<>(Integer::longValue, k -> (int) k);
+
+    private static final int MAGIC = 0x534C4331; // "SLC1"
+    private static final int HEADER_BYTES = 17;
+    private static final int SKIP_ENTRY_BYTES = 12;
+
+    private final ToLongFunction<? super E> toKey;
+    private final LongFunction<? extends E> fromKey;
+    private final int blockSize;
+
+    /**
+     * Creates a codec with blocks of 128 keys
+     *
+     * @param toKey the function extracting the key of an element
+     * @param fromKey the function recreating an element from its key
+     */
+    public SortedListCodec(ToLongFunction<? super E> toKey, LongFunction<? extends E> fromKey) {
+        this(toKey, fromKey, 128);
+    }
+
+    /**
+     * Creates a codec
+     *
+     * @param toKey the function extracting the key of an element
+     * @param fromKey the function recreating an element from its key
+     * @param blockSize the number of keys per block
+     * @throws IllegalArgumentException if blockSize is less than 1
+     */
+    public SortedListCodec(ToLongFunction<? super E> toKey, LongFunction<? extends E> fromKey, int blockSize) {
+        if (toKey == null || fromKey == null) {
+            throw new NullPointerException();
+        } else if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be positive");
+        }
+        this.toKey = toKey;
+        this.fromKey = fromKey;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Returns the keys of a list in order, checking that they follow the order
+     * of the list
+     */
+    private long[] keysOf(SortedList<E> list) {
+        int count = list.size();
+        long[] keys;
+        if (list instanceof SortedKeyedArrayList && ((SortedKeyedArrayList) list).keyExtractor == toKey) {
+            keys = ((SortedKeyedArrayList) list).keys;
+        } else {
+            keys = new long[count];
+            int i = 0;
+            for (E e : list) {
+                keys[i++] = toKey.applyAsLong(e);
+            }
+        }
+
+        boolean ascending = list.isAscending();
+        for (int i = 1; i < count; i++) {
+            if (ascending ? keys[i] < keys[i - 1] : keys[i] > keys[i - 1]) {
+                throw new IllegalArgumentException("Keys are not ordered like the list at index " + i);
+            }
+        }
+        return keys;
+    }
+
+    private int blockCount(int count) {
+        return (int) (((long) count + blockSize - 1) / blockSize);
+    }
+
+    /**
+     * Returns the exact number of bytes needed to encode a list
+     *
+     * @param list the list to measure
+     * @return the encoded size in bytes
+     * @throws IllegalArgumentException if the keys are not ordered like the
+     * list
+     */
+    public long encodedSize(SortedList<E> list) {
+        return encodedSize(keysOf(list), list.size());
+    }
+
+    private long encodedSize(long[] keys, int count) {
+        long bytes = HEADER_BYTES + (long) SKIP_ENTRY_BYTES * blockCount(count);
+        for (int i = 1; i < count; i++) {
+            if (i % blockSize != 0) {
+                bytes += varintSize(zigzag(keys[i] - keys[i - 1]));
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Encodes a list into a buffer at its current position, advancing the
+     * position past the encoded list
+     *
+     * @param list the list to encode
+     * @param buffer the buffer to write to
+     * @throws IllegalArgumentException if the keys are not ordered like the
+     * list
+     * @throws java.nio.BufferOverflowException if the buffer does not have
+     * encodedSize(list) bytes remaining
+     */
+    public void encode(SortedList<E> list, ByteBuffer buffer) {
+        long[] keys = keysOf(list);
+        encode(keys, list.size(), list.isAscending(), buffer);
+    }
+
+    private void encode(long[] keys, int count, boolean ascending, ByteBuffer buffer) {
+        ByteBuffer out = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        int blocks = blockCount(count);
+
+        out.putInt(MAGIC);
+        out.put((byte) (ascending ? 1 : 0));
+        out.putInt(count);
+        out.putInt(blockSize);
+        out.putInt(blocks);
+
+        // Reserve the skip index, then fill it in while writing the blocks
+        int skipStart = out.position();
+        int dataStart = skipStart + SKIP_ENTRY_BYTES * blocks;
+        out.position(dataStart);
+        for (int b = 0; b < blocks; b++) {
+            int first = b * blockSize;
+            int end = Math.min(first + blockSize, count);
+            out.putLong(skipStart + b * SKIP_ENTRY_BYTES, keys[first]);
+            out.putInt(skipStart + b * SKIP_ENTRY_BYTES + 8, out.position() - dataStart);
+            for (int i = first + 1; i < end; i++) {
+                putVarint(out, zigzag(keys[i] - keys[i - 1]));
+            }
+        }
+        buffer.position(out.position());
+    }
+
+    /**
+     * Decodes a list from a buffer at its current position, advancing the
+     * position past the encoded list
+     *
+     * @param buffer the buffer to read from
+     * @return the decoded list
+     * @throws IllegalArgumentException if the buffer does not hold an encoded
+     * list
+     */
+    public SortedKeyedArrayList<E> decode(ByteBuffer buffer) {
+        return decode(buffer, 0, -1);
+    }
+
+    /**
+     * Decodes the elements between fromIndex (inclusive) and toIndex
+     * (exclusive) of an encoded list. Only the blocks containing the range are
+     * read. The buffer position is advanced past the whole encoded list.
+     *
+     * @param buffer the buffer to read from
+     * @param fromIndex low endpoint (inclusive) of the range
+     * @param toIndex high endpoint (exclusive) of the range
+     * @return a list holding the range
+     * @throws IllegalArgumentException if the buffer does not hold an encoded
+     * list, or if fromIndex is greater than toIndex
+     * @throws IndexOutOfBoundsException if the range is outside the encoded
+     * list
+     */
+    public SortedKeyedArrayList<E> decode(ByteBuffer buffer, int fromIndex, int toIndex) {
+        ByteBuffer in = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        boolean ascending;
+        int count, encodedBlockSize, blocks;
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not an encoded sorted list");
+            }
+            ascending = (in.get() & 1) != 0;
+            count = in.getInt();
+            encodedBlockSize = in.getInt();
+            blocks = in.getInt();
+        } catch (BufferUnderflowException ex) {
+            throw new IllegalArgumentException("Truncated sorted list", ex);
+        }
+        if (count < 0 || encodedBlockSize < 1 || blocks != (int) (((long) count + encodedBlockSize - 1) / encodedBlockSize)) {
+            throw new IllegalArgumentException("Corrupt sorted list header");
+        }
+
+        if (toIndex < 0) {
+            toIndex = count;
+        }
+        if (fromIndex < 0 || toIndex > count) {
+            throw new IndexOutOfBoundsException();
+        } else if (fromIndex > toIndex) {
+            throw new IllegalArgumentException();
+        }
+
+        try {
+            // Load straight into the backing arrays
+            int length = toIndex - fromIndex;
+            SortedKeyedArrayList<E> list = new SortedKeyedArrayList<>(length, toKey, ascending);
+            int skipStart = in.position();
+            int dataStart = skipStart + SKIP_ENTRY_BYTES * blocks;
+            int n = 0;
+            for (int b = fromIndex / encodedBlockSize; n < length; b++) {
+                int first = b * encodedBlockSize;
+                int end = Math.min(first + encodedBlockSize, toIndex);
+                long key = in.getLong(skipStart + b * SKIP_ENTRY_BYTES);
+                in.position(dataStart + in.getInt(skipStart + b * SKIP_ENTRY_BYTES + 8));
+                for (int i = first; i < end; i++) {
+                    if (i > first) {
+                        key += unzigzag(getVarint(in));
+                    }
+                    if (i >= fromIndex) {
+                        list.keys[n] = key;
+                        list.data[n] = fromKey.apply(key);
+                        n++;
+                    }
+                }
+            }
+            list.size = length;
+
+            // Skip to the end of the encoded list
+            in.position(dataStart);
+            if (blocks > 0) {
+                int last = blocks - 1;
+                in.position(dataStart + in.getInt(skipStart + last * SKIP_ENTRY_BYTES + 8));
+                for (int i = last * encodedBlockSize + 1; i < count; i++) {
+                    getVarint(in);
+                }
+            }
+            buffer.position(in.position());
+            return list;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException ex) {
+            throw new IllegalArgumentException("Truncated sorted list", ex);
+        }
+    }
+
+    /**
+     * Writes a list to a channel at its current position through a memory
+     * mapped buffer, advancing the position past the encoded list. The channel
+     * must be open for both reading and writing.
+     *
+     * @param list the list to write
+     * @param channel the channel to write to
+     * @return the number of bytes written
+     * @throws IOException if an I/O error occurs
+     */
+    public long write(SortedList<E> list, FileChannel channel) throws IOException {
+        long[] keys = keysOf(list);
+        int count = list.size();
+        long size = encodedSize(keys, count);
+        long position = channel.position();
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+        encode(keys, count, list.isAscending(), buffer);
+        buffer.force();
+        channel.position(position + size);
+        return size;
+    }
+
+    /**
+     * Reads a list from a channel at its current position through a memory
+     * mapped buffer, advancing the position past the encoded list.
+     *
+     * @param channel the channel to read from
+     * @return the decoded list
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if the channel does not hold an encoded
+     * list at its position
+     */
+    public SortedKeyedArrayList<E> read(FileChannel channel) throws IOException {
+        long position = channel.position();
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, channel.size() - position);
+        SortedKeyedArrayList<E> list = decode(buffer);
+        channel.position(position + buffer.position());
+        return list;
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static int varintSize(long v) {
+        int bits = 64 - Long.numberOfLeadingZeros(v | 1);
+        return (bits + 6) / 7;
+    }
+
+    private static void putVarint(ByteBuffer out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.put((byte) v);
+    }
+
+    private static long getVarint(ByteBuffer in) {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return v;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+}
@@ -0,0 +1,538 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Alice Quiros <email@aliceq.me>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.aliceq.collections;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A sorted multiset which stores each distinct value once together with the
+ * number of times it occurs. Runs of equal values are kept in a sorted array
+ * alongside the cumulative count of elements up to and including each run,
+ * so get(index) and positionOf are binary searches over the distinct values.
+ *
+ * The list behaves like a SortedArrayList holding every duplicate: size counts
+ * every occurrence and indices address individual occurrences. Memory use and
+ * the cost of an insertion depend on the number of distinct values instead of
+ * the total number of elements. Values are equal when the comparator returns
+ * 0; the first value added stands in for every later equal value.
+ *
+ * @author Alice Quiros <email@aliceq.me>
+ * @param <E> the type of elements in this list
+ */
+public class SortedRunLengthList<E> extends AbstractSortedList<E> {
+
+    protected final Comparator comparator;
+    protected final int sortMode;
+    protected int runs = 0;
+    protected E[] values;
+    protected int[] ends;
+    protected SearchStrategy searchStrategy = SearchStrategy.BINARY;
+    protected GrowthPolicy growthPolicy = GrowthPolicy.DEFAULT;
+
+    /**
+     * Basic constructor creating an empty SortedRunLengthList in ascending
+     * order
+     */
+    public SortedRunLengthList() {
+        this(null, true);
+    }
+
+    /**
+     * Constructor creating an empty SortedRunLengthList of specified order
+     *
+     * @param ascending true if the list is ascending, false if descending
+     */
+    public SortedRunLengthList(boolean ascending) {
+        this(null, ascending);
+    }
+
+    /**
+     * Constructor creating an empty SortedRunLengthList of specified order
+     *
+     * @param c the comparator used to compare elements in the list
+     * @param ascending true if the list is ascending, false if descending
+     */
+    public SortedRunLengthList(Comparator<E> c, boolean ascending) {
+        this.values = (E[]) new Object[0];
+        this.ends = new int[0];
+        this.sortMode = ascending ? -1 : 1;
+
+        if (c == null) {
+            this.comparator = new Comparator<E>() {
+
+                @Override
+                public int compare(E o1, E o2) {
+                    if (o1 instanceof Comparable) {
+                        return ((Comparable) o1).compareTo(o2);
+                    } else {
+                        return o2.hashCode() - o1.hashCode();
+                    }
+                }
+            };
+        } else {
+            this.comparator = c;
+        }
+    }
+
+    /**
+     * Constructor creating a SortedRunLengthList initialized with a set of
+     * values
+     *
+     * @param c collection of values to add on initialization
+     */
+    public SortedRunLengthList(Collection<? extends E> c) {
+        this(c, null, true);
+    }
+
+    /**
+     * Constructor creating a SortedRunLengthList initialized with a set of
+     * values
+     *
+     * @param c collection of values to add on initialization
+     * @param comparator the comparator used to compare elements in the list
+     * @param ascending true if the list is ascending, false if descending
+     */
+    public SortedRunLengthList(Collection<? extends E> c, Comparator<E> comparator, boolean ascending) {
+        this(comparator, ascending);
+        for (E e : c) {
+            this.add(e);
+        }
+    }
+
+    /**
+     * Returns the index of the run holding o, or -(insertion point) - 1 if no
+     * run holds an equal value
+     */
+    private int findRun(Object o) {
+        int index = searchStrategy.positionOf(values, runs, o, comparator, sortMode);
+        if (index < runs && values[index] != null && comparator.compare(values[index], o) == 0) {
+            return index;
+        }
+        return -index - 1;
+    }
+
+    /**
+     * Returns the index of the run holding the element at the given index
+     */
+    private int runOf(int index) {
+        int pa = 0, pb = runs;
+        while (pa < pb) {
+            int mid = (pa + pb) >>> 1;
+            if (ends[mid] <= index) {
+                pa = mid + 1;
+            } else {
+                pb = mid;
+            }
+        }
+        return pa;
+    }
+
+    private int startOf(int run) {
+        return run == 0 ? 0 : ends[run - 1];
+    }
+
+    /**
+     * Adds one occurrence of an element to the list
+     *
+     * @param e the element to add
+     * @return true, since the list always changes
+     */
+    @Override
+    public boolean add(E e) {
+        add(e, 1);
+        return true;
+    }
+
+    /**
+     * Adds several occurrences of an element to the list. This costs the same
+     * as adding a single occurrence.
+     *
+     * @param e the element to add
+     * @param occurrences the number of occurrences to add
+     * @return the number of occurrences of the element before the call
+     * @throws IllegalArgumentException if occurrences is negative
+     */
+    public int add(E e, int occurrences) {
+        if (occurrences < 0) {
+            throw new IllegalArgumentException("Negative occurrences");
+        }
+        int run = findRun(e);
+        int previous = 0;
+        if (run >= 0) {
+            previous = ends[run] - startOf(run);
+        } else if (occurrences > 0) {
+            run = -run - 1;
+            insertRun(run, e);
+        }
+        if (occurrences > 0) {
+            // Increment count
+            modCount++;
+
+            for (int i = run; i < runs; i++) {
+                ends[i] += occurrences;
+            }
+        }
+        return previous;
+    }
+
+    /**
+     * Inserts an empty run at the specified position, growing the backing
+     * arrays according to the growth policy if they are full
+     */
+    private void insertRun(int index, E e) {
+        if (runs == values.length) {
+            int newCapacity = Math.max(growthPolicy.grow(values.length, runs + 1), runs + 1);
+            values = Arrays.copyOf(values, newCapacity);
+            ends = Arrays.copyOf(ends, newCapacity);
+        }
+        System.arraycopy(values, index, values, index + 1, runs - index);
+        System.arraycopy(ends, index, ends, index + 1, runs - index);
+        values[index] = e;
+        ends[index] = startOf(index);
+        runs++;
+    }
+
+    private void removeRun(int index) {
+        System.arraycopy(values, index + 1, values, index, runs - index - 1);
+        System.arraycopy(ends, index + 1, ends, index, runs - index - 1);
+        values[--runs] = null;
+    }
+
+    /**
+     * Removes up to the given number of occurrences of an element
+     *
+     * @param o the element to remove
+     * @param occurrences the maximum number of occurrences to remove
+     * @return the number of occurrences of the element before the call
+     * @throws IllegalArgumentException if occurrences is negative
+     */
+    public int remove(Object o, int occurrences) {
+        if (occurrences < 0) {
+            throw new IllegalArgumentException("Negative occurrences");
+        }
+        int run = findRun(o);
+        if (run < 0) {
+            return 0;
+        }
+        int previous = ends[run] - startOf(run);
+        int removed = Math.min(previous, occurrences);
+        if (removed > 0) {
+            // Increment count
+            modCount++;
+
+            for (int i = run; i < runs; i++) {
+                ends[i] -= removed;
+            }
+            if (removed == previous) {
+                removeRun(run);
+            }
+        }
+        return previous;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return remove(o, 1) > 0;
+    }
+
+    @Override
+    public E remove(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException();
+        }
+        E at = values[runOf(index)];
+        remove(at, 1);
+        return at;
+    }
+
+    /**
+     * Returns the number of occurrences of an element in the list
+     *
+     * @param o the element to count
+     * @return the number of occurrences
+     */
+    public int count(Object o) {
+        int run = findRun(o);
+        return run < 0 ? 0 : ends[run] - startOf(run);
+    }
+
+    /**
+     * Returns the number of distinct values in the list
+     *
+     * @return the number of runs
+     */
+    public int distinctCount() {
+        return runs;
+    }
+
+    /**
+     * Returns the value of a run
+     *
+     * @param run the index of the run
+     * @return the value of the run
+     * @throws IndexOutOfBoundsException if the run is out of range
+     */
+    public E valueAt(int run) {
+        if (run < 0 || run >= runs) {
+            throw new IndexOutOfBoundsException();
+        }
+        return values[run];
+    }
+
+    /**
+     * Returns the number of occurrences of the value of a run
+     *
+     * @param run the index of the run
+     * @return the length of the run
+     * @throws IndexOutOfBoundsException if the run is out of range
+     */
+    public int countAt(int run) {
+        if (run < 0 || run >= runs) {
+            throw new IndexOutOfBoundsException();
+        }
+        return ends[run] - startOf(run);
+    }
+
+    /**
+     * Returns the strategy used to search through the distinct values
+     *
+     * @return the current search strategy
+     */
+    public SearchStrategy getSearchStrategy() {
+        return searchStrategy;
+    }
+
+    /**
+     * Sets the strategy used to search through the distinct values
+     *
+     * @param strategy the search strategy to use
+     * @throws NullPointerException if strategy is null
+     */
+    public void setSearchStrategy(SearchStrategy strategy) {
+        if (strategy == null) {
+            throw new NullPointerException();
+        }
+        this.searchStrategy = strategy;
+    }
+
+    /**
+     * Sets the policy used to grow the backing arrays
+     *
+     * @param policy the growth policy to use
+     * @throws NullPointerException if policy is null
+     */
+    public void setGrowthPolicy(GrowthPolicy policy) {
+        if (policy == null) {
+            throw new NullPointerException();
+        }
+        this.growthPolicy = policy;
+    }
+
+    /**
+     * Shrinks the backing arrays to the number of distinct values
+     */
+    public void trimToSize() {
+        values = Arrays.copyOf(values, runs);
+        ends = Arrays.copyOf(ends, runs);
+    }
+
+    @Override
+    public E get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException();
+        }
+        return values[runOf(index)];
+    }
+
+    @Override
+    public int positionOf(Object o) {
+        int run = findRun(o);
+        return startOf(run < 0 ? -run - 1 : run);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        int run = findRun(o);
+        return run < 0 ? -1 : startOf(run);
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        int run = findRun(o);
+        return run < 0 ? -1 : ends[run] - 1;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return findRun(o) >= 0;
+    }
+
+    @Override
+    public boolean isAscending() {
+        return sortMode <= 0;
+    }
+
+    @Override
+    public int size() {
+        return runs == 0 ? 0 : ends[runs - 1];
+    }
+
+    @Override
+    public Comparator<E> getComparator() {
+        return comparator;
+    }
+
+    @Override
+    public void clear() {
+        // Increment count
+        modCount++;
+
+        Arrays.fill(values, 0, runs, null);
+        runs = 0;
+    }
+
+    /**
+     * Returns an iterator which walks the runs directly instead of searching
+     * for every index
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+
+            private final int expectedModCount = modCount;
+            private int run = 0;
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size();
+            }
+
+            @Override
+            public E next() {
+                if (expectedModCount != modCount) {
+                    throw new ConcurrentModificationException();
+                } else if (index >= size()) {
+                    throw new NoSuchElementException();
+                }
+                while (ends[run] <= index) {
+                    run++;
+                }
+                index++;
+                return values[run];
+            }
+        };
+    }
+
+    @Override
+    public Object[] toArray() {
+        return toArray(new Object[size()]);
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        int size = size();
+        if (a.length < size) {
+            a = (T[]) java.lang.reflect.Array.newInstance(a.getClass().getComponentType(), size);
+        }
+        for (int run = 0; run < runs; run++) {
+            Arrays.fill(a, startOf(run), ends[run], values[run]);
+        }
+        if (a.length > size) {
+            a[size] = null;
+        }
+        return a;
+    }
+
+    /**
+     * Copies the runs overlapping [fromIndex, toIndex) into a new list, in the
+     * given order
+     */
+    private SortedRunLengthList<E> copyRange(int fromIndex, int toIndex, boolean reverse) {
+        int size = size();
+        if (fromIndex < 0 || fromIndex > size || toIndex < 0 || toIndex > size) {
+            throw new IndexOutOfBoundsException();
+        } else if (fromIndex > toIndex) {
+            throw new IllegalArgumentException();
+        }
+
+        SortedRunLengthList<E> newList = new SortedRunLengthList(comparator, isAscending() != reverse);
+        newList.searchStrategy = searchStrategy;
+        newList.growthPolicy = growthPolicy;
+        if (fromIndex == toIndex) {
+            return newList;
+        }
+        int first = runOf(fromIndex), last = runOf(toIndex - 1);
+        int n = last - first + 1;
+        newList.values = (E[]) new Object[n];
+        newList.ends = new int[n];
+        newList.runs = n;
+        int total = 0;
+        for (int i = 0; i < n; i++) {
+            int run = reverse ? last - i : first + i;
+            total += Math.min(ends[run], toIndex) - Math.max(startOf(run), fromIndex);
+            newList.values[i] = values[run];
+            newList.ends[i] = total;
+        }
+        return newList;
+    }
+
+    @Override
+    public SortedList<E> cloneRange(int fromIndex, int toIndex) {
+        return copyRange(fromIndex, toIndex, false);
+    }
+
+    @Override
+    public SortedList<E> cloneReverse(int fromIndex, int toIndex) {
+        return copyRange(fromIndex, toIndex, true);
+    }
+
+    /**
+     * Returns a String representation of the instance in the bracket notation
+     * of SortedArrayList. Each distinct value is printed once followed by its
+     * number of occurrences, as in value*count.
+     *
+     * @return a String representation of the instance
+     */
+    @Override
+    public String toString() {
+        if (runs == 0) {
+            return isAscending() ? "[}" : "{]";
+        }
+
+        StringBuilder s = new StringBuilder(isAscending() ? "[" : "{");
+        for (int run = 0; run < runs; run++) {
+            if (run > 0) {
+                s.append(',');
+            }
+            s.append(values[run]).append('*').append(ends[run] - startOf(run));
+        }
+        return s.append(isAscending() ? "}" : "]").toString();
+    }
+}
@@ -23,47 +23,180 @@
  */
 package me.aliceq.collections;
 
+import java.util.function.Consumer;
+
 /**
  * A synchronized implementation of SortedArrayList which increases its size by
- * capacityIncrement when needed. This implementation is better for thread-safe
+ * capacityIncrement when needed, or doubles it if capacityIncrement is 0, like
+ * java.util.Vector. This implementation is better for thread-safe
  * implementations, however if thread-safe implementations are not needed then
- * SortedArrayList is the better option.
+ * SortedArrayList is the better option. Another GrowthPolicy can be set with
+ * setGrowthPolicy.
+ *
+ * By default capacityIncrement is 0, so the vector doubles its capacity and n
+ * insertions cost O(n) reallocation in total. Earlier versions added two slots
+ * at a time, which made n insertions cost O(n^2); subclasses relying on that
+ * can still assign capacityIncrement.
+ *
+ * Iterators read the backing array directly and are fail-fast. As with
+ * Collections.synchronizedList, callers sharing the vector between threads
+ * must hold its lock while iterating; forEach and toArray do this themselves.
  *
  * @author Alice Quiros <email@aliceq.me>
  * @param <E> the type of elements in this list
  */
 public class SortedVector<E> extends SortedArrayList<E> {
 
-    protected int capacityIncrement = 2;
+    /**
+     * The number of slots added when the list grows, or 0 to double the
+     * capacity. Read on every growth while the default growth policy is in
+     * use. Defaults to 0; it was 2 in earlier versions.
+     *
+     * @deprecated use setGrowthPolicy with a fixed or geometric GrowthPolicy
+     */
+    @Deprecated
+    protected int capacityIncrement = 0;
 
-    @Override
-    public synchronized boolean add(E e) {
-        // Increment count
-        modCount++;
+    /**
+     * Constructor creating an empty SortedVector in ascending order which
+     * doubles its capacity when needed
+     */
+    public SortedVector() {
+        super();
+        this.growthPolicy = new IncrementPolicy();
+    }
 
-        // Target array
-        E[] target = data;
+    /**
+     * Constructor creating an empty SortedVector in ascending order
+     *
+     * @param initCapacity the initial capacity of the list
+     * @param capacityIncrement the number of slots added when the list grows,
+     * or 0 to double the capacity instead
+     * @throws IllegalArgumentException if capacityIncrement is negative
+     */
+    public SortedVector(int initCapacity, int capacityIncrement) {
+        super(initCapacity, true);
+        if (capacityIncrement < 0) {
+            throw new IllegalArgumentException("Increment must not be negative");
+        }
+        this.capacityIncrement = capacityIncrement;
+        this.growthPolicy = new IncrementPolicy();
+    }
 
-        // Get the index to insert
-        int index = positionOf(e);
+    /**
+     * The default growth policy, which grows by the current capacityIncrement
+     */
+    private class IncrementPolicy implements GrowthPolicy {
 
-        // If current array isn't big enough, make a new one but only copy up to the index
-        if (++size >= data.length) {
-            // Increase array size
-            target = (E[]) new Comparable[data.length + capacityIncrement];
-            System.arraycopy(data, 0, target, 0, index);
+        @Override
+        public int grow(int capacity, int minCapacity) {
+            return snapshot().grow(capacity, minCapacity);
         }
 
-        // Shift values forward
-        System.arraycopy(data, index, target, index + 1, size - index - 1);
+        /**
+         * Returns a policy fixed to the current capacityIncrement
+         */
+        GrowthPolicy snapshot() {
+            return capacityIncrement > 0 ? GrowthPolicy.fixed(capacityIncrement) : GrowthPolicy.geometric(2);
+        }
 
-        // Set index
-        target[index] = e;
+        @Override
+        public String toString() {
+            return snapshot().toString();
+        }
+    }
+
+    @Override
+    public boolean add(E e) {
+        Object event = CollectionEvents.beginAdd();
+        boolean added;
+        if (CollectionMetrics.ENABLED) {
+            metrics.lockRequested();
+            try {
+                added = addSynchronized(e);
+            } finally {
+                metrics.lockReleased();
+            }
+        } else {
+            added = addSynchronized(e);
+        }
+        CollectionEvents.endAdd(event, this, size);
+        return added;
+    }
 
-        data = target;
+    private synchronized boolean addSynchronized(E e) {
+        insert(insertionPoint(e), e);
         return true;
     }
 
+    @Override
+    public boolean remove(Object o) {
+        if (CollectionMetrics.ENABLED) {
+            metrics.lockRequested();
+            try {
+                return removeSynchronized(o);
+            } finally {
+                metrics.lockReleased();
+            }
+        }
+        return removeSynchronized(o);
+    }
+
+    private synchronized boolean removeSynchronized(Object o) {
+        return super.remove(o);
+    }
+
+    @Override
+    public synchronized E remove(int index) {
+        return super.remove(index);
+    }
+
+    @Override
+    public synchronized void ensureCapacity(int minCapacity) {
+        super.ensureCapacity(minCapacity);
+    }
+
+    @Override
+    public synchronized void trimToSize() {
+        super.trimToSize();
+    }
+
+    @Override
+    public synchronized void setGrowthPolicy(GrowthPolicy policy) {
+        super.setGrowthPolicy(policy);
+    }
+
+    @Override
+    public synchronized int capacity() {
+        return super.capacity();
+    }
+
+    @Override
+    public synchronized GrowthPolicy getGrowthPolicy() {
+        return super.getGrowthPolicy();
+    }
+
+    @Override
+    public synchronized SortedList<E> cloneRange(int fromIndex, int toIndex) {
+        return detach(super.cloneRange(fromIndex, toIndex));
+    }
+
+    @Override
+    public synchronized SortedList<E> cloneReverse(int fromIndex, int toIndex) {
+        return detach(super.cloneReverse(fromIndex, toIndex));
+    }
+
+    /**
+     * Gives a clone the growth it would have now, rather than a policy which
+     * reads the capacityIncrement of this vector
+     */
+    private SortedList<E> detach(SortedList<E> clone) {
+        if (growthPolicy instanceof SortedVector.IncrementPolicy) {
+            ((SortedArrayList<E>) clone).growthPolicy = ((IncrementPolicy) growthPolicy).snapshot();
+        }
+        return clone;
+    }
+
     @Override
     public synchronized E get(int index) {
         return super.get(index);
@@ -74,6 +207,16 @@ public class SortedVector<E> extends SortedArrayList<E> {
         return super.indexOf(o);
     }
 
+    @Override
+    public synchronized int lastIndexOf(Object o) {
+        return super.lastIndexOf(o);
+    }
+
+    @Override
+    public synchronized int positionOf(Object o) {
+        return super.positionOf(o);
+    }
+
     @Override
     public synchronized boolean contains(Object o) {
         return super.contains(o);
@@ -83,4 +226,30 @@ public class SortedVector<E> extends SortedArrayList<E> {
     public synchronized void clear() {
         super.clear();
     }
+
+    @Override
+    public synchronized FrozenSortedList<E> freeze() {
+        return super.freeze();
+    }
+
+    @Override
+    public synchronized Object[] toArray() {
+        return super.toArray();
+    }
+
+    @Override
+    public synchronized <T> T[] toArray(T[] a) {
+        return super.toArray(a);
+    }
+
+    /**
+     * Performs the given action for each element while holding the lock on
+     * the vector once for the whole scan, instead of once per element.
+     *
+     * @param action the action to perform on each element
+     */
+    @Override
+    public synchronized void forEach(Consumer<? super E> action) {
+        super.forEach(action);
+    }
 }
@@ -0,0 +1,221 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Alice Quiros <email@aliceq.me>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.aliceq.collections;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * A CircularBuffer for time-ordered events in which every slot carries a
+ * primitive timestamp. Timestamps never decrease from the oldest to the
+ * newest element, so time-window queries are binary searches across the two
+ * segments of the ring instead of scans from the tail.
+ *
+ * Elements pushed without a timestamp are stamped with the buffer's clock,
+ * System.currentTimeMillis by default.
+ *
+ * @author Alice Quiros <email@aliceq.me>
+ * @param <E> the type of elements in this structure
+ */
+public class TimestampedCircularBuffer<E> extends CircularBuffer<E> {
+
+    private static final LongSupplier SYSTEM_CLOCK = new LongSupplier() {
+
+        @Override
+        public long getAsLong() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    protected final long[] times;
+    protected final LongSupplier clock;
+
+    /**
+     * Creates a timestamped buffer stamped with System.currentTimeMillis
+     *
+     * @param size the size of the buffer
+     */
+    public TimestampedCircularBuffer(int size) {
+        this(size, SYSTEM_CLOCK);
+    }
+
+    /**
+     * Creates a timestamped buffer
+     *
+     * @param size the size of the buffer
+     * @param clock the clock stamping elements pushed without a timestamp
+     */
+    public TimestampedCircularBuffer(int size, LongSupplier clock) {
+        super(size);
+        if (clock == null) {
+            throw new NullPointerException();
+        }
+        this.times = new long[size];
+        this.clock = clock;
+    }
+
+    /**
+     * Pushes an element stamped with the current time of the buffer's clock
+     *
+     * @param e element to push
+     * @throws IllegalStateException if the buffer is full
+     * @throws IllegalArgumentException if the clock went back in time
+     */
+    @Override
+    public void push(E e) {
+        push(e, clock.getAsLong());
+    }
+
+    /**
+     * Pushes an element with the given timestamp
+     *
+     * @param e element to push
+     * @param timestamp the time of the element
+     * @throws IllegalStateException if the buffer is full
+     * @throws IllegalArgumentException if timestamp is earlier than the
+     * timestamp of the newest element
+     */
+    public synchronized void push(E e, long timestamp) {
+        if (count > 0 && timestamp < times[physical(count - 1)]) {
+            throw new IllegalArgumentException("Timestamps must not decrease");
+        }
+        int slot = head >= data.length ? 0 : head;
+        super.push(e);
+        times[slot] = timestamp;
+    }
+
+    /**
+     * Pushes an element with the given timestamp if there is room
+     *
+     * @param e element to push
+     * @param timestamp the time of the element
+     * @return true if the element was added, false if the buffer is full
+     * @throws IllegalArgumentException if timestamp is earlier than the
+     * timestamp of the newest element
+     */
+    public synchronized boolean offer(E e, long timestamp) {
+        if (isFull()) {
+            // Let the buffer record the rejection
+            return offer(e);
+        }
+        push(e, timestamp);
+        return true;
+    }
+
+    /**
+     * Returns the slot of the element at a position relative to the tail
+     */
+    private int physical(int index) {
+        int i = (tail >= data.length ? tail - data.length : tail) + index;
+        return i >= data.length ? i - data.length : i;
+    }
+
+    /**
+     * Returns the timestamp of an element
+     *
+     * @param index the index of the element relative to the tail pointer
+     * @return the timestamp of the element
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public synchronized long timeAt(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException();
+        }
+        return times[physical(index)];
+    }
+
+    /**
+     * Returns the index, relative to the tail pointer, of the oldest element
+     * whose timestamp is at or after t. If every element is older, count() is
+     * returned.
+     *
+     * @param t the time to look for
+     * @return the index of the first element at or after t
+     */
+    public synchronized int indexOfTime(long t) {
+        // Search the older segment, from the tail to the end of the array,
+        // then the wrapped segment at the start of the array
+        int start = physical(0);
+        int first = Math.min(count, data.length - start);
+        int index = lowerBound(start, start + first, t) - start;
+        if (index < first) {
+            return index;
+        }
+        return first + lowerBound(0, count - first, t);
+    }
+
+    private int lowerBound(int from, int to, long t) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (times[mid] < t) {
+                from = mid + 1;
+            } else {
+                to = mid;
+            }
+        }
+        return from;
+    }
+
+    /**
+     * Returns the elements with a timestamp at or after t, oldest first. Both
+     * segments of the window are copied under a single lock acquisition.
+     *
+     * @param t the start of the time window
+     * @return the elements of the window
+     */
+    public synchronized List<E> rangeSince(long t) {
+        int from = indexOfTime(t);
+        int n = count - from;
+        Object[] range = new Object[n];
+        int start = physical(from);
+        int first = Math.min(n, data.length - start);
+        System.arraycopy(data, start, range, 0, first);
+        System.arraycopy(data, 0, range, first, n - first);
+        return (List<E>) Arrays.asList(range);
+    }
+
+    /**
+     * Removes every element with a timestamp before t. Finding the elements
+     * takes O(log n); their slots are then cleared so they can be collected.
+     *
+     * @param t the oldest time to keep
+     * @return the number of elements removed
+     */
+    public synchronized int evictOlderThan(long t) {
+        int n = indexOfTime(t);
+        if (n == 0) {
+            return 0;
+        }
+        int start = physical(0);
+        int first = Math.min(n, data.length - start);
+        Arrays.fill(data, start, start + first, null);
+        Arrays.fill(data, 0, n - first, null);
+
+        tail = physical(n);
+        count -= n;
+        modCount++;
+        return n;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Alice Quiros <email@aliceq.me>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.aliceq.collections.benchmark;
+
+import java.util.HashSet;
+import java.util.Set;
+import me.aliceq.collections.CompressedSortedLongSet;
+import me.aliceq.collections.RoaringIntSet;
+import me.aliceq.collections.SortedList;
+
+/**
+ * Checks the compact integer sets against the contracts they implement:
+ * cloneRange and cloneReverse over every range of a small set, and equality
+ * and hash codes against a HashSet holding the same values.
+ *
+ * Run with: java -cp build/classes
+ * me.aliceq.collections.benchmark.CompactSetCheck
+ *
+ * The exit status is 1 if any check failed.
+ *
+ * @author Alice Quiros <email@aliceq.me>
+ */
+public class CompactSetCheck {
+
+    private static final int[] VALUES = {-70000, -3, 0, 1, 2, 65535, 65536, 1 << 20, Integer.MAX_VALUE};
+
+    public static void main(String[] args) {
+        boolean failed = false;
+
+        Set<Integer> ints = new HashSet<>();
+        Set<Long> longs = new HashSet<>();
+        long[] longValues = new long[VALUES.length];
+        for (int i = 0; i < VALUES.length; i++) {
+            ints.add(VALUES[i]);
+            longs.add((long) VALUES[i] << 8);
+            longValues[i] = (long) VALUES[i] << 8;
+        }
+
+        RoaringIntSet roaring = new RoaringIntSet(VALUES);
+        failed |= !check("RoaringIntSet", roaring, ints);
+
+        CompressedSortedLongSet compressed = new CompressedSortedLongSet(longValues);
+        failed |= !check("CompressedSortedLongSet", compressed, longs);
+
+        System.out.println(failed ? "FAILED" : "PASSED");
+        System.exit(failed ? 1 : 0);
+    }
+
+    /**
+     * Checks clones of every range of an ascending set and its equality with
+     * an unordered set of the same values
+     *
+     * @return true if every check passed
+     */
+    private static <E> boolean check(String name, SortedList<E> set, Set<E> expected) {
+        int ranges = 0, wrong = 0;
+        String error = null;
+        for (int from = 0; from <= set.size(); from++) {
+            for (int to = from; to <= set.size(); to++) {
+                ranges++;
+                try {
+                    SortedList<E> range = set.cloneRange(from, to);
+                    SortedList<E> reverse = set.cloneReverse(from, to);
+                    boolean same = range.size() == to - from && reverse.size() == to - from;
+                    for (int i = 0; same && i < to - from; i++) {
+                        same = set.get(from + i).equals(range.get(i))
+                                && set.get(to - 1 - i).equals(reverse.get(i));
+                    }
+                    if (!same) {
+                        wrong++;
+                    }
+                } catch (RuntimeException ex) {
+                    wrong++;
+                    error = ex.toString();
+                }
+            }
+        }
+
+        boolean equal = set.equals(expected) && expected.equals(set) && set.hashCode() == expected.hashCode();
+        boolean passed = wrong == 0 && equal;
+        System.out.printf("[%s] %s%n", passed ? "OK" : "FAILED", name);
+        System.out.printf("    %d of %d clone ranges wrong, %s a HashSet of the same values%n",
+                wrong, ranges, equal ? "equal to" : "not equal to");
+        if (error != null) {
+            System.out.printf("    %s%n", error);
+        }
+        return passed;
+    }
+}
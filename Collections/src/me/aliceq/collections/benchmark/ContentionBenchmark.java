@@ -0,0 +1,450 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Alice Quiros <email@aliceq.me>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.aliceq.collections.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CyclicBarrier;
+import java.util.function.Supplier;
+import me.aliceq.collections.CircularBlockingQueue;
+import me.aliceq.collections.CircularBuffer;
+import me.aliceq.collections.CollectionMetrics;
+import me.aliceq.collections.FlatCombiningSortedVector;
+import me.aliceq.collections.SortedVector;
+
+/**
+ * Measures how the synchronized collections scale with the number of threads
+ * sharing them, against their java.util.concurrent counterparts. Sorted sets
+ * (SortedVector, FlatCombiningSortedVector, ConcurrentSkipListSet) run a mix of
+ * contains, add and remove calls; queues (CircularBuffer,
+ * CircularBlockingQueue, ArrayBlockingQueue) pass elements from producers to
+ * consumers.
+ *
+ * Each cell of the sweep runs for a fixed time and reports the throughput, the
+ * throughput relative to the first cell of the same collection, the latency
+ * percentiles of every eighth operation and how often a worker was blocked on
+ * a monitor or parked on a lock per thousand operations. Blocked entries are
+ * contended, and therefore inflated, monitors. Calls which throw are counted
+ * and reported separately, since they point to a race in the collection
+ * rather than a cost. If instrumentation is enabled with
+ * -Dme.aliceq.collections.metrics=true, the share of lock acquisitions which
+ * found the lock already held is printed as well.
+ *
+ * Run with: java -cp build/classes
+ * me.aliceq.collections.benchmark.ContentionBenchmark [set|queue|all]
+ * [millis per cell]
+ *
+ * @author Alice Quiros <email@aliceq.me>
+ */
+public class ContentionBenchmark {
+
+    private static final int KEYS = 1 << 14;
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final int SAMPLE_MASK = 7;
+    private static final int SAMPLES = 1 << 16;
+
+    // Dedicated readers and writers
+    private static final int[] READERS = {0, 1, 2, 4};
+    private static final int[] WRITERS = {1, 2, 4};
+
+    // Threads which each mix reads and writes
+    private static final int[] THREADS = {1, 2, 4, 8};
+    private static final int[] READ_PERCENT = {50, 90, 99};
+
+    // Producers and consumers
+    private static final int[] PRODUCERS = {1, 2, 4};
+    private static final int[] CONSUMERS = {1, 2, 4};
+
+    private static final ThreadMXBean THREADS_MX = ManagementFactory.getThreadMXBean();
+
+    private static volatile long sink;
+
+    /**
+     * A single operation run in a loop by a worker
+     */
+    private interface Op {
+
+        /**
+         * Runs the operation once
+         *
+         * @param random the random source of the worker
+         * @return false if the operation was refused, for instance by a full
+         * queue
+         */
+        boolean run(SplittableRandom random);
+    }
+
+    /**
+     * The two ends of a bounded queue
+     */
+    private interface Channel {
+
+        boolean offer(Integer e);
+
+        Integer poll();
+
+        CollectionMetrics metrics();
+    }
+
+    public static void main(String[] args) throws Exception {
+        String suite = args.length > 0 ? args[0] : "all";
+        long millis = args.length > 1 ? Long.parseLong(args[1]) : 500;
+
+        if (THREADS_MX.isThreadContentionMonitoringSupported()) {
+            THREADS_MX.setThreadContentionMonitoringEnabled(true);
+        }
+        System.out.printf("%d processors, %d ms per cell, metrics %s%n%n",
+                Runtime.getRuntime().availableProcessors(), millis, CollectionMetrics.ENABLED ? "on" : "off");
+
+        if (!suite.equals("queue")) {
+            sets(millis);
+        }
+        if (!suite.equals("set")) {
+            queues(millis);
+        }
+    }
+
+    private static void sets(long millis) throws Exception {
+        List<String> names = Arrays.asList("SortedVector", "FlatCombiningSortedVector", "ConcurrentSkipListSet");
+        List<Supplier<Collection<Integer>>> factories = Arrays.asList(
+                () -> new SortedVector<>(),
+                () -> new FlatCombiningSortedVector<>(),
+                () -> new ConcurrentSkipListSet<>());
+
+        System.out.println("Sorted sets, dedicated readers (contains) and writers (add + remove)");
+        header("readers", "writers");
+        for (int t = 0; t < names.size(); t++) {
+            double base = 0;
+            for (int writers : WRITERS) {
+                for (int readers : READERS) {
+                    Collection<Integer> set = prefill(factories.get(t).get());
+                    Op[] ops = new Op[readers + writers];
+                    for (int i = 0; i < ops.length; i++) {
+                        ops[i] = i < readers ? reader(set) : writer(set);
+                    }
+                    base = report(names.get(t), readers, writers, run(ops, millis), base, metrics(set));
+                }
+            }
+        }
+
+        System.out.println();
+        System.out.println("Sorted sets, threads mixing reads and writes");
+        header("threads", "read %");
+        for (int t = 0; t < names.size(); t++) {
+            for (int percent : READ_PERCENT) {
+                double base = 0;
+                for (int threads : THREADS) {
+                    Collection<Integer> set = prefill(factories.get(t).get());
+                    Op[] ops = new Op[threads];
+                    for (int i = 0; i < threads; i++) {
+                        ops[i] = mixed(set, percent);
+                    }
+                    base = report(names.get(t), threads, percent, run(ops, millis), base, metrics(set));
+                }
+            }
+        }
+        System.out.println();
+    }
+
+    private static void queues(long millis) throws Exception {
+        List<String> names = Arrays.asList("CircularBuffer", "CircularBlockingQueue", "ArrayBlockingQueue");
+        List<Supplier<Channel>> factories = Arrays.asList(
+                () -> channel(new CircularBuffer<Integer>(QUEUE_CAPACITY)),
+                () -> channel(new CircularBlockingQueue<Integer>(QUEUE_CAPACITY)),
+                () -> channel(new ArrayBlockingQueue<Integer>(QUEUE_CAPACITY)));
+
+        System.out.println("Queues, producers (offer) and consumers (poll); refused calls yield and are not counted");
+        header("producers", "consumers");
+        for (int t = 0; t < names.size(); t++) {
+            double base = 0;
+            for (int producers : PRODUCERS) {
+                for (int consumers : CONSUMERS) {
+                    Channel channel = factories.get(t).get();
+                    Op[] ops = new Op[producers + consumers];
+                    for (int i = 0; i < ops.length; i++) {
+                        ops[i] = i < producers ? producer(channel) : consumer(channel);
+                    }
+                    base = report(names.get(t), producers, consumers, run(ops, millis), base, channel.metrics());
+                }
+            }
+        }
+        System.out.println();
+    }
+
+    private static Collection<Integer> prefill(Collection<Integer> set) {
+        // Even keys are present, odd keys are added and removed again
+        for (int i = 0; i < KEYS; i += 2) {
+            set.add(i);
+        }
+        return set;
+    }
+
+    private static CollectionMetrics metrics(Collection<Integer> set) {
+        return set instanceof SortedVector ? ((SortedVector<Integer>) set).getMetrics() : null;
+    }
+
+    private static Op reader(final Collection<Integer> set) {
+        return random -> set.contains(random.nextInt(KEYS));
+    }
+
+    private static Op writer(final Collection<Integer> set) {
+        return random -> {
+            Integer key = random.nextInt(KEYS) | 1;
+            set.add(key);
+            return set.remove(key);
+        };
+    }
+
+    private static Op mixed(final Collection<Integer> set, final int readPercent) {
+        final Op reader = reader(set), writer = writer(set);
+        return random -> random.nextInt(100) < readPercent ? reader.run(random) : writer.run(random);
+    }
+
+    private static Op producer(final Channel channel) {
+        return random -> {
+            if (channel.offer(random.nextInt())) {
+                return true;
+            }
+            Thread.yield();
+            return false;
+        };
+    }
+
+    private static Op consumer(final Channel channel) {
+        return random -> {
+            Integer e = channel.poll();
+            if (e != null) {
+                sink += e;
+                return true;
+            }
+            Thread.yield();
+            return false;
+        };
+    }
+
+    private static Channel channel(final CircularBuffer<Integer> buffer) {
+        return new Channel() {
+
+            @Override
+            public boolean offer(Integer e) {
+                return buffer.offer(e);
+            }
+
+            @Override
+            public Integer poll() {
+                return buffer.poll();
+            }
+
+            @Override
+            public CollectionMetrics metrics() {
+                return buffer.getMetrics();
+            }
+        };
+    }
+
+    private static Channel channel(final java.util.Queue<Integer> queue) {
+        return new Channel() {
+
+            @Override
+            public boolean offer(Integer e) {
+                return queue.offer(e);
+            }
+
+            @Override
+            public Integer poll() {
+                return queue.poll();
+            }
+
+            @Override
+            public CollectionMetrics metrics() {
+                return null;
+            }
+        };
+    }
+
+    /**
+     * The combined measurements of the workers of one cell
+     */
+    private static class Result {
+
+        long operations, refused, errors, blocked, waited;
+        double seconds;
+        long[] latencies;
+    }
+
+    /**
+     * Runs each operation in its own thread for the given time, after a
+     * warm-up of a fifth of that time
+     */
+    private static Result run(Op[] ops, long millis) throws Exception {
+        final Worker[] workers = new Worker[ops.length];
+        final CyclicBarrier start = new CyclicBarrier(ops.length + 1);
+        for (int i = 0; i < ops.length; i++) {
+            workers[i] = new Worker(ops[i], start, 0x9E3779B97F4A7C15L * (i + 1));
+            workers[i].start();
+        }
+
+        // Warm up, then reset the counters of every worker and measure
+        start.await();
+        Thread.sleep(Math.max(1, millis / 5));
+        for (Worker w : workers) {
+            w.measuring = true;
+        }
+        long begin = System.nanoTime();
+        Thread.sleep(millis);
+        for (Worker w : workers) {
+            w.running = false;
+        }
+        for (Worker w : workers) {
+            w.join();
+        }
+
+        Result result = new Result();
+        result.seconds = (System.nanoTime() - begin) / 1e9;
+        List<long[]> samples = new ArrayList<>();
+        int count = 0;
+        for (Worker w : workers) {
+            result.operations += w.operations;
+            result.refused += w.refused;
+            result.errors += w.errors;
+            result.blocked += w.blocked;
+            result.waited += w.waited;
+            samples.add(Arrays.copyOf(w.samples, Math.min(w.sampled, SAMPLES)));
+            count += Math.min(w.sampled, SAMPLES);
+        }
+        result.latencies = new long[count];
+        int offset = 0;
+        for (long[] s : samples) {
+            System.arraycopy(s, 0, result.latencies, offset, s.length);
+            offset += s.length;
+        }
+        Arrays.sort(result.latencies);
+        return result;
+    }
+
+    /**
+     * A thread running one operation in a loop. Every eighth call is timed
+     * into a ring of samples.
+     */
+    private static class Worker extends Thread {
+
+        private final Op op;
+        private final CyclicBarrier start;
+        private final SplittableRandom random;
+        volatile boolean running = true, measuring = false;
+        long operations, refused, errors, blocked, waited;
+        final long[] samples = new long[SAMPLES];
+        int sampled;
+
+        Worker(Op op, CyclicBarrier start, long seed) {
+            this.op = op;
+            this.start = start;
+            this.random = new SplittableRandom(seed);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                start.await();
+            } catch (Exception ex) {
+                return;
+            }
+            while (!measuring) {
+                op.run(random);
+            }
+
+            ThreadInfo before = THREADS_MX.getThreadInfo(getId());
+            long calls = 0;
+            while (running) {
+                boolean done;
+                try {
+                    if ((calls++ & SAMPLE_MASK) == 0) {
+                        long t = System.nanoTime();
+                        done = op.run(random);
+                        samples[sampled++ & (SAMPLES - 1)] = System.nanoTime() - t;
+                    } else {
+                        done = op.run(random);
+                    }
+                } catch (RuntimeException ex) {
+                    // A race inside the collection; count it and carry on
+                    errors++;
+                    continue;
+                }
+                if (done) {
+                    operations++;
+                } else {
+                    refused++;
+                }
+            }
+            ThreadInfo after = THREADS_MX.getThreadInfo(getId());
+            blocked = after.getBlockedCount() - before.getBlockedCount();
+            waited = after.getWaitedCount() - before.getWaitedCount();
+        }
+    }
+
+    private static void header(String first, String second) {
+        System.out.printf("  %-26s %9s %9s %10s %6s %9s %9s %9s %10s %9s %9s%n", "collection", first, second,
+                "ops/s", "scale", "p50 ns", "p99 ns", "p99.9 ns", "max ns", "blk/kop", "park/kop");
+    }
+
+    /**
+     * Prints one cell and returns the throughput the following cells of the
+     * same collection are scaled against
+     */
+    private static double report(String name, int first, int second, Result r, double base, CollectionMetrics metrics) {
+        double throughput = r.operations / r.seconds;
+        if (base == 0) {
+            base = throughput;
+        }
+        long[] l = r.latencies;
+        double perKilo = 1000.0 / Math.max(1, r.operations + r.refused);
+        System.out.printf("  %-26s %9d %9d %10.0f %6.2f %9d %9d %9d %10d %9.2f %9.2f", name, first, second,
+                throughput, throughput / base, percentile(l, 0.5), percentile(l, 0.99), percentile(l, 0.999),
+                l.length == 0 ? 0 : l[l.length - 1], r.blocked * perKilo, r.waited * perKilo);
+        if (metrics != null && metrics.getLockAcquisitions() > 0) {
+            System.out.printf("  contended %.1f%%", 100.0 * metrics.getContendedLocks() / metrics.getLockAcquisitions());
+        }
+        if (r.errors > 0) {
+            System.out.printf("  %d exceptions", r.errors);
+        }
+        System.out.println();
+        return base;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))];
+    }
+}
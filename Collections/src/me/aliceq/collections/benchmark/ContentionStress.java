@@ -0,0 +1,766 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Alice Quiros <email@aliceq.me>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.aliceq.collections.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import me.aliceq.collections.CircularBuffer;
+import me.aliceq.collections.CircularPublisher;
+import me.aliceq.collections.ExpiringCircularBuffer;
+import me.aliceq.collections.FlatCombiningSortedVector;
+import me.aliceq.collections.SortedVector;
+import me.aliceq.collections.TimestampedCircularBuffer;
+
+/**
+ * A stress suite for the thread-safe collections in the style of jcstress.
+ * Each test runs two actors against a fresh state, many times over, and counts
+ * the outcomes the arbiter observes afterwards. Every outcome is either
+ * acceptable or forbidden; outcomes a test does not list, including any
+ * exception thrown by an actor, are forbidden.
+ *
+ * To make races likely, a batch of states is created up front and each actor
+ * thread walks the whole batch between two barriers, so the actors overlap on
+ * many states per batch. Two soak tests then run several threads against a
+ * single collection and check that nothing was lost or duplicated.
+ *
+ * Few races occur on a single processor; the counts are only meaningful on
+ * a machine with at least as many processors as actors.
+ *
+ * Run with: java -cp build/classes
+ * me.aliceq.collections.benchmark.ContentionStress [millis per test]
+ *
+ * The exit status is 1 if any forbidden outcome was observed.
+ *
+ * @author Alice Quiros <email@aliceq.me>
+ */
+public class ContentionStress {
+
+    private static final int BATCH = 1024;
+    private static final String ACCEPTABLE = "ACCEPTABLE", FORBIDDEN = "FORBIDDEN";
+
+    /**
+     * A test of two concurrent actors
+     *
+     * @param <S> the type of the state shared by the actors
+     */
+    private static abstract class StressTest<S> {
+
+        final String name;
+        final Map<String, String> outcomes = new LinkedHashMap<>();
+
+        StressTest(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Declares an outcome acceptable
+         */
+        StressTest<S> accept(String outcome) {
+            outcomes.put(outcome, ACCEPTABLE);
+            return this;
+        }
+
+        abstract S state();
+
+        abstract void actor1(S s);
+
+        abstract void actor2(S s);
+
+        /**
+         * Inspects the state once both actors are done
+         */
+        abstract String arbiter(S s);
+    }
+
+    /**
+     * The state of a SortedVector test: the vector and the results of both
+     * actors
+     */
+    private static class VectorState {
+
+        final SortedVector<Integer> vector;
+        Object r1, r2;
+
+        VectorState(SortedVector<Integer> vector, int... values) {
+            this.vector = vector;
+            for (int v : values) {
+                vector.add(v);
+            }
+        }
+    }
+
+    /**
+     * The state of a CircularBuffer test
+     */
+    private static class BufferState {
+
+        final CircularBuffer<Integer> buffer;
+        Object r1, r2;
+
+        BufferState(int capacity, int... values) {
+            this.buffer = new CircularBuffer<>(capacity);
+            for (int v : values) {
+                buffer.push(v);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+        System.out.printf("%d processors, %d ms per test%n%n", Runtime.getRuntime().availableProcessors(), millis);
+
+        List<StressTest<?>> tests = new ArrayList<>();
+        tests.add(vectorAddAdd("SortedVector add/add", false));
+        tests.add(vectorAddAdd("FlatCombiningSortedVector add/add", true));
+        tests.add(vectorAddRemove("SortedVector add/remove", false));
+        tests.add(vectorAddRemove("FlatCombiningSortedVector add/remove", true));
+        tests.add(vectorAddContains());
+        tests.add(bufferOfferOffer());
+        tests.add(bufferPollPoll());
+        tests.add(bufferPushPoll());
+        tests.add(bufferPushCount());
+
+        boolean failed = false;
+        for (StressTest<?> test : tests) {
+            failed |= !run(test, millis);
+        }
+        failed |= !subclassOffers();
+        failed |= !highThreadIds();
+        failed |= !publisherSignals();
+        failed |= !bufferTransfer(millis);
+        failed |= !vectorChurn(millis);
+
+        System.out.println(failed ? "FAILED" : "PASSED");
+        System.exit(failed ? 1 : 0);
+    }
+
+    private static SortedVector<Integer> vector(boolean combining) {
+        return combining ? new FlatCombiningSortedVector<Integer>() : new SortedVector<Integer>();
+    }
+
+    private static StressTest<VectorState> vectorAddAdd(String name, final boolean combining) {
+        return new StressTest<VectorState>(name) {
+
+            @Override
+            VectorState state() {
+                return new VectorState(vector(combining), 10, 30);
+            }
+
+            @Override
+            void actor1(VectorState s) {
+                s.vector.add(20);
+            }
+
+            @Override
+            void actor2(VectorState s) {
+                s.vector.add(40);
+            }
+
+            @Override
+            String arbiter(VectorState s) {
+                return s.vector.toString();
+            }
+        }.accept("[10,20,30,40}");
+    }
+
+    private static StressTest<VectorState> vectorAddRemove(String name, final boolean combining) {
+        return new StressTest<VectorState>(name) {
+
+            @Override
+            VectorState state() {
+                return new VectorState(vector(combining), 10, 20, 30);
+            }
+
+            @Override
+            void actor1(VectorState s) {
+                s.vector.add(25);
+            }
+
+            @Override
+            void actor2(VectorState s) {
+                s.r2 = s.vector.remove((Integer) 10);
+            }
+
+            @Override
+            String arbiter(VectorState s) {
+                return s.r2 + " " + s.vector;
+            }
+        }.accept("true [20,25,30}");
+    }
+
+    private static StressTest<VectorState> vectorAddContains() {
+        return new StressTest<VectorState>("SortedVector add/contains") {
+
+            @Override
+            VectorState state() {
+                return new VectorState(new SortedVector<Integer>(), 10, 30);
+            }
+
+            @Override
+            void actor1(VectorState s) {
+                s.vector.add(20);
+            }
+
+            @Override
+            void actor2(VectorState s) {
+                s.r1 = s.vector.contains(20);
+                s.r2 = s.vector.contains(30);
+            }
+
+            @Override
+            String arbiter(VectorState s) {
+                return s.r1 + ", " + s.r2;
+            }
+        }.accept("false, true").accept("true, true");
+    }
+
+    private static StressTest<BufferState> bufferOfferOffer() {
+        return new StressTest<BufferState>("CircularBuffer offer/offer into one free slot") {
+
+            @Override
+            BufferState state() {
+                return new BufferState(1);
+            }
+
+            @Override
+            void actor1(BufferState s) {
+                s.r1 = s.buffer.offer(1);
+            }
+
+            @Override
+            void actor2(BufferState s) {
+                s.r2 = s.buffer.offer(2);
+            }
+
+            @Override
+            String arbiter(BufferState s) {
+                return s.r1 + ", " + s.r2 + ", count " + s.buffer.count();
+            }
+        }.accept("true, false, count 1").accept("false, true, count 1");
+    }
+
+    private static StressTest<BufferState> bufferPollPoll() {
+        return new StressTest<BufferState>("CircularBuffer poll/poll of one element") {
+
+            @Override
+            BufferState state() {
+                return new BufferState(2, 1);
+            }
+
+            @Override
+            void actor1(BufferState s) {
+                s.r1 = s.buffer.poll();
+            }
+
+            @Override
+            void actor2(BufferState s) {
+                s.r2 = s.buffer.poll();
+            }
+
+            @Override
+            String arbiter(BufferState s) {
+                return s.r1 + ", " + s.r2 + ", count " + s.buffer.count();
+            }
+        }.accept("1, null, count 0").accept("null, 1, count 0");
+    }
+
+    private static StressTest<BufferState> bufferPushPoll() {
+        return new StressTest<BufferState>("CircularBuffer push/poll on an empty buffer") {
+
+            @Override
+            BufferState state() {
+                return new BufferState(2);
+            }
+
+            @Override
+            void actor1(BufferState s) {
+                s.buffer.push(1);
+            }
+
+            @Override
+            void actor2(BufferState s) {
+                s.r2 = s.buffer.poll();
+            }
+
+            @Override
+            String arbiter(BufferState s) {
+                return s.r2 + ", count " + s.buffer.count();
+            }
+        }.accept("null, count 1").accept("1, count 0");
+    }
+
+    private static StressTest<BufferState> bufferPushCount() {
+        return new StressTest<BufferState>("CircularBuffer push/count") {
+
+            @Override
+            BufferState state() {
+                return new BufferState(4, 1);
+            }
+
+            @Override
+            void actor1(BufferState s) {
+                s.buffer.push(2);
+            }
+
+            @Override
+            void actor2(BufferState s) {
+                s.r2 = s.buffer.count();
+            }
+
+            @Override
+            String arbiter(BufferState s) {
+                return "saw " + s.r2 + ", count " + s.buffer.count();
+            }
+        }.accept("saw 1, count 2").accept("saw 2, count 2");
+    }
+
+    /**
+     * Runs a test for the given time and prints its outcomes
+     *
+     * @return true if no forbidden outcome was observed
+     */
+    private static <S> boolean run(final StressTest<S> test, long millis) throws Exception {
+        final Object[] states = new Object[BATCH];
+        final String[] errors = new String[BATCH];
+        final CyclicBarrier barrier = new CyclicBarrier(3);
+        final AtomicBoolean running = new AtomicBoolean(true);
+
+        Thread[] actors = new Thread[2];
+        for (int a = 0; a < 2; a++) {
+            final boolean first = a == 0;
+            actors[a] = new Thread() {
+
+                @Override
+                public void run() {
+                    try {
+                        while (true) {
+                            barrier.await();
+                            if (!running.get()) {
+                                return;
+                            }
+                            for (int i = 0; i < BATCH; i++) {
+                                try {
+                                    if (first) {
+                                        test.actor1((S) states[i]);
+                                    } else {
+                                        test.actor2((S) states[i]);
+                                    }
+                                } catch (RuntimeException ex) {
+                                    errors[i] = ex.getClass().getSimpleName();
+                                }
+                            }
+                            barrier.await();
+                        }
+                    } catch (Exception ex) {
+                        // Interrupted or broken barrier; stop the actor
+                    }
+                }
+            };
+            actors[a].setDaemon(true);
+            actors[a].start();
+        }
+
+        Map<String, Long> counts = new TreeMap<>();
+        long deadline = System.nanoTime() + millis * 1000000;
+        long iterations = 0;
+        while (System.nanoTime() < deadline) {
+            for (int i = 0; i < BATCH; i++) {
+                states[i] = test.state();
+                errors[i] = null;
+            }
+            barrier.await();
+            barrier.await();
+            for (int i = 0; i < BATCH; i++) {
+                String outcome = errors[i] != null ? "exception " + errors[i] : test.arbiter((S) states[i]);
+                counts.merge(outcome, 1L, Long::sum);
+            }
+            iterations += BATCH;
+        }
+        running.set(false);
+        barrier.await();
+
+        boolean passed = true;
+        for (String outcome : counts.keySet()) {
+            passed &= test.outcomes.get(outcome) == ACCEPTABLE;
+        }
+        System.out.printf("[%s] %s (%d iterations)%n", passed ? "OK" : "FAILED", test.name, iterations);
+        for (Map.Entry<String, Long> e : counts.entrySet()) {
+            String expect = test.outcomes.containsKey(e.getKey()) ? test.outcomes.get(e.getKey()) : FORBIDDEN;
+            System.out.printf("    %-40s %12d  %s%n", e.getKey(), e.getValue(), expect);
+        }
+        return passed;
+    }
+
+    /**
+     * Checks that offer and poll go through the push and pop of subclasses, so
+     * offered elements are stamped and expired like pushed ones
+     *
+     * @return true if both subclasses stamped the offered elements
+     */
+    private static boolean subclassOffers() {
+        final long[] now = {1000};
+        LongSupplier clock = new LongSupplier() {
+
+            @Override
+            public long getAsLong() {
+                return now[0];
+            }
+        };
+
+        TimestampedCircularBuffer<Integer> timestamped = new TimestampedCircularBuffer<>(4, clock);
+        timestamped.offer(1);
+        now[0] = 2000;
+        timestamped.offer(2);
+        boolean stamped = timestamped.timeAt(0) == 1000 && timestamped.timeAt(1) == 2000
+                && timestamped.indexOfTime(1500) == 1;
+
+        ExpiringCircularBuffer<Integer> expiring = new ExpiringCircularBuffer<>(4, 60000, clock);
+        expiring.offer(1);
+        now[0] = 3000;
+        expiring.offer(2);
+        boolean expires = expiring.count() == 2 && expiring.expiryAt(0) == 62000 && expiring.expiryAt(1) == 63000;
+        now[0] = 62000;
+        expires &= Integer.valueOf(2).equals(expiring.poll()) && expiring.poll() == null;
+
+        boolean passed = stamped && expires;
+        System.out.printf("[%s] offer and poll through subclass push and pop%n", passed ? "OK" : "FAILED");
+        System.out.printf("    TimestampedCircularBuffer %s, ExpiringCircularBuffer %s%n",
+                stamped ? "stamped" : "not stamped", expires ? "expired on time" : "expired wrongly");
+        return passed;
+    }
+
+    /**
+     * Adds to a combining vector from threads with ids of 53020 and above,
+     * whose hashed ids once chose a negative slot. Unstarted threads are
+     * created to advance the thread ids.
+     *
+     * @return true if every add succeeded
+     */
+    private static boolean highThreadIds() throws Exception {
+        while (new Thread().getId() < 53020) {
+        }
+        final FlatCombiningSortedVector<Integer> vector = new FlatCombiningSortedVector<>();
+        final AtomicInteger errors = new AtomicInteger();
+        for (int i = 0; i < 256; i++) {
+            final int value = i;
+            Thread thread = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        vector.add(value);
+                    } catch (RuntimeException ex) {
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            thread.join();
+        }
+
+        boolean passed = errors.get() == 0 && vector.size() == 256;
+        System.out.printf("[%s] FlatCombiningSortedVector add from high thread ids%n", passed ? "OK" : "FAILED");
+        System.out.printf("    %d adds, %d exceptions%n", vector.size(), errors.get());
+        return passed;
+    }
+
+    /**
+     * Checks the signal order of CircularPublisher. A subscriber publishes and
+     * closes from inside onSubscribe and then lingers there; nothing may reach
+     * it before onSubscribe returns. A second subscriber throws from onNext
+     * and must be cancelled and told through onError.
+     *
+     * @return true if both subscribers saw the expected signals
+     */
+    private static boolean publisherSignals() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final CircularPublisher<Integer> publisher = new CircularPublisher<>(executor, 4, 4);
+            final AtomicBoolean subscribing = new AtomicBoolean();
+            final AtomicInteger early = new AtomicInteger(), received = new AtomicInteger();
+            final CountDownLatch completed = new CountDownLatch(1);
+            publisher.subscribe(new Flow.Subscriber<Integer>() {
+
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscribing.set(true);
+                    subscription.request(Long.MAX_VALUE);
+                    publisher.offer(1);
+                    publisher.close();
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    subscribing.set(false);
+                }
+
+                @Override
+                public void onNext(Integer item) {
+                    received.incrementAndGet();
+                    if (subscribing.get()) {
+                        early.incrementAndGet();
+                    }
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    early.incrementAndGet();
+                }
+
+                @Override
+                public void onComplete() {
+                    if (subscribing.get()) {
+                        early.incrementAndGet();
+                    }
+                    completed.countDown();
+                }
+            });
+            boolean ordered = completed.await(5, TimeUnit.SECONDS) && early.get() == 0 && received.get() == 1;
+
+            final CircularPublisher<Integer> failing = new CircularPublisher<>(executor, 4, 4);
+            final IllegalStateException thrown = new IllegalStateException();
+            final AtomicReference<Throwable> reported = new AtomicReference<>();
+            final CountDownLatch errored = new CountDownLatch(1);
+            failing.subscribe(new Flow.Subscriber<Integer>() {
+
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscription.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(Integer item) {
+                    throw thrown;
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    reported.set(throwable);
+                    errored.countDown();
+                }
+
+                @Override
+                public void onComplete() {
+                }
+            });
+            failing.offer(1);
+            boolean cancelled = errored.await(5, TimeUnit.SECONDS) && reported.get() == thrown
+                    && failing.getNumberOfSubscribers() == 0;
+
+            boolean passed = ordered && cancelled;
+            System.out.printf("[%s] CircularPublisher signal order and failing subscribers%n", passed ? "OK" : "FAILED");
+            System.out.printf("    %d signals before onSubscribe returned, failing subscriber %s%n",
+                    early.get(), cancelled ? "cancelled and told" : "not reported");
+            return passed;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Passes distinct values from four producers to four consumers through one
+     * buffer, then checks that each value arrived exactly once and that every
+     * consumer saw the values of each producer in the order they were sent
+     *
+     * @return true if the transfer was exact
+     */
+    private static boolean bufferTransfer(long millis) throws Exception {
+        final int producers = 4, consumers = 4, perProducer = 1 << 20;
+        final CircularBuffer<Integer> buffer = new CircularBuffer<>(64);
+        final int[] received = new int[producers * perProducer];
+        final long[] errors = new long[producers + consumers];
+        final long[] reordered = new long[consumers];
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final long deadline = System.nanoTime() + millis * 1000000;
+        final int[] sent = new int[producers];
+
+        Thread[] threads = new Thread[producers + consumers];
+        for (int t = 0; t < producers; t++) {
+            final int p = t;
+            threads[t] = new Thread() {
+
+                @Override
+                public void run() {
+                    int i = 0;
+                    while (i < perProducer && System.nanoTime() < deadline) {
+                        try {
+                            if (buffer.offer(p * perProducer + i)) {
+                                i++;
+                            } else {
+                                Thread.yield();
+                            }
+                        } catch (RuntimeException ex) {
+                            errors[p]++;
+                        }
+                    }
+                    sent[p] = i;
+                }
+            };
+        }
+        for (int t = 0; t < consumers; t++) {
+            final int c = t;
+            threads[producers + t] = new Thread() {
+
+                @Override
+                public void run() {
+                    int[] last = new int[producers];
+                    Arrays.fill(last, -1);
+                    while (running.get() || !buffer.isEmpty()) {
+                        Integer e;
+                        try {
+                            e = buffer.poll();
+                        } catch (RuntimeException ex) {
+                            errors[producers + c]++;
+                            continue;
+                        }
+                        if (e == null) {
+                            Thread.yield();
+                            continue;
+                        }
+                        int p = e / perProducer, i = e % perProducer;
+                        if (i <= last[p]) {
+                            reordered[c]++;
+                        }
+                        last[p] = i;
+                        synchronized (received) {
+                            received[e]++;
+                        }
+                    }
+                }
+            };
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (int t = 0; t < producers; t++) {
+            threads[t].join();
+        }
+        running.set(false);
+        for (int t = producers; t < threads.length; t++) {
+            threads[t].join();
+        }
+
+        long total = 0, lost = 0, duplicated = 0, exceptions = 0, outOfOrder = 0;
+        for (int p = 0; p < producers; p++) {
+            total += sent[p];
+            for (int i = 0; i < perProducer; i++) {
+                int n = received[p * perProducer + i];
+                if (i < sent[p] && n == 0) {
+                    lost++;
+                } else if (n > 1 || (i >= sent[p] && n > 0)) {
+                    duplicated++;
+                }
+            }
+        }
+        for (long e : errors) {
+            exceptions += e;
+        }
+        for (long r : reordered) {
+            outOfOrder += r;
+        }
+        boolean passed = lost == 0 && duplicated == 0 && exceptions == 0 && outOfOrder == 0;
+        System.out.printf("[%s] CircularBuffer transfer, %d producers to %d consumers (%d values)%n",
+                passed ? "OK" : "FAILED", producers, consumers, total);
+        System.out.printf("    lost %d, duplicated %d, out of order %d, exceptions %d%n", lost, duplicated, outOfOrder, exceptions);
+        return passed;
+    }
+
+    /**
+     * Has four threads add and remove keys of their own in one vector, then
+     * checks that the vector holds exactly the keys each thread kept and is
+     * still sorted
+     *
+     * @return true if the vector is consistent
+     */
+    private static boolean vectorChurn(long millis) throws Exception {
+        final int threads = 4, keys = 256;
+        final SortedVector<Integer> vector = new SortedVector<>();
+        final boolean[][] kept = new boolean[threads][keys];
+        final long[] errors = new long[threads];
+        final long deadline = System.nanoTime() + millis * 1000000;
+
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int w = t;
+            workers[t] = new Thread() {
+
+                @Override
+                public void run() {
+                    java.util.SplittableRandom random = new java.util.SplittableRandom(w);
+                    while (System.nanoTime() < deadline) {
+                        int k = random.nextInt(keys);
+                        try {
+                            // Keys of thread w are congruent to w modulo threads
+                            if (kept[w][k]) {
+                                kept[w][k] = !vector.remove((Integer) (k * threads + w));
+                            } else {
+                                kept[w][k] = vector.add(k * threads + w);
+                            }
+                        } catch (RuntimeException ex) {
+                            errors[w]++;
+                        }
+                    }
+                }
+            };
+            workers[t].start();
+        }
+        for (Thread t : workers) {
+            t.join();
+        }
+
+        List<Integer> expected = new ArrayList<>();
+        for (int k = 0; k < keys; k++) {
+            for (int w = 0; w < threads; w++) {
+                if (kept[w][k]) {
+                    expected.add(k * threads + w);
+                }
+            }
+        }
+        List<Object> actual = Arrays.asList(vector.toArray());
+        long exceptions = 0;
+        for (long e : errors) {
+            exceptions += e;
+        }
+        boolean passed = actual.equals(expected) && exceptions == 0;
+        System.out.printf("[%s] SortedVector churn, %d threads%n", passed ? "OK" : "FAILED", threads);
+        System.out.printf("    expected %d elements, found %d, contents %s, exceptions %d%n", expected.size(),
+                actual.size(), actual.equals(expected) ? "match" : "differ", exceptions);
+        return passed;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Alice Quiros <email@aliceq.me>.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.aliceq.collections.benchmark;
+
+import java.util.Random;
+import me.aliceq.collections.SearchStrategy;
+import me.aliceq.collections.SortedKeyedArrayList;
+
+/**
+ * Compares the search strategies available to sorted lists over a few key
+ * distributions. Each scenario builds a SortedKeyedArrayList, then times
+ * positionOfKey for every strategy and prints the average time per lookup.
+ *
+ * Run with: java -cp build/classes
+ * me.aliceq.collections.benchmark.SearchStrategyBenchmark [size]
+ *
+ * @author Alice Quiros <email@aliceq.me>
+ */
+public class SearchStrategyBenchmark {
+
+    private static final int LOOKUPS = 1 << 20;
+    private static final int ROUNDS = 5;
+
+    private static volatile long sink;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 20;
+        Random random = new Random(42);
+
+        // Uniformly distributed keys looked up at random
+        long[] uniform = new long[size];
+        for (int i = 0; i < size; i++) {
+            uniform[i] = random.nextLong() >>> 16;
+        }
+        run("uniform keys, random lookups", uniform, randomProbes(uniform, random));
+
+        // Heavily skewed keys (cubic) looked up at random
+        long[] skewed = new long[size];
+        for (int i = 0; i < size; i++) {
+            long r = random.nextInt(size);
+            skewed[i] = r * r * r;
+        }
+        run("skewed keys, random lookups", skewed, randomProbes(skewed, random));
+
+        // Time-ordered keys with lookups within the last 64 elements
+        long[] timestamps = new long[size];
+        long t = 0;
+        for (int i = 0; i < size; i++) {
+            t += 1 + random.nextInt(10);
+            timestamps[i] = t;
+        }
+        long[] tail = new long[LOOKUPS];
+        java.util.Arrays.sort(timestamps);
+        for (int i = 0; i < LOOKUPS; i++) {
+            tail[i] = timestamps[size - 1 - random.nextInt(Math.min(64, size))];
+        }
+        run("time-ordered keys, near-tail lookups", timestamps, tail);
+
+        // Small list which fits in cache
+        long[] small = new long[Math.min(size, 256)];
+        for (int i = 0; i < small.length; i++) {
+            small[i] = random.nextInt();
+        }
+        run("small list (" + small.length + "), random lookups", small, randomProbes(small, random));
+    }
+
+    private static long[] randomProbes(long[] keys, Random random) {
+        long[] probes = new long[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            probes[i] = keys[random.nextInt(keys.length)];
+        }
+        return probes;
+    }
+
+    private static void run(String scenario, long[] keys, long[] probes) {
+        java.util.Arrays.sort(keys);
+        SortedKeyedArrayList<Long> list = new SortedKeyedArrayList<>(keys.length + 1, e -> e, true);
+        for (long k : keys) {
+            list.add(k);
+        }
+
+        System.out.println(scenario);
+        for (SearchStrategy strategy : SearchStrategy.values()) {
+            list.setSearchStrategy(strategy);
+
+            // Warm up, then keep the best round
+            time(list, probes);
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                best = Math.min(best, time(list, probes));
+            }
+            System.out.printf("  %-14s %8.1f ns/op%n", strategy, (double) best / probes.length);
+        }
+    }
+
+    private static long time(SortedKeyedArrayList<Long> list, long[] probes) {
+        long sum = 0;
+        long start = System.nanoTime();
+        for (long probe : probes) {
+            sum += list.positionOfKey(probe);
+        }
+        long elapsed = System.nanoTime() - start;
+        sink = sum;
+        return elapsed;
+    }
+}